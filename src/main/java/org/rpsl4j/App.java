@@ -5,16 +5,22 @@
 
 package org.rpsl4j;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map.Entry;
 
 import org.apache.commons.lang3.StringUtils;
 import org.rpsl4j.emitters.OutputEmitter;
+import org.rpsl4j.emitters.SelectiveOutputEmitter;
+import org.rpsl4j.io.RpslObjectClassFilter;
+import org.rpsl4j.io.RpslObjectMappedFileReader;
 
-import net.ripe.db.whois.common.io.RpslObjectFileReader;
 import net.ripe.db.whois.common.io.RpslObjectStreamReader;
-import net.ripe.db.whois.common.rpsl.RpslObject;
 
 import com.beust.jcommander.DynamicParameter;
 import com.beust.jcommander.JCommander;
@@ -38,6 +44,12 @@ public class App {
 	@Parameter (names = {"-o", "--output"}, description = "[file]")
 	protected String outputPath = null;
 	
+	@Parameter (names = {"-t", "--threads"}, description = "Number of threads used to parse input")
+	protected int parserThreads = Runtime.getRuntime().availableProcessors();
+	
+	@Parameter (names = {"-c", "--classes"}, description = "Comma separated RPSL classes to parse, overrides those used by the emitter")
+	protected List<String> objectClasses = null;
+	
 	//explanatory/help commands
 	@Parameter (names = {"-h", "--help"}, help = true, description = "Dispaly usage information")
 	protected boolean helpMode = false;
@@ -50,13 +62,16 @@ public class App {
 	
 	
 	protected OutputEmitter emitter;
-	protected RpslObjectStreamReader reader;
+	protected Iterable<String> reader;
+	protected RpslObjectClassFilter classFilter;
 	protected OutputWriter writer;
 	
 
 	//hardcoded usage string to avoid formatting quirks.
 	public static final String USAGE_STRING_MANUAL = "Usage: " + APP_NAME + " [options]\n" + 
 			"  Options:\n" + 
+			"    -c, --classes\n" + 
+			"       Comma separated RPSL classes to parse (defaults to classes used by emitter)\n\n" + 
 			"    -e, --emitter\n" + 
 			"       Emitter to use to format output\n\n" + 
 			"    -h, --help\n" + 
@@ -69,6 +84,8 @@ public class App {
 			"       List valid arguments for provided emitter\n\n" +
 			"    -o, --output\n" + 
 			"       Output path (omit for stdout)\n\n" + 
+			"    -t, --threads\n" + 
+			"       Number of threads used to parse input (defaults to number of processors)\n\n" + 
 			"    -m\n" + 
 			"       Emitter parameters (optional depending on emitter)\n" + 
 			"       Syntax: -m key=value\n";
@@ -129,9 +146,26 @@ public class App {
 		if(help_listArguments)
 			return false;
 		
-		reader = (inputPath != null) ?
-				(new RpslObjectFileReader(inputPath)) :
-				(new RpslObjectStreamReader(System.in));
+		if(parserThreads < 1)
+			throw new ParameterException("Number of threads must be at least 1");
+		
+		//drop objects of unused classes before they are parsed, all objects are parsed if no classes are known
+		if(objectClasses != null) {
+			try {
+				classFilter = RpslObjectClassFilter.forClassNames(objectClasses);
+			} catch (IllegalArgumentException e) {
+				throw new ParameterException(e.getMessage());
+			}
+		} else if(emitter instanceof SelectiveOutputEmitter) {
+			classFilter = new RpslObjectClassFilter(((SelectiveOutputEmitter) emitter).getRequiredObjectTypes());
+		}
+		
+		if(inputPath != null)
+			reader = new RpslObjectMappedFileReader(inputPath, StandardCharsets.ISO_8859_1, classFilter);
+		else if(classFilter != null)
+			reader = classFilter.filter(new RpslObjectStreamReader(System.in));
+		else
+			reader = new RpslObjectStreamReader(System.in);
 
 		writer = new OutputWriter(emitter); //TODO: organise how to make this more extensible with relation to more elaborate output methods; eg ssh, restconf, etc. Not just file or stdout.
 		
@@ -142,34 +176,27 @@ public class App {
 	/**
 	 * Process rpsl into configured output. (Should only be run after setup())
 	 */
-	protected void run() {    	
-    	//parse input into Rpsl objects..
-    	for(String stringObject : reader)
-    	{
-    		//parse can return null or throw exceptions
-    		try {
-        		RpslObject object = RpslObject.parse(stringObject);
-    			if (object == null)
-    				throw new NullPointerException("Object failed to parse");
-        		
-        		writer.addObject(object);
-    		} catch (NullPointerException | IllegalArgumentException e) {
-    			//Object failed to parse, print error with excerpt of object
-    			String[] splitObject = stringObject.split("\n");
-    			System.err.println("Unable to parse following object, skipping... ");
-    			
-    			//Print object excerpt
-    			for(int i = 0; i < 3 && i < splitObject.length; i++) {
-    				System.err.println(splitObject[i]);
-    				if(i == 2) //We only printed part of the object
-    					System.err.println("...");
-    			}
-    		}
-    	}
+	protected void run() {
+		//parse input into Rpsl objects on the worker threads, failed objects are reported and skipped
+		try {
+			new ParallelRpslObjectParser(parserThreads).parse(reader, writer);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.err.println("Interrupted while parsing input");
+			System.exit(-1);
+		}
     	    	
     	//Emit objects to stdout or file depending on outputPath
     	if(outputPath==null) {
-    		System.out.println(writer.toString());
+    		try {
+    			Writer stdout = new BufferedWriter(new OutputStreamWriter(System.out));
+    			writer.writeTo(stdout);
+    			stdout.write(System.lineSeparator());
+    			stdout.flush();
+    		} catch (IOException e) {
+    			System.err.println("Error writing to stdout");
+    			System.exit(-1);
+    		}
     	} else {
 			try {
 				writer.writeToFile(outputPath);
@@ -8,10 +8,14 @@ package org.rpsl4j;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
 import org.rpsl4j.emitters.OutputEmitter;
+import org.rpsl4j.emitters.StreamingOutputEmitter;
 
 import net.ripe.db.whois.common.rpsl.RpslObject;
 
@@ -30,35 +34,73 @@ public class OutputWriter {
 	}
 	
 	public String toString() {
-		return outputEmitter.emit(rpslObjects);
+		StringWriter stringWriter = new StringWriter();
+		try {
+			writeTo(stringWriter);
+		} catch (IOException e) {
+			/*UNREACHABLE, StringWriter doesn't throw*/
+		}
+		return stringWriter.toString();
 	}
 	
 	public void writeToFile(String path) throws IOException { 
 		BufferedWriter writer = new BufferedWriter(new FileWriter(path));
-		writer.write(outputEmitter.emit(rpslObjects));
-		writer.close();
+		try {
+			writeTo(writer);
+		} finally {
+			writer.close();
+		}
 	}
 	
-	public void addObjects(Set<RpslObject> objects) {
+	/**
+	 * Emit the writer's objects directly to a destination. The destination is not flushed or closed.
+	 * @param out destination of emitted output
+	 * @throws IOException if writing to the destination fails
+	 */
+	public void writeTo(Writer out) throws IOException {
+		emit(outputEmitter, rpslObjects, out);
+	}
+	
+	/**
+	 * Emit a set of objects to a destination. Emitters implementing {@link StreamingOutputEmitter} write straight to the
+	 * destination, the String output of other emitters is written in one piece.
+	 * @param emitter emitter to format objects with
+	 * @param objects objects to emit
+	 * @param out destination of emitted output
+	 * @throws IOException if writing to the destination fails
+	 */
+	public static void emit(OutputEmitter emitter, Set<RpslObject> objects, Writer out) throws IOException {
+		if(emitter instanceof StreamingOutputEmitter)
+			((StreamingOutputEmitter) emitter).emit(objects, out);
+		else
+			out.write(emitter.emit(objects));
+	}
+	
+	public synchronized void addObjects(Set<RpslObject> objects) {
 		rpslObjects.addAll(objects);
 	}
 	
-	public void addObject(RpslObject ... objects) {
+	public synchronized void addObject(RpslObject ... objects) {
 		for(RpslObject object : objects)
 			rpslObjects.add(object);	
 	}
 	
-	public void removeObjects(Set<RpslObject> objects) {
+	public synchronized void removeObjects(Set<RpslObject> objects) {
 		rpslObjects.removeAll(objects);
 	}
 	
-	public void removeObject(RpslObject ... objects) {
+	public synchronized void removeObject(RpslObject ... objects) {
 		for(RpslObject object : objects)
 			rpslObjects.remove(object);
 	}
 	
+	/**
+	 * Get the objects held by the writer. The view reflects later changes, so it should not be read while objects
+	 * are still being added (ie. during parsing).
+	 * @return read-only view of the writer's objects
+	 */
 	public Set<RpslObject> getObjects() {
-		return (new HashSet<>(rpslObjects));
+		return Collections.unmodifiableSet(rpslObjects);
 	}
 	
 	
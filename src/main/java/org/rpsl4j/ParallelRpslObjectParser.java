@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import net.ripe.db.whois.common.rpsl.RpslObject;
+
+/**
+ * Producer/consumer ingest stage for RPSL documents.
+ * The calling thread reads object strings from the reader into a bounded queue which is drained by
+ * a pool of parser workers. Parsed objects are handed to an {@link OutputWriter}, objects that fail to parse
+ * are skipped and an excerpt of them is reported.
+ * @author Benjamin George Roberts
+ */
+public class ParallelRpslObjectParser {
+
+	/**
+	 * Number of unparsed objects the queue holds per worker thread
+	 */
+	public static final int QUEUE_CAPACITY_PER_THREAD = 1024;
+
+	//Marker placed on the queue once per worker to signal the end of input. Compared by reference.
+	private static final String END_OF_INPUT = new String("END_OF_INPUT");
+	//How long the reader waits on a full queue before checking the workers are still alive
+	private static final long WORKER_CHECK_MILLIS = 100;
+	//Number of parsed objects a worker collects before handing them to the writer
+	private static final int WRITER_BATCH_SIZE = 1024;
+
+	private final int threadCount;
+	private final PrintStream errorStream;
+
+	/**
+	 * Create a parser using the provided number of worker threads, reporting failures to stderr
+	 * @param threadCount number of parser workers (at least 1)
+	 */
+	public ParallelRpslObjectParser(int threadCount) {
+		this(threadCount, System.err);
+	}
+
+	/**
+	 * Create a parser using the provided number of worker threads
+	 * @param threadCount number of parser workers (at least 1)
+	 * @param errorStream stream objects which fail to parse are reported to
+	 */
+	public ParallelRpslObjectParser(int threadCount, PrintStream errorStream) {
+		if(threadCount < 1)
+			throw new IllegalArgumentException("Illegal thread count: " + threadCount);
+		this.threadCount = threadCount;
+		this.errorStream = errorStream;
+	}
+
+	/**
+	 * Read, parse and add every object of the reader to the writer.
+	 * Returns once all objects have been parsed and handed to the writer.
+	 * @param reader source of unparsed RPSL object strings
+	 * @param writer writer parsed objects are added to
+	 * @throws InterruptedException if interrupted while waiting on the workers
+	 * @throws IllegalStateException if a worker failed, thrown once the reader notices rather than after the whole input is read
+	 */
+	public void parse(Iterable<String> reader, OutputWriter writer) throws InterruptedException {
+		BlockingQueue<String> queue = new ArrayBlockingQueue<String>(threadCount * QUEUE_CAPACITY_PER_THREAD);
+		ExecutorService workerPool = Executors.newFixedThreadPool(threadCount);
+		List<Future<?>> workers = new ArrayList<Future<?>>();
+
+		try {
+			for(int i = 0; i < threadCount; i++)
+				workers.add(workerPool.submit(new ParserWorker(queue, writer)));
+
+			//Producer, the calling thread reads objects into the queue
+			try {
+				for(String stringObject : reader)
+					enqueue(queue, stringObject, workers);
+			} finally {
+				//Always release the workers, even if the reader failed
+				for(int i = 0; i < threadCount; i++)
+					enqueue(queue, END_OF_INPUT, workers);
+			}
+
+			//Wait for the workers to drain the queue
+			for(Future<?> worker : workers)
+				awaitWorker(worker);
+		} finally {
+			workerPool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Add an object to the queue, waiting for space. Workers only finish early if they fail (eg. with an {@link Error}
+	 * they don't catch), in which case they may never drain the queue, so they are checked while the queue is full.
+	 * @param queue queue of unparsed objects
+	 * @param stringObject object to add
+	 * @param workers workers draining the queue
+	 * @throws InterruptedException if interrupted while waiting for space
+	 * @throws IllegalStateException if a worker failed
+	 */
+	private static void enqueue(BlockingQueue<String> queue, String stringObject, List<Future<?>> workers) throws InterruptedException {
+		while(!queue.offer(stringObject, WORKER_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+			for(Future<?> worker : workers) {
+				if(worker.isDone())
+					awaitWorker(worker);
+			}
+		}
+	}
+
+	/**
+	 * Wait for a worker to finish
+	 * @param worker worker to wait on
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws IllegalStateException if the worker failed
+	 */
+	private static void awaitWorker(Future<?> worker) throws InterruptedException {
+		try {
+			worker.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Parser worker failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Parse a single RPSL object, reporting and returning null if it fails to parse.
+	 * @param stringObject object to parse
+	 * @return parsed object or null
+	 */
+	RpslObject parseObject(String stringObject) {
+		//parse can return null or throw exceptions
+		try {
+			RpslObject object = RpslObject.parse(stringObject);
+			if (object == null)
+				throw new NullPointerException("Object failed to parse");
+			return object;
+		} catch (NullPointerException | IllegalArgumentException e) {
+			reportFailure(stringObject);
+			return null;
+		}
+	}
+
+	/**
+	 * Print error with excerpt of object. Workers share the error stream so the excerpt is printed as one block.
+	 * @param stringObject object that failed to parse
+	 */
+	private void reportFailure(String stringObject) {
+		String[] splitObject = stringObject.split("\n");
+		synchronized(errorStream) {
+			errorStream.println("Unable to parse following object, skipping... ");
+
+			//Print object excerpt
+			for(int i = 0; i < 3 && i < splitObject.length; i++) {
+				errorStream.println(splitObject[i]);
+				if(i == 2) //We only printed part of the object
+					errorStream.println("...");
+			}
+		}
+	}
+
+	/**
+	 * Consumer taking object strings off the queue until the end of input marker is reached.
+	 * Objects are collected locally and handed to the writer in bounded batches, so workers rarely contend on the
+	 * writer and don't hold a second copy of their share of the input.
+	 */
+	private class ParserWorker implements Callable<Void> {
+		private final BlockingQueue<String> queue;
+		private final OutputWriter writer;
+
+		ParserWorker(BlockingQueue<String> queue, OutputWriter writer) {
+			this.queue = queue;
+			this.writer = writer;
+		}
+
+		@Override
+		public Void call() throws InterruptedException {
+			Set<RpslObject> parsedObjects = new HashSet<RpslObject>();
+			RuntimeException failure = null;
+
+			//Keep draining the queue after a failure so the reader is never left blocked on a full queue
+			for(String stringObject = queue.take(); stringObject != END_OF_INPUT; stringObject = queue.take()) {
+				if(failure != null)
+					continue;
+				
+				try {
+					RpslObject object = parseObject(stringObject);
+					if(object != null)
+						parsedObjects.add(object);
+				} catch (RuntimeException e) {
+					failure = e;
+				}
+				
+				if(parsedObjects.size() >= WRITER_BATCH_SIZE) {
+					writer.addObjects(parsedObjects);
+					parsedObjects = new HashSet<RpslObject>();
+				}
+			}
+
+			if(failure != null)
+				throw failure;
+			writer.addObjects(parsedObjects);
+			return null;
+		}
+	}
+}
@@ -5,25 +5,38 @@
 
 package org.rpsl4j.emitters;
 
+import java.io.Writer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import org.rpsl4j.OutputEmitterProvider;
 
+import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 
 /**
  * Empty implementation of {@link OutputEmitter}. Ignores all input and returns the empty string.
+ * As no object classes are required, input objects are never parsed.
  * Used as the fall back emitter in {@link OutputEmitterProvider}.
  * @author Benjamin George Roberts
  */
-public class NullEmitter implements OutputEmitter {
+public class NullEmitter implements StreamingOutputEmitter, SelectiveOutputEmitter {
 
 	@Override
 	public String emit(Set<RpslObject> objects) {
 		return "";
 	}
 
+	@Override
+	public void emit(Set<RpslObject> objects, Writer out) {
+	}
+
+	@Override
+	public Set<ObjectType> getRequiredObjectTypes() {
+		return Collections.emptySet();
+	}
+
 	@Override
 	public void setArguments(Map<String, String> arguments) {		
 	}
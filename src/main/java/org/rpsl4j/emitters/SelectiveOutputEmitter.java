@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.emitters;
+
+import java.util.Set;
+
+import org.rpsl4j.io.RpslObjectClassFilter;
+
+import net.ripe.db.whois.common.rpsl.ObjectType;
+
+/**
+ * An {@link OutputEmitter} which only uses objects of some RPSL classes.
+ * Objects of other classes are dropped by an {@link RpslObjectClassFilter} before they are parsed, so they are never
+ * passed to the emitter. Emitters only implementing {@link OutputEmitter} receive objects of every class.
+ * @author Benjamin George Roberts
+ */
+public interface SelectiveOutputEmitter extends OutputEmitter {
+	/**
+	 * Get the classes of objects used by the emitter
+	 * @return types of objects the emitter should be passed
+	 */
+	public Set<ObjectType> getRequiredObjectTypes();
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.emitters;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+
+import org.rpsl4j.OutputWriter;
+
+import net.ripe.db.whois.common.rpsl.RpslObject;
+
+/**
+ * An {@link OutputEmitter} which can write its output directly to a {@link Writer}, rather than building it as a String.
+ * {@link OutputWriter} prefers this method when it is available, emitters only implementing {@link OutputEmitter} have
+ * their String output written to the destination instead.
+ * @author Benjamin George Roberts
+ */
+public interface StreamingOutputEmitter extends OutputEmitter {
+	/**
+	 * Emits the set of {@link RpslObject}'s in the format of the implementing OutputEmitter to a writer.
+	 * The writer is neither flushed nor closed by the emitter.
+	 * @param objects The set of objects to emit
+	 * @param out Destination of the formated objects
+	 * @throws IOException if writing to the destination fails, or the emitter fails part way and the output is incomplete
+	 */
+	public void emit(Set<RpslObject> objects, Writer out) throws IOException;
+}
@@ -8,6 +8,7 @@ package org.rpsl4j.emitters;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -43,7 +44,7 @@ import net.ripe.db.whois.common.rpsl.RpslObject;
  *  Implementation of {@link OutputEmitter} which converts the entire RPSL Document to an XML representation.
  * @author Benjamin George Roberts
  */
-public class XMLEmitter implements OutputEmitter {
+public class XMLEmitter implements StreamingOutputEmitter {
 
 	private DocumentBuilder docBuilder;
 	final static Logger log = LoggerFactory.getLogger(XMLEmitter.class);
@@ -58,9 +59,31 @@ public class XMLEmitter implements OutputEmitter {
 	
 	@Override
 	public String emit(Set<RpslObject> objects) {
+		Document rootDocument = buildDocument(objects);
+		return (rootDocument != null) ? generateString(rootDocument) : "";
+	}
+	
+	/**
+	 * Emits the objects as XML to the writer. Unlike {@link #emit(Set)}, output written before a failed transformation
+	 * can't be taken back, so the failure is thrown.
+	 * @throws IOException if writing to the destination fails or the transformation fails part way
+	 */
+	@Override
+	public void emit(Set<RpslObject> objects, Writer out) throws IOException {
+		Document rootDocument = buildDocument(objects);
+		if(rootDocument != null)
+			generateStream(rootDocument, out);
+	}
+	
+	/**
+	 * Build the XML Document of the objects
+	 * @param objects objects to convert
+	 * @return Document of the objects, or null if there is no document builder
+	 */
+	private Document buildDocument(Set<RpslObject> objects) {
 		//Ensure we have a document builder
 		if(docBuilder == null)
-			return "";
+			return null;
 		
 		Document rootDocument = docBuilder.newDocument();
 		Element rootElement = rootDocument.createElement("rpsl4j-document");
@@ -69,7 +92,7 @@ public class XMLEmitter implements OutputEmitter {
 			emitObject(rootDocument, rootElement, rpslObject);
 
 		rootDocument.appendChild(rootElement);
-		return generateString(rootDocument);
+		return rootDocument;
 	}
 	
 	/**
@@ -145,9 +168,30 @@ public class XMLEmitter implements OutputEmitter {
 	/**
 	 * Transforms the Document to an XML format String
 	 * @param rootDocument Document to output
-	 * @return Document as an XML format String
+	 * @return Document as an XML format String, empty if the transformation fails
 	 */
 	public static String generateString(Document rootDocument) {
+		//Transform into a buffer, which is discarded if the transformation fails
+		StringWriter stringWriter = new StringWriter();
+		try {
+			generateStream(rootDocument, stringWriter);
+		} catch (IOException e) {
+			//StringWriter doesn't throw, so only a failed transformation gets here
+			log.error( "Failed to transform Document, Emitter will output nothing");
+			return "";
+		}
+		return stringWriter.toString();
+	}
+	
+	/**
+	 * Transforms the Document to XML, writing it directly to the provided writer.
+	 * Nothing is written if a transformer can't be created. The XML is streamed as it is transformed, so a failed
+	 * transformation may leave incomplete XML in the writer and is thrown for the caller to discard it.
+	 * @param rootDocument Document to output
+	 * @param out Destination of the XML
+	 * @throws IOException if writing to the destination fails, or the transformation fails (wrapping its {@link TransformerException})
+	 */
+	public static void generateStream(Document rootDocument, Writer out) throws IOException {
 		//Try initialise a transformer
 		Transformer transformer;
 		 try {
@@ -157,23 +201,22 @@ public class XMLEmitter implements OutputEmitter {
 				  | TransformerFactoryConfigurationError e) {
 			log.error( "Failed to initialise Transformer, Emitter will output nothing.");
 			e.printStackTrace();
-			return "";	
+			return;
 		}
 		
 		
 		//Intialise the transformation source/destinations
 		DOMSource source = new DOMSource(rootDocument);
-		StringWriter stringWriter = new StringWriter();
-		StreamResult destination = new StreamResult(stringWriter);
+		StreamResult destination = new StreamResult(out);
 		
-		//Run the transformation and return the buffered string result
+		//Run the transformation straight into the destination
 		try {
 			transformer.transform(source, destination);
-			return stringWriter.toString();
 		} catch (TransformerException e) {
-			log.error( "Failed to transform Document to String, Emitter will output nothing");
-			e.printStackTrace();
-			return "";
+			//Surface failures of the destination itself to the caller
+			if(e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException("Failed to transform Document, output is incomplete", e);
 		}
 
 	}
@@ -1,11 +1,14 @@
 package org.rpsl4j.emitters.rpsldocument;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.lang3.tuple.Pair;
-
-import com.google.common.collect.Sets;
+import org.rpsl4j.util.LongIterator;
+import org.rpsl4j.util.SparseBitmap;
+import org.rpsl4j.util.SymbolTable;
 
 import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.rpsl.RpslObject;
@@ -13,65 +16,90 @@ import net.ripe.db.whois.common.rpsl.attrs.AttributeParseException;
 import net.ripe.db.whois.common.rpsl.attrs.AutNum;
 
 public class BGPAsSet extends BGPRpslSet {
+	
+	//AS members, parsed once, and their range operators (null if none)
+	final long[] memberAutNums;
+	final String[] memberAutNumOperators;
 
 	@Override
-	Set<BGPRoute> resolve(BGPRpslDocument parentRpslDocument, Set<BGPRpslSet> visitedNodes) {
+	BGPRpslSet getDocumentSet(BGPRpslDocument parentRpslDocument, int setId) {
+		return parentRpslDocument.getASSet(setId);
+	}
+	
+	@Override
+	Set<BGPRoute> resolveDirectRoutes(BGPRpslDocument parentRpslDocument) {
 		HashSet<BGPRoute> flattenedRoutes = new HashSet<BGPRoute>();
 		
-		if (visitedNodes.contains(this)) //ensure we're not retracing our footsteps
-			return flattenedRoutes;
-		visitedNodes.add(this); //add this set to the index
-		
-		//Resolve AS and AS-Set objects in members list
-		for(CIString member : members) {
-			Pair<String, String> refMemberPair = splitPrefix(member.toString());
-			String 	memberName = refMemberPair.getLeft(),
-					prefix = refMemberPair.getRight();
+		//Resolve AS members, applying any range operator to their routes. as-sets are resolved by the document
+		for(int i = 0; i < memberAutNums.length; i++) {
+			Set<BGPRoute> resolvedRoutes = parentRpslDocument.getASRoutes(memberAutNums[i]);
 			
-			if(prefix != null) {
-				log.warn("Encountered prefix operator'" + member + "' this is unsupported and the member will be skipped");
-				continue;
-			}
-			
-			//Test if member is a as-set
-			if(memberName.startsWith("as-"))  {
-				BGPRpslSet memberSetObject = parentRpslDocument.asSets.get(memberName);
-				Set<BGPRoute> resolvedRoutes = memberSetObject.resolve(parentRpslDocument, visitedNodes);
-				
+			if(memberAutNumOperators[i] == null)
 				flattenedRoutes.addAll(resolvedRoutes);
-			} else {
-				//Try resolve it as an AS
-				try {
-					AutNum autNum = AutNum.parse(memberName);
-					Set<BGPRoute> resolvedRoutes = parentRpslDocument.getASRoutes(autNum.getValue());
-
-					flattenedRoutes.addAll(resolvedRoutes);
-				} catch(AttributeParseException e) {}
-			}
+			else
+				flattenedRoutes.addAll(applyRangeOperator(resolvedRoutes, memberAutNumOperators[i], "AS" + memberAutNums[i] + memberAutNumOperators[i]));
 		}
 		
+		//Resolve member as-sets with range operators
+		flattenedRoutes.addAll(resolveRangedMemberSets(parentRpslDocument));
+		
 		//Resolve mbrs-by-ref as's
-		if(mbrsByRef.size() == 1 && mbrsByRef.contains(CIString.ciString("ANY"))) {
+		int setId = documentSymbol(parentRpslDocument, nameId);
+		if(mbrsByRefAny) {
 			//Take all as's that are member-of this set
-			for(Long autNum : parentRpslDocument.getSetMemberAutNums(name))
-				flattenedRoutes.addAll(parentRpslDocument.getASRoutes(autNum));
-		} else if(mbrsByRef.size() > 0) {
-			//Take intersection of as's that are member-of this set, and as's mnt-by a mbr-by-ref maintainer
-			Set<Long> 	setMembers 		= parentRpslDocument.getSetMemberAutNums(name),
-						byRefMembers 	= new HashSet<>();
+			for(LongIterator it = parentRpslDocument.getSetMemberAutNums(setId).iterator(); it.hasNext();)
+				flattenedRoutes.addAll(parentRpslDocument.getASRoutes(it.next()));
+		} else if(mbrsByRefIds.length > 0) {
+			//Take intersection of as ids that are member-of this set, and as ids mnt-by a mbr-by-ref maintainer
+			SparseBitmap	setMembers 		= parentRpslDocument.getSetMemberAutNumIds(setId),
+							byRefMembers 	= new SparseBitmap();
 			
-			for(CIString maintainer : mbrsByRef)
-				byRefMembers.addAll(parentRpslDocument.getMntByAutNums(maintainer));
+			for(int maintainer : mbrsByRefIds)
+				byRefMembers = SparseBitmap.or(byRefMembers, parentRpslDocument.getMntByAutNumIds(documentSymbol(parentRpslDocument, maintainer)));
 			
-			for(Long autNum : Sets.intersection(setMembers, byRefMembers))
-				flattenedRoutes.addAll(parentRpslDocument.getASRoutes(autNum));
+			for(LongIterator it = parentRpslDocument.getAutNums(SparseBitmap.and(setMembers, byRefMembers)).iterator(); it.hasNext();)
+				flattenedRoutes.addAll(parentRpslDocument.getASRoutes(it.next()));
 		}	
 		
 		return flattenedRoutes;
 	}
 	
 	protected BGPAsSet(RpslObject rpslObject) {
-		super(rpslObject);
+		this(rpslObject, new SymbolTable());
+	}
+	
+	BGPAsSet(RpslObject rpslObject, SymbolTable symbols) {
+		super(rpslObject, symbols, "as-");
+		
+		//Parse the AS members once, members that aren't ASes or as-sets are skipped
+		List<Long> autNums = new ArrayList<Long>();
+		List<String> operators = new ArrayList<String>();
+		for(CIString member : getMembers(rpslObject)) {
+			Pair<String, String> refMemberPair = splitPrefix(member.toString());
+			if(!BGPRouteFilter.AUT_NUM.matcher(refMemberPair.getLeft()).matches())
+				continue;
+			
+			try {
+				autNums.add(AutNum.parse(refMemberPair.getLeft()).getValue());
+				operators.add(refMemberPair.getRight());
+			} catch(AttributeParseException e) {
+				log.warn("Member '" + member + "' of " + getName() + " is not a valid AS and will be skipped");
+			}
+		}
+		
+		this.memberAutNums = new long[autNums.size()];
+		for(int i = 0; i < memberAutNums.length; i++)
+			memberAutNums[i] = autNums.get(i);
+		this.memberAutNumOperators = operators.toArray(new String[operators.size()]);
+	}
+	
+	@Override
+	List<String> getMemberNames() {
+		List<String> memberNames = new ArrayList<String>();
+		for(int i = 0; i < memberAutNums.length; i++)
+			memberNames.add((memberAutNumOperators[i] == null) ? "AS" + memberAutNums[i] : "AS" + memberAutNums[i] + memberAutNumOperators[i]);
+		memberNames.addAll(super.getMemberNames());
+		return memberNames;
 	}
 
 }
@@ -5,8 +5,10 @@
 
 package org.rpsl4j.emitters.rpsldocument;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -15,6 +17,10 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Multimap;
 
@@ -22,7 +28,6 @@ import net.ripe.db.whois.common.rpsl.AttributeType;
 import net.ripe.db.whois.common.rpsl.ObjectType;
 import net.ripe.db.whois.common.rpsl.RpslAttribute;
 import net.ripe.db.whois.common.rpsl.RpslObject;
-import net.ripe.db.whois.common.rpsl.attrs.AttributeParseException;
 import net.ripe.db.whois.common.rpsl.attrs.AutNum;
 
 /**
@@ -31,41 +36,59 @@ import net.ripe.db.whois.common.rpsl.attrs.AutNum;
  * @author Benjamin George Roberts
  */
 public class BGPAutNum {
-	private RpslObject rpslObject;
-	private AutNum autNumObject;
+	/**
+	 * Number of distinct export attributes above which {@link #getIncludedRouteMap()} resolves the routes announced by
+	 * each attribute as a separate task on the document's fork/join pool
+	 */
+	static final int PARALLEL_EXPORT_THRESHOLD = 32;
+	
 	private BGPRpslDocument parentDocument;
 	protected String name;
 	protected long autNum;
 	final static Logger log = LoggerFactory.getLogger(BGPAutNum.class);
 
 	/**
-	 * Maps of (AS-Peer, IP) to [Routes].
-	 * Used to store the list of routes included for export to BGP peers
+	 * Export peers of each (AS-Peer, IP), in declaration order.
+	 * Used to resolve the routes included for export to BGP peers when their table is first requested
+	 */
+	private Map<BGPPeeringKey, List<PeerExport>> peerExports;
+	
+	/**
+	 * Memoized route tables of (AS-Peer, IP) as shared maps of route to actions, each table is resolved at most once
 	 */
-	protected Multimap<Pair<Long, String>, BGPRoute> includedRouteMap;
+	private final LoadingCache<BGPPeeringKey, ImmutableMap<BGPRoute, Map<String, String>>> peerRoutes = CacheBuilder.newBuilder()
+			.build(new CacheLoader<BGPPeeringKey, ImmutableMap<BGPRoute, Map<String, String>>>() {
+				@Override
+				public ImmutableMap<BGPRoute, Map<String, String>> load(BGPPeeringKey peer) {
+					return resolvePeerRoutes(peer);
+				}
+			});
+	
+	/**
+	 * Index of peer address (keys without an AS) to the AS of the first peering declared with the address
+	 */
+	private Map<BGPPeeringKey, Long> peerAutNums;
 
 	/**
-	 * Initialise a new BGPAutNum instance and generate its route maps
+	 * Initialise a new BGPAutNum instance and compile its export policies. Route tables are resolved when first requested.
 	 * @param object aut-num RPSL object
 	 * @param doc BGPRpslDocument the AutNum is a member of. Used for set resolving.
 	 */
 	public BGPAutNum(RpslObject object, BGPRpslDocument doc) {
 		//Sanity check the provided object
 		if(object.getType() != ObjectType.AUT_NUM) throw new IllegalArgumentException("Requires AUT_NUM object, got " + object.getType());
-		rpslObject = object;
 
 		//This parse method can throw an error. We can't really recover so we won't catch it
-		autNumObject = AutNum.parse(rpslObject.getTypeAttribute().getCleanValue());
-		autNum = autNumObject.getValue();
+		autNum = AutNum.parse(object.getTypeAttribute().getCleanValue()).getValue();
 
 		//Again, this is a mandatory attribute, assume it exists
-		name = rpslObject.getValueForAttribute(AttributeType.AS_NAME).toString();
+		name = object.getValueForAttribute(AttributeType.AS_NAME).toString();
 		
 		//Add a reference to the parent document. Could be null.
 		parentDocument = doc;
 
-		//Jump into building the route maps
-		generateRouteMaps();
+		//Jump into compiling the export peers. The RPSL object isn't kept, so it can be released once the document is built
+		compileExportPeers(object);
 	}
 	
 	public BGPAutNum(RpslObject object) {
@@ -73,93 +96,139 @@ public class BGPAutNum {
 	}
 
 	/**
-	 * Generate the peer route maps by parsing the AutNum RPSL object's export attributes.
+	 * Export peer of a compiled export attribute
+	 */
+	private static class PeerExport {
+		final BGPExportPolicy policy;
+		final Pair<Pair<Long, String>, String> exportPeer;
+		
+		PeerExport(BGPExportPolicy policy, Pair<Pair<Long, String>, String> exportPeer) {
+			this.policy = policy;
+			this.exportPeer = exportPeer;
+		}
+	}
+
+	/**
+	 * Compile the AutNum RPSL object's export attributes and group their export peers by peering.
+	 * No routes are resolved, this only parses the attributes (or reuses policies already compiled from the same text).
+	 * @param rpslObject aut-num RPSL object
 	 */
-	private void generateRouteMaps() {
-		Multimap<Pair<Long, String>, BGPRoute> includedRouteMap = LinkedHashMultimap.create();
+	private void compileExportPeers(RpslObject rpslObject) {
+		//TODO do we need to include EXPORT_VIA?
+		Map<BGPPeeringKey, List<PeerExport>> peerExports = new LinkedHashMap<BGPPeeringKey, List<PeerExport>>();
 		for(RpslAttribute attr : rpslObject.getAttributes()) {
-			//Skip non export attributes
-			//TODO do we need to include EXPORT_VIA?
 			if(attr.getType() != AttributeType.EXPORT)
 				continue;
-
-			//Get the Tuples of ((PeerAS, PeerIP), LocalRouter) from the export attribute
-			Set<Pair<Pair<Long, String>, String>> exportPeers = getExportPeers(attr);
-
-			//Resolve the routes for the provided peer and corresponding local router, and add to the route map
-			for(Pair<Pair<Long, String>, String> exportPeer : exportPeers) {
-				//Get action statements
-				Map<String, String> routeActions = resolveActions(attr, exportPeer);
+			
+			BGPExportPolicy policy = (parentDocument != null) ? parentDocument.getExportPolicy(attr) : BGPExportPolicy.compile(attr);
+			for(Pair<Pair<Long, String>, String> exportPeer : policy.getExportPeers()) {
+				BGPPeeringKey peer;
+				try {
+					peer = BGPPeeringKey.of(exportPeer.getLeft().getLeft(), exportPeer.getLeft().getRight());
+				} catch (IllegalArgumentException e) {
+					log.error("Illegal peer in export attribute: {}", e.getMessage());
+					continue;
+				}
 				
-				if(routeActions.size() == 0)				
-					includedRouteMap.putAll(exportPeer.getLeft(), BGPRoute.resolveRoutes(attr, exportPeer.getRight(), parentDocument));
-				else
-					includedRouteMap.putAll(exportPeer.getLeft(), BGPRoute.resolveRoutes(attr, exportPeer.getRight(), parentDocument, routeActions));
+				List<PeerExport> exports = peerExports.get(peer);
+				if(exports == null) {
+					exports = new ArrayList<PeerExport>(1);
+					peerExports.put(peer, exports);
+				}
+				exports.add(new PeerExport(policy, exportPeer));
 			}
 		}
 
-		//Update the object's maps
-		this.includedRouteMap = includedRouteMap;
-	}
+		//Index the peers by address
+		Map<BGPPeeringKey, Long> peerAutNums = new HashMap<BGPPeeringKey, Long>();
+		for(BGPPeeringKey peer : peerExports.keySet()) {
+			BGPPeeringKey address = peer.getAddressKey();
+			if(!peerAutNums.containsKey(address))
+				peerAutNums.put(address, peer.getAutNum());
+		}
 
+		this.peerExports = peerExports;
+		this.peerAutNums = peerAutNums;
+	}
+	
 	/**
-	 * Returns a set of triples, each containing an AS/IP pair, and the source of the exported route.
-	 * Example: to AS1 1.1.1.1 2.2.2.2 at 3.3.3.3 would return [((AS1, 1.1.1.1), 3.3.3.3), ((AS1, 2.2.2.2), 3.3.3.3)]
-	 * @param attr export attribute to retrieve peers from
-	 * @return Set of tuples of the form [((AS, PeerIP), LocalRouter)]
+	 * Get the routes exported to a peering, resolving them if they haven't been. Safe to call from multiple threads.
+	 * @param peer key of the peering
+	 * @return shared immutable set of routes, in the order they are declared
 	 */
-	static Set<Pair<Pair<Long, String>, String>> getExportPeers(RpslAttribute attr) {
-		//Sanity check parameter
-		if(attr.getType() != AttributeType.EXPORT) throw new IllegalArgumentException("Requires EXPORT attribtue, got " + attr.getType());
-		Set<Pair<Pair<Long, String>, String>> exportPeers = new HashSet<Pair<Pair<Long, String>, String>>();
-		List<Pair<String, List<String>>> attrAST = attr.getTokenList();
-
-		//Iterate through peering specifications and add peers to set
-		for(int i = 0; i < attrAST.size(); i++) {
-			Pair<String, List<String>> currentASTPair = attrAST.get(i);
-			List<String> pairRight = currentASTPair.getRight();
-			String localRouter;
-			long autNum;
+	Set<BGPRoute> getPeerRoutes(BGPPeeringKey peer) {
+		return getPeerRouteActions(peer).keySet();
+	}
+	
+	/**
+	 * Get the routes exported to a peering with their actions, resolving them if they haven't been
+	 * @see BGPRouteTable#shareRoutes(java.util.Collection, BGPRpslDocument)
+	 * @param peer key of the peering
+	 * @return shared immutable map of route to actions, in the order the routes are declared
+	 */
+	ImmutableMap<BGPRoute, Map<String, String>> getPeerRouteActions(BGPPeeringKey peer) {
+		if(!peerExports.containsKey(peer))
+			return ImmutableMap.of();
+		return peerRoutes.getUnchecked(peer);
+	}
+	
+	/**
+	 * @return true if the routes of a peering have been resolved
+	 */
+	boolean isResolved(BGPPeeringKey peer) {
+		return peerRoutes.getIfPresent(peer) != null;
+	}
+	
+	/**
+	 * Resolve the routes exported to a peering from its export peers. The announced routes of each policy are
+	 * resolved once per document and shared, only next hops and actions are applied here.
+	 */
+	private ImmutableMap<BGPRoute, Map<String, String>> resolvePeerRoutes(BGPPeeringKey peer) {
+		Set<BGPRoute> routes = new LinkedHashSet<BGPRoute>();
+		for(PeerExport export : peerExports.get(peer)) {
+			BGPExportPolicy policy = export.policy;
+			Set<BGPRoute> announcedRoutes = (parentDocument != null) ? parentDocument.getAnnouncedRoutes(policy) : policy.resolveAnnouncedRoutes(null);
 			
-			//Filter entries that aren't peering specifications
-			if(!currentASTPair.getLeft().equals("to"))
-				continue;
-			//Check that the peering specification has a valid local router (next entry is at with 1 address)
-			if(i < (attrAST.size() + 1) &&
-					(!attrAST.get(i+1).getLeft().equals("at") ||
-					 attrAST.get(i+1).getRight().size() != 1)) {
-				log.error("Malformed peering specification: {}", attr.toString());
-				continue;
-			}
-
-			//Check that list contains an ASN and extract it
-			try {
-				if(pairRight.size() < 1)
-					throw new AttributeParseException("Missing peering specification", attr.toString());
-
-				AutNum peerAN = AutNum.parse(pairRight.get(0));
-				autNum = peerAN.getValue();
-			} catch (AttributeParseException e) {
-				log.error("Illegal aut-num: {}", pairRight.get(0));
-				continue;
-			}
-
-			//TODO in this section we assume that all subsequent values are valid IP's, this might not be true
-
-			//Get the local router address
-			localRouter = attrAST.get(i+1).getRight().get(0);
-
-			//Check if it we're exporting to the entire AS (no peer routers)
-			if(pairRight.size() < 2) {
-				//Add the default peer
-				exportPeers.add(Pair.of(Pair.of(autNum, "0.0.0.0"), localRouter));
-			} else {
-				//Add a peer for each peer address
-				for(int j = 1; j < pairRight.size(); j++)
-					exportPeers.add(Pair.of(Pair.of(autNum, pairRight.get(j)), localRouter));
-			}
+			//Share address strings between the routes of the document
+			String localRouter = export.exportPeer.getRight();
+			if(parentDocument != null)
+				localRouter = parentDocument.internAddress(localRouter);
+			
+			Map<String, String> routeActions = policy.getActions(export.exportPeer);
+			for(BGPRoute route : announcedRoutes)
+				routes.add(route.withNextHop(localRouter).withActions(routeActions));
+		}
+		return BGPRouteTable.shareRoutes(routes, parentDocument);
+	}
+	
+	/**
+	 * Get the map of (AS-Peer, IP) to [Routes] for every peering of the aut-num, resolving all route tables.
+	 * Aut-nums of a document with many export attributes resolve the routes announced by each attribute as a separate
+	 * task on the document's pool, the tables are then assembled from the resolved routes in declaration order.
+	 * @return map of routes included for export to BGP peers, in declaration order
+	 */
+	public Multimap<BGPPeeringKey, BGPRoute> getIncludedRouteMap() {
+		Set<BGPExportPolicy> policies = getExportPolicies();
+		if(parentDocument != null && policies.size() > PARALLEL_EXPORT_THRESHOLD)
+			parentDocument.resolveAnnouncedRoutes(policies);
+		
+		Multimap<BGPPeeringKey, BGPRoute> includedRouteMap = LinkedHashMultimap.create();
+		for(BGPPeeringKey peer : peerExports.keySet())
+			includedRouteMap.putAll(peer, getPeerRoutes(peer));
+		return includedRouteMap;
+	}
+	
+	/**
+	 * Get the compiled export attributes of the aut-num
+	 * @return distinct export policies, in declaration order
+	 */
+	Set<BGPExportPolicy> getExportPolicies() {
+		Set<BGPExportPolicy> policies = new LinkedHashSet<BGPExportPolicy>();
+		for(List<PeerExport> exports : peerExports.values()) {
+			for(PeerExport export : exports)
+				policies.add(export.policy);
 		}
-		return exportPeers;
+		return policies;
 	}
 
 	/**
@@ -172,28 +241,39 @@ public class BGPAutNum {
 		return new BGPRouteTable(peerAutNum, peerAddress, this);
 	}
 
+	/**
+	 * Query the AutNum object to retrieve it's export routing table for a peer whose address has been parsed
+	 * @param peer key of the peer to be retrieved
+	 * @param peerAddress address of the peer, used to name the table
+	 * @return table of routes exported to peer
+	 */
+	BGPRouteTable getTableForPeer(BGPPeeringKey peer, String peerAddress) {
+		return new BGPRouteTable(peer, peerAddress, this);
+	}
+
 	/**
 	 * Query the AutNum object to retrieve it's export routing table for all peers in an AS
 	 * @param peerAutNum AS to be retrieved (eg. 1)
 	 * @return table of routes exported to all peers in provided AS
 	 */
 	public BGPRouteTable getTableForAS(long peerAutNum) {
-		return new BGPRouteTable(peerAutNum, this);
+		return new BGPRouteTable(BGPPeeringKey.ofAS(peerAutNum), BGPRoute.ANY_ADDRESS, this);
 	}
 
 	/**
 	 * Query the AutNum object to find which AS a particular peer address is from.
-	 * This is accomplished by searching for the first route table matching the address.
+	 * This is accomplished by looking up the AS of the first route table declared for the address.
 	 * @param peerAddress peer to search for
 	 * @return AS of peer (eg. 1) or -1 if not declared
 	 */
 	public long getASOfPeer(String peerAddress) {
-		//Iterate through entries to find first with matching IP address
-		for(Pair<Long, String> peerEntry : includedRouteMap.keySet()) {
-			if(peerEntry.getRight().equals(peerAddress))
-				return peerEntry.getLeft();
+		Long peerAutNum;
+		try {
+			peerAutNum = peerAutNums.get(BGPPeeringKey.ofAddress(peerAddress));
+		} catch (IllegalArgumentException e) {
+			return -1;
 		}
-		return -1;
+		return (peerAutNum != null) ? peerAutNum : -1;
 	}
 
 	@Override
@@ -201,71 +281,4 @@ public class BGPAutNum {
 		return String.format("%s (AS%s)", name, autNum);
 	}
 	
-	/**
-	 * Extracts the action statements present in an export attribute which are associated with a particular peer.
-	 * Searches through the export attribute to find the peering specification for the specified peer. Once this
-	 * is found the series of action tokens (such as pref = 10 etc) are located and added to a key value map.
-	 * @param attr Export attribute
-	 * @param exportPeer peer in form ((AS number, peer address), nexthop)
-	 * @return Map of preferences to assigned values for peer
-	 */
-	public static Map<String, String> resolveActions(RpslAttribute attr, Pair<Pair<Long, String>, String> exportPeer) {
-		//Sanity check on attr
-		if(attr.getType() != AttributeType.EXPORT) throw new IllegalArgumentException("Requires EXPORT attribtue, got " + attr.getType());
-		
-		List<Pair<String, List<String>>> tokenList = attr.getTokenList();
-		Map<String, String> actionMap = new HashMap<String, String>();
-		String 	as = String.format("AS%d", exportPeer.getLeft().getLeft()),
-				peer = exportPeer.getLeft().getRight(),
-				nextHop = exportPeer.getRight();
-		boolean isDefaultPeer = peer.equals("0.0.0.0");
-		
-		//Find actions for passed peer
-		for(int i = 0; i < tokenList.size(); i++) {
-			Pair<String, List<String>> token = tokenList.get(i);
-			
-			//Skip tokens that don't specify a peer
-			if(!token.getLeft().equals("to"))
-				continue;
-			
-			//Skip tokens that don't have matching "at" after them
-			if(i + 1 >= tokenList.size() || !tokenList.get(i+1).getLeft().equals("at"))
-				continue;
-			
-			//Check that next hop exists and matches
-			if(!(tokenList.get(i+1).getRight().size() == 1 && tokenList.get(i+1).getRight().get(0).equals(nextHop)))
-				continue;
-			
-			//Check that token value is long enough to hold a peer & AS
-			//If we are looking for 0.0.0.0 peer attr only needs AS
-			if(!(token.getRight().size() >= (isDefaultPeer ? 1 : 2)))
-				continue;
-			
-			//Check matching peer AS
-			if(!token.getRight().get(0).equals(as))
-				continue;
-			
-			//If looking for default peer, make sure this is a peerless line
-			if(isDefaultPeer && !(token.getRight().size() == 1))
-				continue;
-			
-			//Check for peer address if not searching for default peer
-			if(!(isDefaultPeer || token.getRight().contains(peer)))
-				continue;
-			
-			//If you've gotten this far, you have the right peer, capture next action argument
-			if(i+2 > tokenList.size() || !tokenList.get(i+2).getLeft().equals("action"))
-				continue;
-			
-			//Add peers actions to the map
-			List<String> actionList = tokenList.get(i+2).getRight();
-			for(int j = 0; j + 2 < actionList.size(); j += 3)
-				actionMap.put(actionList.get(j), actionList.get(j+2));
-			
-			//Map built, can break loop
-			break;			
-		}
-		
-		return actionMap;
-	}
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.emitters.rpsldocument;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableMap;
+
+import net.ripe.db.whois.common.rpsl.AttributeType;
+import net.ripe.db.whois.common.rpsl.RpslAttribute;
+import net.ripe.db.whois.common.rpsl.attrs.AttributeParseException;
+import net.ripe.db.whois.common.rpsl.attrs.AutNum;
+
+/**
+ * Compiled form of an aut-num export attribute: its export peers, the actions of each peer and the announced filter.
+ * The attribute's token list is walked once, collecting the peers and actions of each peering specification.
+ * Documents compile each distinct (whitespace normalised) attribute text once and share the policy between their
+ * aut-nums, as many aut-nums declare the same export lines (see {@link BGPRpslDocument#getExportPolicy(RpslAttribute)}).
+ * The compiled policy does not depend on the document it is resolved in.
+ * @author Benjamin George Roberts
+ */
+public class BGPExportPolicy {
+	final static Logger log = LoggerFactory.getLogger(BGPExportPolicy.class);
+
+	private final String text;
+	private final Map<Pair<Pair<Long, String>, String>, Map<String, String>> peerActions;
+	private final BGPRouteFilter announce;
+
+	private BGPExportPolicy(String text, RpslAttribute exportAttr) {
+		this.text = text;
+
+		//Peers and actions of each peering specification (to ... at ... [action ...]), in declaration order
+		Map<Pair<Pair<Long, String>, String>, Map<String, String>> peerActions = new LinkedHashMap<Pair<Pair<Long, String>, String>, Map<String, String>>();
+		List<Pair<String, List<String>>> tokens = exportAttr.getTokenList();
+		List<String> announceTokens = null;
+		for(int i = 0; i < tokens.size(); i++) {
+			Pair<String, List<String>> token = tokens.get(i);
+			if(token.getLeft().equals("announce") && announceTokens == null)
+				announceTokens = token.getRight();
+			if(!token.getLeft().equals("to"))
+				continue;
+
+			//The peering specification needs a local router (next entry is at with 1 address) and an AS
+			if(i + 1 >= tokens.size() || !tokens.get(i + 1).getLeft().equals("at") || tokens.get(i + 1).getRight().size() != 1
+					|| token.getRight().isEmpty()) {
+				log.error("Malformed peering specification: {}", text);
+				continue;
+			}
+			long autNum;
+			try {
+				autNum = AutNum.parse(token.getRight().get(0)).getValue();
+			} catch (AttributeParseException e) {
+				log.error("Illegal aut-num: {}", token.getRight().get(0));
+				continue;
+			}
+			String localRouter = tokens.get(i + 1).getRight().get(0);
+
+			//Actions follow the local router, shared by the peers of the specification
+			Map<String, String> actions = Collections.emptyMap();
+			if(i + 2 < tokens.size() && tokens.get(i + 2).getLeft().equals("action")) {
+				Map<String, String> actionMap = new LinkedHashMap<String, String>();
+				List<String> actionList = tokens.get(i + 2).getRight();
+				for(int j = 0; j + 2 < actionList.size(); j += 3)
+					actionMap.put(actionList.get(j), actionList.get(j + 2));
+				actions = ImmutableMap.copyOf(actionMap);
+			}
+
+			//Export to the entire AS (the default peer) if no peer routers are listed
+			List<String> peerAddresses = token.getRight().subList(1, token.getRight().size());
+			if(peerAddresses.isEmpty())
+				peerAddresses = Collections.singletonList(BGPRoute.ANY_ADDRESS);
+			for(String peerAddress : peerAddresses) {
+				//Peers keep the actions of the first of their specifications declaring any
+				Pair<Pair<Long, String>, String> exportPeer = Pair.of(Pair.of(autNum, peerAddress), localRouter);
+				Map<String, String> peerActionMap = peerActions.get(exportPeer);
+				if(peerActionMap == null || peerActionMap.isEmpty())
+					peerActions.put(exportPeer, actions);
+			}
+		}
+		this.peerActions = Collections.unmodifiableMap(peerActions);
+
+		BGPRouteFilter announce = null;
+		if(announceTokens != null) {
+			try {
+				announce = BGPRouteFilter.parse(announceTokens);
+			} catch (IllegalArgumentException e) {
+				log.error("Unable to parse filter expression: {}", e.getMessage());
+			}
+		}
+		this.announce = announce;
+	}
+
+	/**
+	 * Compile an export attribute
+	 * @param exportAttr export attribute of an aut-num RPSL object
+	 * @return compiled policy
+	 * @throws IllegalArgumentException if the attribute isn't an export attribute
+	 */
+	public static BGPExportPolicy compile(RpslAttribute exportAttr) {
+		return new BGPExportPolicy(getText(exportAttr), exportAttr);
+	}
+
+	/**
+	 * Get the whitespace normalised text of an export attribute, attributes of the same text compile to equal policies
+	 * @param exportAttr export attribute of an aut-num RPSL object
+	 * @return normalised text
+	 * @throws IllegalArgumentException if the attribute isn't an export attribute
+	 */
+	static String getText(RpslAttribute exportAttr) {
+		if(exportAttr.getType() != AttributeType.EXPORT) throw new IllegalArgumentException("Requires EXPORT attribute, got " + exportAttr.getType());
+		return StringUtils.normalizeSpace(exportAttr.getCleanValue().toString());
+	}
+
+	/**
+	 * Get the peers the policy exports to.
+	 * Example: to AS1 1.1.1.1 2.2.2.2 at 3.3.3.3 gives [((1, 1.1.1.1), 3.3.3.3), ((1, 2.2.2.2), 3.3.3.3)]
+	 * @return set of ((AS, PeerIP), LocalRouter), in declaration order. Peers of the entire AS have the address {@link BGPRoute#ANY_ADDRESS}
+	 */
+	public Set<Pair<Pair<Long, String>, String>> getExportPeers() {
+		return peerActions.keySet();
+	}
+
+	/**
+	 * Get the actions of an export peer
+	 * @param exportPeer peer in form ((AS number, peer address), nexthop)
+	 * @return unmodifiable map of action name to value, empty if the peer has no actions or isn't exported to
+	 */
+	public Map<String, String> getActions(Pair<Pair<Long, String>, String> exportPeer) {
+		Map<String, String> actions = peerActions.get(exportPeer);
+		return (actions != null) ? actions : Collections.<String, String>emptyMap();
+	}
+
+	/**
+	 * Get the announced filter of the policy
+	 * @return filter, null if the attribute has no valid announce clause
+	 */
+	public BGPRouteFilter getAnnounceFilter() {
+		return announce;
+	}
+
+	/**
+	 * Resolve the routes announced by the policy
+	 * @param doc the {@link BGPRpslDocument} to lookup route/as sets from. Null if not used.
+	 * @return announced routes, without next hops or actions
+	 */
+	Set<BGPRoute> resolveAnnouncedRoutes(BGPRpslDocument doc) {
+		if(announce == null)
+			return Collections.emptySet();
+		try {
+			return announce.resolve(doc);
+		} catch (IllegalArgumentException e) {
+			log.error("Unable to resolve filter expression: {}", e.getMessage());
+			return Collections.emptySet();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+}
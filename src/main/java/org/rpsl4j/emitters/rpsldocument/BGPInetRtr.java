@@ -5,7 +5,10 @@
 
 package org.rpsl4j.emitters.rpsldocument;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -24,75 +27,131 @@ import net.ripe.db.whois.common.rpsl.attrs.AutNum;
  * @author Benjamin George Roberts
  */
 public class BGPInetRtr {
-	private RpslObject inetRtr;
 	protected BGPAutNum autNumObject;
 	protected String speakerAddress, speakerName, peerRegistry;
 	protected long speakerAutNum;
 	protected Set<BGPPeer> peers = new HashSet<BGPPeer>();
+	private final int hash;
 	
 	/**
 	 * Instantiate a new BGPInetRtr (BGP Speaker) using the provided inet-rtr rpsl object.
-	 * Also instantiates any peers of the instance and uses them the {@link BGPAutNum} to
-	 * construct their route tables.
+	 * Also instantiates any peers of the instance, which use the {@link BGPAutNum} to
+	 * construct their route tables when their routes are first requested.
 	 * @param object RPSL inet-rtr object of the speaker
 	 * @param speakerAddress address of the speaker (should be ifaddr attribtue of the object)
 	 * @param autNumObject AutNum the speaker is a member of
 	 */
 	public BGPInetRtr(RpslObject object, String speakerAddress, BGPAutNum autNumObject) {
-		if(object.getType() != ObjectType.INET_RTR) throw new IllegalArgumentException("Requires INET_RTR object, got " + object.getType());
-
+		this(new Declaration(object), speakerAddress, autNumObject);
+	}
+	
+	/**
+	 * Instantiate a new BGPInetRtr (BGP Speaker) of an extracted inet-rtr declaration, see {@link #BGPInetRtr(RpslObject, String, BGPAutNum)}
+	 */
+	private BGPInetRtr(Declaration declaration, String speakerAddress, BGPAutNum autNumObject) {
 		//Populate fields
-		this.inetRtr = object;
-		this.speakerName = inetRtr.getTypeAttribute().getCleanValue().toString(); //DNS name
+		this.speakerName = declaration.name; //DNS name
 		this.speakerAutNum = autNumObject.autNum;
 		this.speakerAddress = speakerAddress;
 		this.autNumObject = autNumObject;
+		this.hash = 31 * speakerAddress.hashCode() + (int) (speakerAutNum ^ (speakerAutNum >>> 32));
 		this.peerRegistry = this.toString() + "-registry";
 		
-		//Add peers of rtr
-		for(RpslAttribute peerAttribute : inetRtr.findAttributes(AttributeType.PEER))
-			addPeer(peerAttribute);
+		//Add peers of rtr, their route tables are resolved when the peers' routes are first requested
+		for(Pair<String, Long> peer : declaration.peers)
+			addPeer(peer.getLeft(), peer.getRight());
 		
 	}
 	
 	/**
 	 * Create and add a peer to the BGPInetRtr instance.
 	 * Doesn't support peer options currently
-	 * @param peerAttribute attribute of the inet-rtr declaring the peer to be added
+	 * @param peerAddress address of the peer
+	 * @param peerAS AS declared by the peer attribute, -1 to use the AS the speaker's aut-num exports to at the address
 	 */
-	private void addPeer(RpslAttribute peerAttribute) {
-		//TODO should handle peer attributes such as asno and port. Update: asno now handled. Port isn't specified in rpsl, so isn't applicable. Flap_damp() should perhaps be considered
-		//Parse the attribute
-		List<Pair<String, List<String>>> peerAttrAst = peerAttribute.getTokenList();
+	private void addPeer(String peerAddress, long peerAS) {
+		if(peerAS == -1)
+			peerAS = autNumObject.getASOfPeer(peerAddress);
 		
-		long peerAS = -1;
-		String  peerAddress = null;
-		//Find the peer IP address, should be in the form ("dns", "BGP4", "1.2.3.4")
-		for(Pair<String, List<String>> entry : peerAttrAst) {
-			if(entry.getLeft().equals("dns") && entry.getRight().size() > 1) {
-				peerAddress		 = entry.getRight().get(1);
-				peerAS = autNumObject.getASOfPeer(peerAddress);
-				break;
+		//Add new peer
+		if(peerAS != -1) 
+			peers.add(new BGPPeer(peerAS, peerAddress, this));
+		//TODO: else log issue
+	}
+	
+	/**
+	 * The parts of an inet-rtr object its speakers are built from: its name, local AS, interface addresses and peers.
+	 * Extracted once so speakers can be built after the RPSL object has been released.
+	 */
+	static final class Declaration {
+		final String name, localAS;
+		//Unique ifaddr addresses, in declaration order
+		final Set<String> speakerAddresses = new LinkedHashSet<String>();
+		//Peer addresses and the AS of their asno option, -1 if they have none
+		final List<Pair<String, Long>> peers = new ArrayList<Pair<String, Long>>();
+		
+		/**
+		 * Extract the declaration of an inet-rtr object
+		 * @param object inet-rtr instance of {@link RpslObject}
+		 */
+		Declaration(RpslObject object) {
+			if(object.getType() != ObjectType.INET_RTR) throw new IllegalArgumentException("Requires INET_RTR object, got " + object.getType());
+			
+			this.name = object.getTypeAttribute().getCleanValue().toString();
+			this.localAS = object.containsAttribute(AttributeType.LOCAL_AS) ? object.getValueForAttribute(AttributeType.LOCAL_AS).toString() : null;
+			
+			for(RpslAttribute ifAddrAttr : object.findAttributes(AttributeType.IFADDR)) {
+				//Find the IP of the ifaddr
+				for(Pair<String, List<String>> entry : ifAddrAttr.getTokenList()) {
+					//TODO ignores masklen, shouldn't matter though
+					if(entry.getLeft().equals("dns") && entry.getRight().size() > 0) {
+						speakerAddresses.add(entry.getRight().get(0));
+						break; //Should only be one address per attr.
+					}
+				}
 			}
+			
+			for(RpslAttribute peerAttribute : object.findAttributes(AttributeType.PEER))
+				addPeer(peerAttribute);
 		}
 		
-		//if an asno is provided explicitly in the peer attribute, extract it and use that
-		for(Pair<String, List<String>> entry : peerAttrAst) {
-			if(entry.getLeft().equals("asno") && entry.getRight().size() > 0) {
-				try {
-					AutNum asNo = AutNum.parse(entry.getRight().get(0));
-					peerAS = asNo.getValue();
+		/**
+		 * Extract the address and AS of a peer attribute
+		 * Doesn't support peer options currently
+		 * @param peerAttribute attribute of the inet-rtr declaring the peer
+		 */
+		private void addPeer(RpslAttribute peerAttribute) {
+			//TODO should handle peer attributes such as asno and port. Update: asno now handled. Port isn't specified in rpsl, so isn't applicable. Flap_damp() should perhaps be considered
+			//Parse the attribute
+			List<Pair<String, List<String>>> peerAttrAst = peerAttribute.getTokenList();
+			
+			long peerAS = -1;
+			String  peerAddress = null;
+			//Find the peer IP address, should be in the form ("dns", "BGP4", "1.2.3.4")
+			for(Pair<String, List<String>> entry : peerAttrAst) {
+				if(entry.getLeft().equals("dns") && entry.getRight().size() > 1) {
+					peerAddress		 = entry.getRight().get(1);
 					break;
-				} catch(AttributeParseException e) {
-					//TODO: Log issue or throw exception
 				}
 			}
+			
+			//if an asno is provided explicitly in the peer attribute, extract it and use that
+			for(Pair<String, List<String>> entry : peerAttrAst) {
+				if(entry.getLeft().equals("asno") && entry.getRight().size() > 0) {
+					try {
+						AutNum asNo = AutNum.parse(entry.getRight().get(0));
+						peerAS = asNo.getValue();
+						break;
+					} catch(AttributeParseException e) {
+						//TODO: Log issue or throw exception
+					}
+				}
+			}
+			
+			if(peerAddress != null)
+				peers.add(Pair.of(peerAddress, peerAS));
+			//TODO: else log issue
 		}
-		
-		//Add new peer
-		if(peerAddress != null && peerAS != -1) 
-			peers.add(new BGPPeer(peerAS, peerAddress, this));
-		//TODO: else log issue
 	}
 
 	/**
@@ -103,33 +162,28 @@ public class BGPInetRtr {
 	 * @return Set of BGPInetRtr speakers
 	 */
 	public static Set<BGPInetRtr> getSpeakerInstances(RpslObject object, BGPAutNum autNumObject) {		
-		//Check object type
-		if(object.getType() != ObjectType.INET_RTR) throw new IllegalArgumentException("Requires INET_RTR object, got " + object.getType());
-		
+		return getSpeakerInstances(new Declaration(object), autNumObject);
+	}
+	
+	/**
+	 * Instantiate the set of BGPInetRtr speakers of an extracted inet-rtr declaration, see {@link #getSpeakerInstances(RpslObject, BGPAutNum)}
+	 * @param declaration declaration of the inet-rtr
+	 * @param autNumObject the aut-num the speakers are members of
+	 * @return Set of BGPInetRtr speakers
+	 */
+	static Set<BGPInetRtr> getSpeakerInstances(Declaration declaration, BGPAutNum autNumObject) {
 		Set<BGPInetRtr> speakerSet = new HashSet<BGPInetRtr>();
-		
-		for(RpslAttribute ifAddrAttr : object.findAttributes(AttributeType.IFADDR)) {
-			//Parse the ifaddr attribute
-			List<Pair<String, List<String>>> attrAst = ifAddrAttr.getTokenList();
-			
-			//Find the IP of the ifaddr
-			for(Pair<String, List<String>> entry : attrAst) {
-				//TODO ignores masklen, shouldn't matter though
-				if(entry.getLeft().equals("dns") && entry.getRight().size() > 0) {
-					speakerSet.add(new BGPInetRtr(object, entry.getRight().get(0), autNumObject));
-					break; //Should only be one address per attr.
-				}
-			}
-		}
+		for(String speakerAddress : declaration.speakerAddresses)
+			speakerSet.add(new BGPInetRtr(declaration, speakerAddress, autNumObject));
 		return speakerSet;
 	}
 	
 	/**
-	 * Get a copy of the objects peer set
-	 * @return Set of objects {@link BGPPeer}s
+	 * Get the objects peer set
+	 * @return read-only view of the objects {@link BGPPeer}s
 	 */
 	public Set<BGPPeer> getPeers() {
-		return new HashSet<BGPPeer>(peers);
+		return Collections.unmodifiableSet(peers);
 	}
 
 	@Override
@@ -143,12 +197,12 @@ public class BGPInetRtr {
 			return false;
 		
 		BGPInetRtr other = (BGPInetRtr) o;
-		return this.speakerAddress.equals(other.speakerAddress) && this.speakerAutNum == other.speakerAutNum;
+		return this.hash == other.hash && this.speakerAddress.equals(other.speakerAddress) && this.speakerAutNum == other.speakerAutNum;
 	}
 	
 	@Override
 	public int hashCode() {
-		return toString().hashCode();
+		return hash;
 	}
 
 	/**
@@ -5,40 +5,38 @@
 
 package org.rpsl4j.emitters.rpsldocument;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
-import net.ripe.db.whois.common.rpsl.attrs.AttributeParseException;
-import net.ripe.db.whois.common.rpsl.attrs.IPAddress;
+import com.google.common.collect.Sets;
 
 /**
  * Representation of a BGP peer that can be emitted into an ODL configuration
  * @author Benjamin George Roberts
  */
 public class BGPPeer {
-	protected Set<BGPRouteTable> routeTables = new HashSet<BGPRouteTable>();
-	protected Set<BGPRoute> routes = new HashSet<BGPRoute>();
+	//Route tables of the peer, resolved when first requested. Guarded by the peer's lock
+	private Set<BGPRouteTable> routeTables;
+	//Immutable union view of the route tables, which are shared between peers rather than copied
+	private Set<BGPRoute> routes = Collections.emptySet();
+	private final BGPPeeringKey peer;
 	protected BGPInetRtr speaker;
 	protected String peerAddress, peerRegistry, name;
 	protected long peerAutNum;
 	protected boolean isInternalPeer;
+	private final int hash;
 
 	/**
-	 * Construct a new BGPPeer of a given InetRtr/Speaker
+	 * Construct a new BGPPeer of a given InetRtr/Speaker. Its route tables are taken from the speaker's aut-num
+	 * when its routes are first requested.
 	 * @param peerAutNum AS of the peer
 	 * @param peerAddress Address of the peer
 	 * @param speaker BGP Speaker peered with this object
 	 */
 	public BGPPeer(long peerAutNum, String peerAddress, BGPInetRtr speaker) {
-		//sanity check parameters
-		if(peerAutNum <= 0)
-			throw new IllegalArgumentException("Illegal peer ASN: " + peerAutNum);
-		try {
-			IPAddress.parse(peerAddress);
-		} catch (AttributeParseException e)
-		{
-			throw new IllegalArgumentException("Illegal peer address: " + peerAddress);
-		}
+		//sanity check parameters, the parsed address is shared with the peer's table
+		this.peer = BGPPeeringKey.of(peerAutNum, peerAddress);
 
 		//Store fields
 		this.peerAutNum = peerAutNum;
@@ -47,24 +45,40 @@ public class BGPPeer {
 		this.speaker = speaker;
 		this.name = String.format("AS%d(%s)-peer-of-%s(%s)", peerAutNum, peerAddress, speaker.autNumObject.name, speaker.speakerAddress);
 		this.isInternalPeer = peerAutNum == speaker.speakerAutNum;
-		
-		//Add routes
-		addRouteTable(speaker.autNumObject.getTableForAS(peerAutNum));
-		addRouteTable(speaker.autNumObject.getTableForPeer(peerAutNum, peerAddress));
+		this.hash = 31 * (31 * speaker.hashCode() + peerAddress.hashCode()) + (int) (peerAutNum ^ (peerAutNum >>> 32));
+	}
+	
+	/**
+	 * Take the tables of the peer from the speaker's aut-num, if they haven't been yet
+	 */
+	private void resolveRouteTables() {
+		if(routeTables != null)
+			return;
+		routeTables = new HashSet<BGPRouteTable>();
+		addTable(speaker.autNumObject.getTableForAS(peerAutNum));
+		addTable(speaker.autNumObject.getTableForPeer(peer, peerAddress));
 	}
 
 	/**
 	 * Add a routing table to the BGPPeer. Will not add tables already included in peer
-	 * Will update both the set of routing tables and set of routes.
+	 * Will update both the set of routing tables and set of routes, the routes of the table are not copied.
 	 * @param newTable table to add to peer
 	 * @return false if peer already had table
 	 */
-	public boolean addRouteTable(BGPRouteTable newTable) {
+	public synchronized boolean addRouteTable(BGPRouteTable newTable) {
+		resolveRouteTables();
+		return addTable(newTable);
+	}
+	
+	private boolean addTable(BGPRouteTable newTable) {
 		if(routeTables.contains(newTable))
 			return false;
 
 		routeTables.add(newTable);
-		routes.addAll(newTable.routeSet);
+		if(routes.isEmpty())
+			routes = newTable.routeSet;
+		else if(routes != newTable.routeSet && !newTable.routeSet.isEmpty())
+			routes = Sets.union(routes, newTable.routeSet);
 		return true;
 	}
 
@@ -75,7 +89,7 @@ public class BGPPeer {
 
 	@Override
 	public int hashCode() {
-		return toString().hashCode();
+		return hash;
 	}
 
 	@Override
@@ -84,15 +98,25 @@ public class BGPPeer {
 			return false;
 
 		BGPPeer other = (BGPPeer) o;
-		return this.speaker.equals(other.speaker) && this.peerAddress.equals(other.peerAddress) && this.peerAutNum == other.peerAutNum;
+		return this.hash == other.hash && this.speaker.equals(other.speaker) && this.peerAddress.equals(other.peerAddress) && this.peerAutNum == other.peerAutNum;
 	}
 	
 	/**
-	 * Return a copy of the peers route table
-	 * @return Set of BGP Peers imported routes
+	 * Return the peers route table, resolving the tables of the peer on first use
+	 * @return read-only view of the BGP Peers imported routes
+	 */
+	public synchronized Set<BGPRoute> getRoutes() {
+		resolveRouteTables();
+		return routes;
+	}
+
+	/**
+	 * Return the peers route table aggregated into fewer, less specific routes
+	 * @see BGPRouteAggregator
+	 * @return aggregated routes of the peer
 	 */
-	public Set<BGPRoute> getRoutes() {
-		return (new HashSet<BGPRoute>(routes));
+	public Set<BGPRoute> getAggregatedRoutes() {
+		return BGPRouteAggregator.aggregate(getRoutes());
 	}
 
 	/**
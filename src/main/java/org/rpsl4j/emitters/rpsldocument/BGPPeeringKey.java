@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.emitters.rpsldocument;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import com.google.common.net.InetAddresses;
+
+/**
+ * Identifies the peering an export table is declared for: the AS of the peer and the peer's address.
+ * The address is parsed once and stored in binary, so keys hash and compare without strings.
+ * Tables exported to an entire AS use the address {@link BGPRoute#ANY_ADDRESS}.
+ * @author Benjamin George Roberts
+ */
+public final class BGPPeeringKey {
+	private final long autNum;
+	//Address of the peer, IPv4 addresses are held in the low 32 bits of addressLow
+	private final long addressHigh, addressLow;
+	private final boolean ipv6;
+
+	private BGPPeeringKey(long autNum, long addressHigh, long addressLow, boolean ipv6) {
+		this.autNum = autNum;
+		this.addressHigh = addressHigh;
+		this.addressLow = addressLow;
+		this.ipv6 = ipv6;
+	}
+
+	/**
+	 * Create the key of a peer
+	 * @param autNum AS of the peer
+	 * @param address address of the peer, or {@link BGPRoute#ANY_ADDRESS} for the entire AS
+	 * @return key of the peering
+	 * @throws IllegalArgumentException malformed AS or address
+	 */
+	public static BGPPeeringKey of(long autNum, String address) {
+		checkAutNum(autNum);
+		return parse(autNum, address);
+	}
+
+	/**
+	 * Create the key of the tables exported to an entire AS
+	 * @param autNum AS of the peers
+	 * @return key of the peering with address {@link BGPRoute#ANY_ADDRESS}
+	 * @throws IllegalArgumentException malformed AS
+	 */
+	public static BGPPeeringKey ofAS(long autNum) {
+		checkAutNum(autNum);
+		return new BGPPeeringKey(autNum, 0, 0, false);
+	}
+
+	/**
+	 * Create a key of only an address, used to index peers by address
+	 * @param address address of the peer
+	 * @return key with an AS of 0
+	 * @throws IllegalArgumentException malformed address
+	 */
+	static BGPPeeringKey ofAddress(String address) {
+		return parse(0, address);
+	}
+
+	private static BGPPeeringKey parse(long autNum, String address) {
+		InetAddress inetAddress;
+		try {
+			inetAddress = InetAddresses.forString(address);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Illegal peer address: " + address);
+		}
+
+		byte[] bytes = inetAddress.getAddress();
+		long high = 0, low = 0;
+		for(int i = 0; i < bytes.length; i++) {
+			if(i < bytes.length - 8)
+				high = (high << 8) | (bytes[i] & 0xff);
+			else
+				low = (low << 8) | (bytes[i] & 0xff);
+		}
+		return new BGPPeeringKey(autNum, high, low, bytes.length == 16);
+	}
+
+	private static void checkAutNum(long autNum) {
+		if(autNum <= 0)
+			throw new IllegalArgumentException("Illegal peer ASN: " + autNum);
+	}
+
+	/**
+	 * @return AS of the peer
+	 */
+	public long getAutNum() {
+		return autNum;
+	}
+
+	/**
+	 * Get the address of the peer, formatted from its binary form
+	 * @return address of peer, {@link BGPRoute#ANY_ADDRESS} for tables exported to an entire AS
+	 */
+	public String getAddress() {
+		if(!ipv6)
+			return (addressLow >>> 24 & 0xff) + "." + (addressLow >>> 16 & 0xff) + "." + (addressLow >>> 8 & 0xff) + "." + (addressLow & 0xff);
+
+		byte[] address = new byte[16];
+		for(int i = 0; i < 8; i++) {
+			address[i] = (byte) (addressHigh >>> (56 - 8 * i));
+			address[i + 8] = (byte) (addressLow >>> (56 - 8 * i));
+		}
+		try {
+			return InetAddresses.toAddrString(InetAddress.getByAddress(address));
+		} catch (UnknownHostException e) {
+			throw new IllegalStateException(e); //address is always of a valid length
+		}
+	}
+
+	/**
+	 * @return true if the key is of the tables exported to an entire AS
+	 */
+	public boolean isAnyAddress() {
+		return !ipv6 && addressLow == 0;
+	}
+
+	/**
+	 * Get the key of the peer's address without its AS
+	 * @return key with an AS of 0
+	 */
+	BGPPeeringKey getAddressKey() {
+		return (autNum == 0) ? this : new BGPPeeringKey(0, addressHigh, addressLow, ipv6);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if(!(other instanceof BGPPeeringKey))
+			return false;
+		BGPPeeringKey otherKey = (BGPPeeringKey) other;
+		return autNum == otherKey.autNum && addressHigh == otherKey.addressHigh && addressLow == otherKey.addressLow && ipv6 == otherKey.ipv6;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = (int) (autNum ^ (autNum >>> 32));
+		hash = 31 * hash + (int) (addressHigh ^ (addressHigh >>> 32));
+		hash = 31 * hash + (int) (addressLow ^ (addressLow >>> 32));
+		return ipv6 ? ~hash : hash;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("AS%d %s", autNum, getAddress());
+	}
+}
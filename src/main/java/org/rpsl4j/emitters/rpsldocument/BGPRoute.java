@@ -6,50 +6,253 @@
 
 package org.rpsl4j.emitters.rpsldocument;
 
-import java.util.Arrays;
-import java.util.HashMap;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
-import org.apache.commons.lang3.tuple.Pair;
+import org.rpsl4j.util.PrefixTrie;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 import net.ripe.db.whois.common.rpsl.AttributeType;
 import net.ripe.db.whois.common.rpsl.RpslAttribute;
 import net.ripe.db.whois.common.rpsl.attrs.AddressPrefixRange;
-import net.ripe.db.whois.common.rpsl.attrs.AttributeParseException;
-import net.ripe.db.whois.common.rpsl.attrs.AutNum;
+import net.ripe.db.whois.common.rpsl.attrs.RangeOperation;
 
 /**
  * BGPRoute represents a route exported by an aut-num to a potential peer.
- * The class also provides methods for parsing the routes found in RPSL export attributes,
- * however it does not support filter expressions as of yet (AND/OR/NOT etc).
+ * The class also provides methods for resolving the routes found in RPSL export attributes, filter expressions
+ * (AND/OR/NOT etc) are parsed and evaluated by {@link BGPRouteFilter}.
+ * Routes are immutable, routes with a different next hop or actions are created with {@link #withNextHop(String)} and
+ * {@link #withActions(Map)}, which share the prefix of the original route.
+ * The prefix is stored packed into primitives, its strings and {@link AddressPrefixRange} are only created when requested.
+ * A route may carry a range operator (eg. 10.0.0.0/8^+), making it a range of prefixes. Ranges are kept as their
+ * length bounds ({@link #getMinLength()}, {@link #getMaxLength()}) and only enumerated by {@link #getExpandedPrefixes()}.
  * @author Benjamin George Roberts
  */
 public class BGPRoute implements Cloneable {
-	private static final List<String> OPERATORS = Arrays.asList("AND", "OR", "NOT");
 	protected static final String ANY_ADDRESS = "0.0.0.0";
 	final static Logger log = LoggerFactory.getLogger(BGPRoute.class);
 	
-	AddressPrefixRange routePrefixObject;
-	String 	nextHop,
-			routeNetwork;
-	int 	routePrefix;
-	private Map<String, String> actions = new HashMap<String, String>();
+	//Marks an unset bound of the range operator
+	private static final byte NO_RANGE = -1;
+	
+	//Action maps are shared between routes, routes exported by an attribute usually have the same actions
+	private static final Interner<Map<String, String>> ACTION_MAPS = Interners.newWeakInterner();
+	
+	//Network address of the prefix, IPv4 addresses are held in the low 32 bits of addressLow
+	private final long 		addressHigh,
+							addressLow;
+	//Unsigned prefix length and range operator bounds
+	private final byte		prefixLength,
+							rangeMin,
+							rangeMax;
+	private final boolean	ipv6;
+	final String 	nextHop;
+	private final Map<String, String> actions;
+	//Hash of the fields compared by equals, computed once as routes are hashed whenever tables are built
+	private final int		hash;
 
 	public BGPRoute(AddressPrefixRange routePrefixObject, String nextHop) {
-		this.routePrefixObject = routePrefixObject;
 		this.nextHop = nextHop;
-		this.routeNetwork = routePrefixObject.getIpInterval().beginAsInetAddress().getHostAddress();
-		this.routePrefix = routePrefixObject.getIpInterval().getPrefixLength(); //TODO: should this consider a detached range - ie 1.1.1.1/8^16-24 ? Also, the implementation in Ipv4Resource looks unlikely to reliably return a usable result
+		this.prefixLength = (byte) routePrefixObject.getIpInterval().getPrefixLength(); //TODO: should this consider a detached range - ie 1.1.1.1/8^16-24 ? Also, the implementation in Ipv4Resource looks unlikely to reliably return a usable result
+		this.actions = Collections.emptyMap();
+		
+		byte[] address = routePrefixObject.getIpInterval().beginAsInetAddress().getAddress();
+		this.ipv6 = address.length == 16;
+		long high = 0, low = 0;
+		for(int i = 0; i < address.length; i++) {
+			if(i < address.length - 8)
+				high = (high << 8) | (address[i] & 0xff);
+			else
+				low = (low << 8) | (address[i] & 0xff);
+		}
+		this.addressHigh = high;
+		this.addressLow = low;
+		
+		//A range of only the prefix length (eg. 1.1.0.0/16^16) is stored as no range, as copyWithRange does
+		RangeOperation range = routePrefixObject.getRangeOperation();
+		byte min = (range != null && range.getN() != null) ? (byte) range.getN().intValue() : NO_RANGE;
+		byte max = (range != null && range.getM() != null) ? (byte) range.getM().intValue() : min;
+		boolean exact = min == prefixLength && max == prefixLength;
+		this.rangeMin = exact ? NO_RANGE : min;
+		this.rangeMax = exact ? NO_RANGE : max;
+		this.hash = computeHash();
+	}
+	
+	/**
+	 * Create a route of a left aligned prefix without a range operator
+	 */
+	private BGPRoute(long prefixHigh, long prefixLow, int prefixLength, boolean ipv6, String nextHop, Map<String, String> actions) {
+		this.addressHigh = ipv6 ? prefixHigh : 0;
+		this.addressLow = ipv6 ? prefixLow : prefixHigh >>> 32;
+		this.prefixLength = (byte) prefixLength;
+		this.rangeMin = this.rangeMax = NO_RANGE;
+		this.ipv6 = ipv6;
+		this.nextHop = nextHop;
+		this.actions = actions;
+		this.hash = computeHash();
+	}
+	
+	/**
+	 * Create a route sharing the prefix of another route
+	 * @param route route to take prefix from
+	 * @param nextHop next hop of the new route
+	 * @param actions unmodifiable actions of the new route
+	 */
+	protected BGPRoute(BGPRoute route, String nextHop, Map<String, String> actions) {
+		this.addressHigh = route.addressHigh;
+		this.addressLow = route.addressLow;
+		this.prefixLength = route.prefixLength;
+		this.rangeMin = route.rangeMin;
+		this.rangeMax = route.rangeMax;
+		this.ipv6 = route.ipv6;
+		this.nextHop = nextHop;
+		this.actions = actions;
+		this.hash = computeHash();
+	}
+	
+	/**
+	 * Create a route sharing the prefix, next hop and actions of another route with a different range of prefix lengths
+	 * @param route route to take prefix from
+	 * @param minLength shortest prefix length of the range
+	 * @param maxLength longest prefix length of the range
+	 */
+	protected BGPRoute(BGPRoute route, int minLength, int maxLength) {
+		this.addressHigh = route.addressHigh;
+		this.addressLow = route.addressLow;
+		this.prefixLength = route.prefixLength;
+		this.ipv6 = route.ipv6;
+		this.nextHop = route.nextHop;
+		this.actions = route.actions;
+		
+		boolean exact = minLength == getRoutePrefix() && maxLength == getRoutePrefix();
+		this.rangeMin = exact ? NO_RANGE : (byte) minLength;
+		this.rangeMax = exact ? NO_RANGE : (byte) maxLength;
+		this.hash = computeHash();
+	}
+	
+	/**
+	 * Hash the prefix, range and next hop of the route. Actions aren't hashed as they aren't compared by {@link #equals(Object)}
+	 */
+	private int computeHash() {
+		int hash = (int) (addressHigh ^ (addressHigh >>> 32));
+		hash = 31 * hash + (int) (addressLow ^ (addressLow >>> 32));
+		hash = 31 * hash + prefixLength;
+		hash = 31 * hash + rangeMin;
+		hash = 31 * hash + rangeMax;
+		hash = 31 * hash + (ipv6 ? 1 : 0);
+		return 31 * hash + ((nextHop != null) ? nextHop.hashCode() : 0);
+	}
+	
+	/**
+	 * Create a copy of the route with the provided range of prefix lengths. Subclasses override this to retain their type.
+	 * @param minLength shortest prefix length of the range
+	 * @param maxLength longest prefix length of the range
+	 * @return copy of route
+	 */
+	BGPRoute copyWithRange(int minLength, int maxLength) {
+		return new BGPRoute(this, minLength, maxLength);
+	}
+	
+	/**
+	 * Create a copy of the route with the provided next hop and actions. Subclasses override this to retain their type.
+	 * @param nextHop next hop of the copy
+	 * @param actions unmodifiable actions of the copy
+	 * @return copy of route
+	 */
+	BGPRoute copy(String nextHop, Map<String, String> actions) {
+		return new BGPRoute(this, nextHop, actions);
+	}
+	
+	/**
+	 * Get the route of a less specific network covering this route, with the same next hop and actions
+	 * @param length prefix length of the network, no longer than the route's prefix length
+	 * @return route of the covering network without a range operator
+	 */
+	BGPRoute withPrefixLength(int length) {
+		return new BGPRoute(PrefixTrie.maskHigh(getPrefixHigh(), length), PrefixTrie.maskLow(getPrefixLow(), length), length, ipv6, nextHop, actions);
+	}
+	
+	/**
+	 * Get a route with the same prefix and actions as this route, with a different next hop
+	 * @param nextHop next hop of the route
+	 * @return route with next hop, this route if the next hop is unchanged
+	 */
+	public BGPRoute withNextHop(String nextHop) {
+		if(nextHop == null ? this.nextHop == null : nextHop.equals(this.nextHop))
+			return this;
+		return copy(nextHop, actions);
+	}
+	
+	/**
+	 * Get a route with the same prefix and next hop as this route, with different actions.
+	 * Equal action maps are shared between routes.
+	 * @param actionMap map of action name to value
+	 * @return route with actions
+	 */
+	public BGPRoute withActions(Map<String, String> actionMap) {
+		if(actionMap.isEmpty())
+			return actions.isEmpty() ? this : copy(nextHop, Collections.<String, String>emptyMap());
+		
+		Map<String, String> sharedActions = ACTION_MAPS.intern(ImmutableMap.copyOf(actionMap));
+		return (sharedActions == actions) ? this : copy(nextHop, sharedActions);
+	}
+
+	/**
+	 * Apply an RPSL range operator to the route. If the route already has a range operator, the resulting range is
+	 * the intersection of the two (eg. 30.0.0.0/8^24-28 with ^27-30 gives 30.0.0.0/8^27-28).
+	 * @param operator range operator, one of ^-, ^+, ^n or ^n-m
+	 * @return route with the range applied, this route if the range is unchanged or null if the range is empty
+	 * @throws IllegalArgumentException if the operator is malformed
+	 */
+	public BGPRoute withRangeOperator(String operator) {
+		int length = getRoutePrefix(), min, max;
+		
+		if(operator.equals("^-")) {
+			min = length + 1;
+			max = getAddressLength();
+		} else if(operator.equals("^+")) {
+			min = length;
+			max = getAddressLength();
+		} else if(operator.startsWith("^")) {
+			try {
+				int separator = operator.indexOf('-');
+				min = Integer.parseInt(operator.substring(1, (separator == -1) ? operator.length() : separator));
+				max = (separator == -1) ? min : Integer.parseInt(operator.substring(separator + 1));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid range operator: " + operator, e);
+			}
+		} else {
+			throw new IllegalArgumentException("Invalid range operator: " + operator);
+		}
+		
+		if(hasRangeOperator()) {
+			min = Math.max(min, getMinLength());
+			max = Math.min(max, getMaxLength());
+		}
+		min = Math.max(min, length);
+		max = Math.min(max, getAddressLength());
+		
+		if(min > max)
+			return null;
+		else if(min == getMinLength() && max == getMaxLength())
+			return this;
+		return copyWithRange(min, max);
 	}
 
 	/**
 	 * Return the set of routes the provided attribute declares as exportable.
-	 * The method currently does not handle filter expressions
+	 * The attribute is compiled by {@link BGPExportPolicy}, filter expressions are evaluated by {@link BGPRouteFilter}
 	 * @param exportAttr export attribute of an aut-num RPSL object
 	 * @param localRouter the address of the router the route is available at
 	 * @param doc the {@link BGPRpslDocument} to lookup route/as sets from. Null if not used.
@@ -59,71 +262,11 @@ public class BGPRoute implements Cloneable {
 		//Sanity check on parameter
 		if(exportAttr.getType() != AttributeType.EXPORT) throw new IllegalArgumentException("Requires EXPORT attribute, got " + exportAttr.getType());
 		
-		//Create a set to store the created routes in, parse the attribute
+		BGPExportPolicy policy = (doc != null) ? doc.getExportPolicy(exportAttr) : BGPExportPolicy.compile(exportAttr);
 		Set<BGPRoute> routeObjectSet = new HashSet<BGPRoute>();
-		List<Pair<String, List<String>>> attrAST = exportAttr.getTokenList();
-		
-		//Find the list of route strings
-		List<String> routeList = null;
-		for(Pair<String, List<String>> pair : attrAST) {
-			if(pair.getLeft().equals("announce")) {
-				routeList = pair.getRight();
-				break;
-			}
-		}
-		
-		//TODO We naively assume that only IP address prefixes are permitted. This section would need to be rewritten to add support for them
-		//Parse routes and build routeset
-		for(String routeString : routeList) {
-			//If it is an operator, return the empty set as we can't handle it.
-			if(OPERATORS.contains(routeString)) {
-				log.error("Filter expressions not currently supported");
-				return new HashSet<BGPRoute>();
-			}
-			
-			// try parse route string as AS, then as a routeset/as-set, then finally as a route prefix
-			if (doc != null && routeString.matches("AS\\d{1,5}")) {
-				
-				// route string is an AS, parse it and add to dock
-				try {
-					AutNum autNum = AutNum.parse(routeString);
-					for(BGPRoute r : doc.getASRoutes(autNum.getValue())) {
-						// r is a copy, okay to mutate
-						r.nextHop = localRouter;
-						routeObjectSet.add(r);
-					}	
-				} catch (AttributeParseException e) {}
-			} else if(routeString.startsWith("as-")) {
-				if(doc.asSets.containsKey(routeString)) {
-					for(BGPRoute r : doc.asSets.get(routeString).resolve(doc)) {
-						r.nextHop = localRouter;
-						routeObjectSet.add(r);
-					}
-				}
-			} else if(routeString.startsWith("rs-")) {
-				if(doc.routeSets.containsKey(routeString)) {
-					for(BGPRoute r : doc.routeSets.get(routeString).resolve(doc)) {
-						r.nextHop = localRouter;
-						routeObjectSet.add(r);
-					}
-				}
-			} else {	
-				//Try and parse/add the routeprefix
-				try {
-					routeObjectSet.add(new BGPRoute(AddressPrefixRange.parse(routeString), localRouter));
-				} catch (AttributeParseException e) {}
-			}
-		}
-		
+		for(BGPRoute r : (doc != null) ? doc.getAnnouncedRoutes(policy) : policy.resolveAnnouncedRoutes(null))
+			routeObjectSet.add(r.withNextHop(localRouter));
 		return routeObjectSet;
-		
-	}
-	
-	static Set<BGPRoute> resolveRoutes(RpslAttribute exportAttr, String localRouter, BGPRpslDocument doc, Map<String, String> actionMap) {
-		Set<BGPRoute> routes = resolveRoutes(exportAttr, localRouter, doc);
-		for(BGPRoute r : routes)
-			r.setActions(actionMap);
-		return routes;
 	}
 	
 	/**
@@ -133,12 +276,13 @@ public class BGPRoute implements Cloneable {
 		return resolveRoutes(exportAttr, localRouter, null);
 	}
 	
+	/**
+	 * Create an equal copy of the route. As routes are immutable, copying is rarely needed.
+	 * @return copy of the route
+	 */
 	@Override
 	public BGPRoute clone() {
-		BGPRoute clone = null;
-		try { clone = (BGPRoute) super.clone(); } catch (CloneNotSupportedException e) {/*UNREACHABLE*/}
-		clone.setActions(actions);
-		return clone;
+		return copy(nextHop, actions);
 	}
 
 	@Override
@@ -147,6 +291,8 @@ public class BGPRoute implements Cloneable {
 			return false;
 		} else {
 			BGPRoute otherRoute = (BGPRoute) other;
+			if(hash != otherRoute.hash)
+				return false;
 			
 			//handle case where nextHop is null 
 			if((nextHop == null || otherRoute.nextHop == null) && nextHop != otherRoute.nextHop)
@@ -154,37 +300,30 @@ public class BGPRoute implements Cloneable {
 			else if ((nextHop != null && otherRoute.nextHop != null) && !nextHop.equals(otherRoute.nextHop))
 				return false;
 			
-			return routePrefix == otherRoute.routePrefix && routeNetwork.equals(otherRoute.routeNetwork);
+			return prefixLength == otherRoute.prefixLength && ipv6 == otherRoute.ipv6
+					&& addressLow == otherRoute.addressLow && addressHigh == otherRoute.addressHigh
+					&& rangeMin == otherRoute.rangeMin && rangeMax == otherRoute.rangeMax;
 		}
 	}
 	
 	@Override
 	public String toString() {
-		return String.format("%s/%d via %s", routeNetwork, routePrefix, nextHop);
+		if(hasRangeOperator())
+			return String.format("%s/%d^%d-%d via %s", getRouteNetworkString(), getRoutePrefix(), getMinLength(), getMaxLength(), nextHop);
+		return String.format("%s/%d via %s", getRouteNetworkString(), getRoutePrefix(), nextHop);
 	}
 	
 	@Override
 	public int hashCode() {
-		return toString().hashCode();
-	}
-	
-	/**
-	 * Set the actions of the BGP route
-	 * @param actionMap map of actions to add
-	 */
-	public void setActions(Map<String, String> actionMap) {
-		actions.clear();
-		actions.putAll(actionMap);
+		return hash;
 	}
 	
 	/**
 	 * Returns a map of the BGP routes actions
-	 * @return map of action name to value
+	 * @return unmodifiable map of action name to value
 	 */
 	public Map<String, String> getActions() {
-		Map<String, String> ret = new HashMap<String, String>();
-		ret.putAll(actions);
-		return ret;
+		return actions;
 	}
 	
 	/**
@@ -200,7 +339,19 @@ public class BGPRoute implements Cloneable {
 	 * @return network of route
 	 */
 	public String getRouteNetworkString() {
-		return routeNetwork;
+		if(!ipv6)
+			return (addressLow >>> 24 & 0xff) + "." + (addressLow >>> 16 & 0xff) + "." + (addressLow >>> 8 & 0xff) + "." + (addressLow & 0xff);
+		
+		byte[] address = new byte[16];
+		for(int i = 0; i < 8; i++) {
+			address[i] = (byte) (addressHigh >>> (56 - 8 * i));
+			address[i + 8] = (byte) (addressLow >>> (56 - 8 * i));
+		}
+		try {
+			return InetAddress.getByAddress(address).getHostAddress();
+		} catch (UnknownHostException e) {
+			throw new IllegalStateException(e); //address is always of a valid length
+		}
 	}
 	
 	/**
@@ -208,14 +359,133 @@ public class BGPRoute implements Cloneable {
 	 * @return length of route prefix
 	 */
 	public int getRoutePrefix() {
-		return routePrefix;
+		return prefixLength & 0xff;
+	}
+	
+	/**
+	 * Check if the route is a range of prefixes rather than a single prefix
+	 * @return true if the route has a range operator
+	 */
+	public boolean hasRangeOperator() {
+		return rangeMin != NO_RANGE;
+	}
+	
+	/**
+	 * Get the shortest prefix length covered by the route, for prefix-list entries this is the "ge" value
+	 * @return shortest prefix length, the prefix length for routes without a range operator
+	 */
+	public int getMinLength() {
+		return hasRangeOperator() ? rangeMin & 0xff : getRoutePrefix();
+	}
+	
+	/**
+	 * Get the longest prefix length covered by the route, for prefix-list entries this is the "le" value
+	 * @return longest prefix length, the prefix length for routes without a range operator
+	 */
+	public int getMaxLength() {
+		return hasRangeOperator() ? rangeMax & 0xff : getRoutePrefix();
+	}
+	
+	/**
+	 * Lazily enumerate the prefixes covered by the route's range, shortest prefixes first.
+	 * Ranges can cover a very large number of prefixes, emitters should prefer {@link #getMinLength()} and
+	 * {@link #getMaxLength()} where possible.
+	 * @return prefixes of the range as routes without range operators, with the next hop and actions of this route
+	 */
+	public Iterable<BGPRoute> getExpandedPrefixes() {
+		return new Iterable<BGPRoute>() {
+			@Override
+			public Iterator<BGPRoute> iterator() {
+				return new ExpandedPrefixIterator();
+			}
+		};
+	}
+	
+	/**
+	 * Iterator over the prefixes of the route's range. Each prefix length is enumerated in address order by adding one
+	 * at the last bit of the length, until the address leaves the route's prefix.
+	 */
+	private class ExpandedPrefixIterator implements Iterator<BGPRoute> {
+		private final long networkHigh = getPrefixHigh(), networkLow = getPrefixLow();
+		private long high = networkHigh, low = networkLow;
+		private int length = getMinLength();
+		
+		@Override
+		public boolean hasNext() {
+			return length <= getMaxLength();
+		}
+		
+		@Override
+		public BGPRoute next() {
+			if(!hasNext())
+				throw new NoSuchElementException();
+			BGPRoute prefix = new BGPRoute(high, low, length, ipv6, nextHop, actions);
+			advance();
+			return prefix;
+		}
+		
+		private void advance() {
+			int shift = 128 - length;
+			if(length == 0) {
+				//Only a single prefix of length 0
+			} else if(shift >= 64) {
+				high += 1L << (shift - 64);
+			} else {
+				long next = low + (1L << shift);
+				if((next ^ Long.MIN_VALUE) < (low ^ Long.MIN_VALUE))
+					high++; //carry
+				low = next;
+			}
+			
+			boolean wrapped = high == networkHigh && low == networkLow;
+			if(length == 0 || wrapped || PrefixTrie.commonLength(high, low, 128, networkHigh, networkLow, 128) < getRoutePrefix()) {
+				length++;
+				high = networkHigh;
+				low = networkLow;
+			}
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Routes are immutable");
+		}
+	}
+	
+	private int getAddressLength() {
+		return ipv6 ? 128 : 32;
+	}
+	
+	/**
+	 * @return true if the route is an IPv6 prefix
+	 */
+	boolean isIpv6() {
+		return ipv6;
+	}
+	
+	/**
+	 * Get the top 64 bits of the route's network, with IPv4 addresses in the top 32 bits
+	 * @return left aligned top bits of network address
+	 */
+	long getPrefixHigh() {
+		return ipv6 ? addressHigh : addressLow << 32;
+	}
+	
+	/**
+	 * Get the bottom 64 bits of the route's network, always 0 for IPv4 routes
+	 * @return left aligned bottom bits of network address
+	 */
+	long getPrefixLow() {
+		return ipv6 ? addressLow : 0;
 	}
 	
 	/**
-	 * Get the prefix range object of the route
+	 * Get the prefix range object of the route. The object is parsed from the route's prefix on each call.
 	 * @return prefix range object
 	 */
 	public AddressPrefixRange getPrefixRange() {
-		return routePrefixObject;
+		String prefixRange = getRouteNetworkString() + "/" + getRoutePrefix();
+		if(hasRangeOperator())
+			prefixRange += "^" + getMinLength() + "-" + getMaxLength();
+		return AddressPrefixRange.parse(prefixRange);
 	}
 }
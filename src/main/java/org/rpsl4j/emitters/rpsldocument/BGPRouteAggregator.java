@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.emitters.rpsldocument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.rpsl4j.util.PrefixTrie;
+
+/**
+ * Aggregates exported routes into fewer, less specific routes.
+ * Routes are only aggregated with routes of the same next hop, actions and address family. Within each group,
+ * routes covered by a less specific route are dropped and sibling prefixes (the two halves of a network) are merged
+ * into their network, repeatedly. Routes with range operators are kept unchanged.
+ * Aggregation is opt in as it changes the prefixes announced to peers, see {@link BGPRouteTable#getAggregatedRoutes()}
+ * and {@link BGPPeer#getAggregatedRoutes()}.
+ * @author Benjamin George Roberts
+ */
+public class BGPRouteAggregator {
+
+	private BGPRouteAggregator() {}
+
+	/**
+	 * Aggregate a collection of routes
+	 * @param routes routes to aggregate
+	 * @return aggregated routes, unmerged routes are the original route objects
+	 */
+	public static Set<BGPRoute> aggregate(Collection<? extends BGPRoute> routes) {
+		Set<BGPRoute> aggregatedRoutes = new HashSet<BGPRoute>();
+		Map<List<Object>, PrefixTrie<BGPRoute>> groups = new HashMap<List<Object>, PrefixTrie<BGPRoute>>();
+
+		//Group routes by their attributes, the tries also drop duplicate prefixes
+		for(BGPRoute route : routes) {
+			if(route.hasRangeOperator()) {
+				aggregatedRoutes.add(route);
+				continue;
+			}
+
+			List<Object> key = Arrays.<Object>asList(route.nextHop, route.getActions(), route.isIpv6());
+			PrefixTrie<BGPRoute> group = groups.get(key);
+			if(group == null) {
+				group = new PrefixTrie<BGPRoute>();
+				groups.put(key, group);
+			}
+			if(group.get(route.getPrefixHigh(), route.getPrefixLow(), route.getRoutePrefix()) == null)
+				group.put(route.getPrefixHigh(), route.getPrefixLow(), route.getRoutePrefix(), route);
+		}
+
+		for(PrefixTrie<BGPRoute> group : groups.values())
+			aggregatedRoutes.addAll(aggregate(group));
+		return aggregatedRoutes;
+	}
+
+	/**
+	 * Aggregate the routes of a single group in one pass over the prefixes in address order.
+	 * A prefix covered by an earlier prefix always follows it, so only the last kept prefix needs to be checked. Siblings
+	 * are adjacent in the kept list, merging them can only make their network a sibling of the prefix before it.
+	 */
+	private static List<BGPRoute> aggregate(PrefixTrie<BGPRoute> group) {
+		List<BGPRoute> kept = new ArrayList<BGPRoute>();
+		for(BGPRoute route : group.getCovered(0, 0, 0, true)) {
+			if(!kept.isEmpty() && covers(kept.get(kept.size() - 1), route))
+				continue;
+			kept.add(route);
+
+			while(kept.size() >= 2) {
+				BGPRoute upper = kept.get(kept.size() - 1), lower = kept.get(kept.size() - 2);
+				int length = upper.getRoutePrefix();
+				if(length == 0 || lower.getRoutePrefix() != length
+						|| PrefixTrie.commonLength(lower.getPrefixHigh(), lower.getPrefixLow(), length, upper.getPrefixHigh(), upper.getPrefixLow(), length) != length - 1)
+					break;
+				kept.remove(kept.size() - 1);
+				kept.set(kept.size() - 1, lower.withPrefixLength(length - 1));
+			}
+		}
+		return kept;
+	}
+
+	private static boolean covers(BGPRoute network, BGPRoute route) {
+		int length = network.getRoutePrefix();
+		return length <= route.getRoutePrefix()
+				&& PrefixTrie.commonLength(network.getPrefixHigh(), network.getPrefixLow(), length, route.getPrefixHigh(), route.getPrefixLow(), route.getRoutePrefix()) == length;
+	}
+}
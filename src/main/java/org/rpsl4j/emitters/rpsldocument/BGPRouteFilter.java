@@ -0,0 +1,652 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.emitters.rpsldocument;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.rpsl4j.util.PrefixTrie;
+
+import net.ripe.db.whois.common.rpsl.attrs.AddressPrefixRange;
+import net.ripe.db.whois.common.rpsl.attrs.AttributeParseException;
+import net.ripe.db.whois.common.rpsl.attrs.AutNum;
+
+/**
+ * Filter expression of an export attribute's announce clause, parsed into an expression tree.
+ * Supports AND, OR, NOT (in order of increasing precedence), parentheses, ANY, prefix sets ({...}) and range operators.
+ * Terms listed without an operator are combined with OR.
+ * Filters are evaluated as set algebra over bitmaps of route ids, each distinct prefix of the terms is given an id once
+ * per evaluation, so combining terms costs a pass over the bitmaps rather than copies of route sets.
+ * Prefixes, prefix sets and terms with range operators are prefix ranges rather than routes, they match every route whose
+ * prefix and lengths they contain (eg. {@code AS1 AND {10.0.0.0/8^+}} matches the routes of AS1 within 10.0.0.0/8).
+ * Terms other than prefixes, ASes, as-sets and route-sets (eg. AS path expressions) match no routes.
+ * @author Benjamin George Roberts
+ */
+public abstract class BGPRouteFilter {
+	//AS term, including 32 bit ASNs
+	static final Pattern AUT_NUM = Pattern.compile("AS\\d{1,10}", Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * Parse a filter expression
+	 * @param tokens tokens of the announce clause
+	 * @return root of expression tree
+	 * @throws IllegalArgumentException if the expression is malformed
+	 */
+	public static BGPRouteFilter parse(List<String> tokens) {
+		Parser parser = new Parser(tokenize(tokens));
+		BGPRouteFilter filter = parser.parseOr();
+		if(parser.position != parser.tokens.size())
+			throw new IllegalArgumentException("Unexpected '" + parser.tokens.get(parser.position) + "' in filter");
+		return filter;
+	}
+
+	/**
+	 * Resolve the routes matched by the filter
+	 * @param doc document to resolve AS and set terms from, null if not used
+	 * @return routes matched by the filter, without next hops
+	 */
+	public Set<BGPRoute> resolve(BGPRpslDocument doc) {
+		RouteIndex index = new RouteIndex(doc);
+		Match match = evaluate(index);
+		Set<BGPRoute> routes = index.routesOf(match.routes);
+		routes.addAll(match.ranges);
+		return routes;
+	}
+
+	/**
+	 * Evaluate the filter to a bitmap of route ids and a list of prefix ranges
+	 * @param index ids of the routes of the evaluation
+	 * @return matched routes and ranges, may be modified by the caller
+	 */
+	abstract Match evaluate(RouteIndex index);
+
+	/**
+	 * Split tokens on whitespace, parentheses, braces and commas, which may or may not be separate tokens
+	 */
+	static List<String> tokenize(List<String> tokens) {
+		List<String> split = new ArrayList<String>();
+		StringBuilder word = new StringBuilder();
+		for(String token : tokens) {
+			for(int i = 0; i <= token.length(); i++) {
+				char c = (i < token.length()) ? token.charAt(i) : ' ';
+				if(Character.isWhitespace(c) || c == '(' || c == ')' || c == '{' || c == '}' || c == ',') {
+					if(word.length() > 0)
+						split.add(word.toString());
+					word.setLength(0);
+					if(!Character.isWhitespace(c))
+						split.add(String.valueOf(c));
+				} else {
+					word.append(c);
+				}
+			}
+		}
+		return split;
+	}
+
+	/**
+	 * Recursive descent parser of filter tokens
+	 */
+	private static class Parser {
+		final List<String> tokens;
+		int position = 0;
+
+		Parser(List<String> tokens) {
+			this.tokens = tokens;
+		}
+
+		private boolean atKeyword(String keyword) {
+			return position < tokens.size() && tokens.get(position).equalsIgnoreCase(keyword);
+		}
+
+		private boolean atTermStart() {
+			return position < tokens.size() && !atKeyword("AND") && !atKeyword("OR") && !atKeyword(")") && !atKeyword("}") && !atKeyword(",");
+		}
+
+		private String next() {
+			if(position == tokens.size())
+				throw new IllegalArgumentException("Unexpected end of filter");
+			return tokens.get(position++);
+		}
+
+		private void expect(String token) {
+			String actual = next();
+			if(!actual.equals(token))
+				throw new IllegalArgumentException("Expected '" + token + "' in filter, found '" + actual + "'");
+		}
+
+		BGPRouteFilter parseOr() {
+			List<BGPRouteFilter> operands = new ArrayList<BGPRouteFilter>();
+			operands.add(parseAnd());
+			while(atKeyword("OR") || atTermStart()) {
+				if(atKeyword("OR"))
+					position++;
+				operands.add(parseAnd());
+			}
+			return (operands.size() == 1) ? operands.get(0) : new OrFilter(operands);
+		}
+
+		BGPRouteFilter parseAnd() {
+			List<BGPRouteFilter> operands = new ArrayList<BGPRouteFilter>();
+			operands.add(parseNot());
+			while(atKeyword("AND")) {
+				position++;
+				operands.add(parseNot());
+			}
+			return (operands.size() == 1) ? operands.get(0) : new AndFilter(operands);
+		}
+
+		BGPRouteFilter parseNot() {
+			if(atKeyword("NOT")) {
+				position++;
+				return new NotFilter(parseNot());
+			}
+			return parsePrimary();
+		}
+
+		BGPRouteFilter parsePrimary() {
+			String token = next();
+			if(token.equals("(")) {
+				BGPRouteFilter filter = parseOr();
+				expect(")");
+				return filter;
+			} else if(token.equals("{")) {
+				List<String> prefixes = new ArrayList<String>();
+				while(!atKeyword("}")) {
+					prefixes.add(next());
+					if(!atKeyword("}"))
+						expect(",");
+				}
+				position++;
+				String operator = (position < tokens.size() && tokens.get(position).startsWith("^")) ? next() : null;
+				return new PrefixSetFilter(prefixes, operator);
+			} else if(token.equalsIgnoreCase("ANY")) {
+				return new AnyFilter();
+			} else if(token.equals(")") || token.equals("}") || token.equals(",") || token.equalsIgnoreCase("AND") || token.equalsIgnoreCase("OR")) {
+				throw new IllegalArgumentException("Unexpected '" + token + "' in filter");
+			}
+			return new TermFilter(token);
+		}
+	}
+
+	/**
+	 * Ids of the distinct prefixes (including range) of the routes found while evaluating a filter
+	 */
+	static class RouteIndex {
+		private final BGPRpslDocument doc;
+		private final Map<PrefixKey, Integer> ids = new HashMap<PrefixKey, Integer>();
+		private final List<List<BGPRoute>> routesOfId = new ArrayList<List<BGPRoute>>();
+		private BitSet universe = null;
+
+		RouteIndex(BGPRpslDocument doc) {
+			this.doc = doc;
+		}
+
+		/**
+		 * Get a bitmap of routes, assigning ids to routes of new prefixes
+		 */
+		BitSet add(Collection<? extends BGPRoute> routes) {
+			BitSet bitmap = new BitSet();
+			for(BGPRoute route : routes) {
+				PrefixKey key = new PrefixKey(route);
+				Integer id = ids.get(key);
+				if(id == null) {
+					id = routesOfId.size();
+					ids.put(key, id);
+					routesOfId.add(new ArrayList<BGPRoute>(1));
+				}
+				//Keep each distinct route of the prefix, as an unfiltered union of the routes would
+				List<BGPRoute> prefixRoutes = routesOfId.get(id);
+				if(!prefixRoutes.contains(route))
+					prefixRoutes.add(route);
+				bitmap.set(id);
+			}
+			return bitmap;
+		}
+
+		/**
+		 * Get a bitmap of all route objects of the document
+		 */
+		BitSet universe() {
+			if(universe == null)
+				universe = (doc != null) ? add(doc.getRouteObjects()) : new BitSet();
+			return (BitSet) universe.clone();
+		}
+
+		/**
+		 * Get the routes of a bitmap contained in any of a set of prefix ranges
+		 * @param bitmap routes to check
+		 * @param ranges prefix ranges
+		 * @return bitmap of contained routes
+		 */
+		BitSet containedIn(BitSet bitmap, RangeMatcher ranges) {
+			BitSet contained = new BitSet();
+			if(ranges.isEmpty())
+				return contained;
+			for(int id = bitmap.nextSetBit(0); id >= 0; id = bitmap.nextSetBit(id + 1)) {
+				if(ranges.matches(prefixOf(id)))
+					contained.set(id);
+			}
+			return contained;
+		}
+
+		/**
+		 * Get a route of an id, routes of an id share their prefix and range
+		 */
+		BGPRoute prefixOf(int id) {
+			return routesOfId.get(id).get(0);
+		}
+
+		Set<BGPRoute> routesOf(BitSet bitmap) {
+			Set<BGPRoute> routes = new HashSet<BGPRoute>();
+			for(int id = bitmap.nextSetBit(0); id >= 0; id = bitmap.nextSetBit(id + 1))
+				routes.addAll(routesOfId.get(id));
+			return routes;
+		}
+	}
+
+	/**
+	 * Prefix and prefix length range of a route, ignoring next hop, actions and route object attributes
+	 */
+	private static final class PrefixKey {
+		private final long high, low;
+		private final int length, minLength, maxLength;
+		private final boolean ipv6;
+
+		PrefixKey(BGPRoute route) {
+			this.high = route.getPrefixHigh();
+			this.low = route.getPrefixLow();
+			this.length = route.getRoutePrefix();
+			this.minLength = route.getMinLength();
+			this.maxLength = route.getMaxLength();
+			this.ipv6 = route.isIpv6();
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if(!(other instanceof PrefixKey))
+				return false;
+			PrefixKey otherKey = (PrefixKey) other;
+			return high == otherKey.high && low == otherKey.low && length == otherKey.length && ipv6 == otherKey.ipv6
+					&& minLength == otherKey.minLength && maxLength == otherKey.maxLength;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = (int) (high ^ (high >>> 32));
+			hash = 31 * hash + (int) (low ^ (low >>> 32));
+			return 31 * hash + (length << 16 | minLength << 8 | maxLength);
+		}
+	}
+
+	/**
+	 * Result of evaluating a filter: route ids of the {@link RouteIndex} and distinct prefix ranges matching any route they contain
+	 */
+	static final class Match {
+		final BitSet routes;
+		final Set<BGPRoute> ranges;
+
+		Match(BitSet routes, Set<BGPRoute> ranges) {
+			this.routes = routes;
+			this.ranges = ranges;
+		}
+
+		static Match ofRoutes(BitSet routes) {
+			return new Match(routes, new LinkedHashSet<BGPRoute>());
+		}
+
+		static Match ofRanges(Collection<BGPRoute> ranges) {
+			return new Match(new BitSet(), new LinkedHashSet<BGPRoute>(ranges));
+		}
+	}
+
+	/**
+	 * Prefix ranges held in prefix tries, looking up the ranges containing or overlapping a route
+	 */
+	static final class RangeMatcher {
+		private final PrefixTrie<List<BGPRoute>> ipv4Ranges = new PrefixTrie<List<BGPRoute>>(),
+												 ipv6Ranges = new PrefixTrie<List<BGPRoute>>();
+
+		RangeMatcher(Collection<BGPRoute> ranges) {
+			for(BGPRoute range : ranges) {
+				PrefixTrie<List<BGPRoute>> trie = range.isIpv6() ? ipv6Ranges : ipv4Ranges;
+				List<BGPRoute> rangesOfPrefix = trie.get(range.getPrefixHigh(), range.getPrefixLow(), range.getRoutePrefix());
+				if(rangesOfPrefix == null) {
+					rangesOfPrefix = new ArrayList<BGPRoute>(1);
+					trie.put(range.getPrefixHigh(), range.getPrefixLow(), range.getRoutePrefix(), rangesOfPrefix);
+				}
+				rangesOfPrefix.add(range);
+			}
+		}
+
+		/**
+		 * @return true if a range covers the route's prefix and all of its prefix lengths
+		 */
+		boolean matches(BGPRoute route) {
+			PrefixTrie<List<BGPRoute>> trie = route.isIpv6() ? ipv6Ranges : ipv4Ranges;
+			for(List<BGPRoute> rangesOfPrefix : trie.getCovering(route.getPrefixHigh(), route.getPrefixLow(), route.getRoutePrefix(), true)) {
+				for(BGPRoute range : rangesOfPrefix) {
+					if(range.getMinLength() <= route.getMinLength() && route.getMaxLength() <= range.getMaxLength())
+						return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * @return ranges covering the route's prefix and all of its prefix lengths
+		 */
+		List<BGPRoute> containing(BGPRoute route) {
+			List<BGPRoute> containing = new ArrayList<BGPRoute>();
+			PrefixTrie<List<BGPRoute>> trie = route.isIpv6() ? ipv6Ranges : ipv4Ranges;
+			for(List<BGPRoute> rangesOfPrefix : trie.getCovering(route.getPrefixHigh(), route.getPrefixLow(), route.getRoutePrefix(), true)) {
+				for(BGPRoute range : rangesOfPrefix) {
+					if(range.getMinLength() <= route.getMinLength() && route.getMaxLength() <= range.getMaxLength())
+						containing.add(range);
+				}
+			}
+			return containing;
+		}
+
+		/**
+		 * @return ranges of prefixes covering or covered by the route's prefix, the only ranges it can intersect
+		 */
+		List<BGPRoute> nested(BGPRoute route) {
+			List<BGPRoute> nested = new ArrayList<BGPRoute>();
+			PrefixTrie<List<BGPRoute>> trie = route.isIpv6() ? ipv6Ranges : ipv4Ranges;
+			for(List<BGPRoute> rangesOfPrefix : trie.getCovering(route.getPrefixHigh(), route.getPrefixLow(), route.getRoutePrefix(), false))
+				nested.addAll(rangesOfPrefix);
+			for(List<BGPRoute> rangesOfPrefix : trie.getCovered(route.getPrefixHigh(), route.getPrefixLow(), route.getRoutePrefix(), true))
+				nested.addAll(rangesOfPrefix);
+			return nested;
+		}
+
+		boolean isEmpty() {
+			return ipv4Ranges.isEmpty() && ipv6Ranges.isEmpty();
+		}
+	}
+
+	/**
+	 * Check if the prefix of one route covers that of another
+	 */
+	private static boolean covers(BGPRoute outer, BGPRoute inner) {
+		return outer.isIpv6() == inner.isIpv6() && outer.getRoutePrefix() <= inner.getRoutePrefix()
+				&& PrefixTrie.commonLength(outer.getPrefixHigh(), outer.getPrefixLow(), outer.getRoutePrefix(),
+						inner.getPrefixHigh(), inner.getPrefixLow(), inner.getRoutePrefix()) == outer.getRoutePrefix();
+	}
+
+	/**
+	 * Intersect two prefix ranges
+	 * @return range of the prefixes in both ranges, or null if they have none in common
+	 */
+	static BGPRoute intersectRanges(BGPRoute first, BGPRoute second) {
+		BGPRoute outer, inner;
+		if(covers(first, second)) {
+			outer = first;
+			inner = second;
+		} else if(covers(second, first)) {
+			outer = second;
+			inner = first;
+		} else {
+			return null;
+		}
+
+		int min = Math.max(outer.getMinLength(), inner.getMinLength()),
+			max = Math.min(outer.getMaxLength(), inner.getMaxLength());
+		if(min > max)
+			return null;
+		else if(min == inner.getMinLength() && max == inner.getMaxLength())
+			return inner;
+		return inner.copyWithRange(min, max);
+	}
+
+	/**
+	 * Intersect two matches. Routes are kept if both matches hold them or a range of the other match contains them,
+	 * ranges are intersected with the ranges of the other match they are nested in or contain.
+	 */
+	static Match intersect(RouteIndex index, Match first, Match second) {
+		RangeMatcher secondRanges = new RangeMatcher(second.ranges);
+		BitSet routes = (BitSet) first.routes.clone();
+		routes.and(second.routes);
+		routes.or(index.containedIn(first.routes, secondRanges));
+		routes.or(index.containedIn(second.routes, new RangeMatcher(first.ranges)));
+
+		Set<BGPRoute> ranges = new LinkedHashSet<BGPRoute>();
+		for(BGPRoute firstRange : first.ranges) {
+			for(BGPRoute secondRange : secondRanges.nested(firstRange)) {
+				BGPRoute range = intersectRanges(firstRange, secondRange);
+				if(range != null)
+					ranges.add(range);
+			}
+		}
+		return new Match(routes, ranges);
+	}
+
+	/**
+	 * Subtract a match from another. Ranges can't hold exceptions, so ranges overlapping the subtracted match are
+	 * replaced by the route objects of the document they contain.
+	 */
+	static Match subtract(RouteIndex index, Match match, Match subtracted) {
+		BitSet routes = (BitSet) match.routes.clone();
+		Set<BGPRoute> ranges = new LinkedHashSet<BGPRoute>(match.ranges);
+		RangeMatcher subtractedRanges = new RangeMatcher(subtracted.ranges);
+
+		if(!ranges.isEmpty()) {
+			//Ranges containing a subtracted route or intersecting a subtracted range
+			Set<BGPRoute> overlapping = new HashSet<BGPRoute>();
+			RangeMatcher matchRanges = new RangeMatcher(match.ranges);
+			for(int id = subtracted.routes.nextSetBit(0); id >= 0; id = subtracted.routes.nextSetBit(id + 1))
+				overlapping.addAll(matchRanges.containing(index.prefixOf(id)));
+			for(BGPRoute range : match.ranges) {
+				for(BGPRoute subtractedRange : subtractedRanges.nested(range)) {
+					if(intersectRanges(range, subtractedRange) != null) {
+						overlapping.add(range);
+						break;
+					}
+				}
+			}
+
+			//Replace them by their route objects, found in one pass over the document's routes
+			if(!overlapping.isEmpty()) {
+				ranges.removeAll(overlapping);
+				routes.or(index.containedIn(index.universe(), new RangeMatcher(overlapping)));
+			}
+		}
+
+		routes.andNot(subtracted.routes);
+		routes.andNot(index.containedIn(routes, subtractedRanges));
+		return new Match(routes, ranges);
+	}
+
+	/**
+	 * Apply a range operator to routes, routes left with an empty range are dropped
+	 */
+	static Collection<BGPRoute> applyRangeOperator(Collection<BGPRoute> routes, String operator) {
+		if(operator == null)
+			return routes;
+		List<BGPRoute> rangedRoutes = new ArrayList<BGPRoute>();
+		for(BGPRoute route : routes) {
+			BGPRoute rangedRoute = route.withRangeOperator(operator);
+			if(rangedRoute != null)
+				rangedRoutes.add(rangedRoute);
+		}
+		return rangedRoutes;
+	}
+
+	/**
+	 * AS, as-set, route-set or prefix, with an optional range operator
+	 */
+	static class TermFilter extends BGPRouteFilter {
+		private final String name, operator;
+
+		TermFilter(String term) {
+			int operatorStart = term.indexOf('^');
+			this.name = (operatorStart == -1) ? term : term.substring(0, operatorStart);
+			this.operator = (operatorStart == -1) ? null : term.substring(operatorStart);
+		}
+
+		@Override
+		Match evaluate(RouteIndex index) {
+			BGPRpslDocument doc = index.doc;
+			String lowerName = name.toLowerCase();
+			Collection<BGPRoute> routes = null;
+			if(doc != null && AUT_NUM.matcher(name).matches()) {
+				try {
+					routes = doc.getASRoutes(AutNum.parse(name).getValue());
+				} catch (AttributeParseException e) {}
+			} else if(doc != null && (lowerName.startsWith("as-") || lowerName.startsWith("rs-"))) {
+				BGPRpslSet set = lowerName.startsWith("as-") ? doc.getASSet(name) : doc.getRouteSet(name);
+				if(set != null)
+					routes = set.resolve(doc);
+			} else {
+				//Prefixes are parsed with their range operator
+				try {
+					return Match.ofRanges(Collections.singleton(new BGPRoute(AddressPrefixRange.parse(toString()), null)));
+				} catch (AttributeParseException e) {}
+			}
+
+			if(routes == null)
+				return Match.ofRoutes(new BitSet());
+			//A range operator turns the routes of the term into ranges of their more specifics
+			return (operator == null) ? Match.ofRoutes(index.add(routes)) : Match.ofRanges(applyRangeOperator(routes, operator));
+		}
+
+		@Override
+		public String toString() {
+			return (operator == null) ? name : name + operator;
+		}
+	}
+
+	/**
+	 * Set of prefixes ({...}), with an optional range operator applied to each
+	 */
+	static class PrefixSetFilter extends BGPRouteFilter {
+		private final List<String> prefixes;
+		private final String operator;
+
+		PrefixSetFilter(List<String> prefixes, String operator) {
+			this.prefixes = prefixes;
+			this.operator = operator;
+		}
+
+		@Override
+		Match evaluate(RouteIndex index) {
+			List<BGPRoute> routes = new ArrayList<BGPRoute>();
+			for(String prefix : prefixes) {
+				try {
+					routes.add(new BGPRoute(AddressPrefixRange.parse(prefix), null));
+				} catch (AttributeParseException e) {}
+			}
+			return Match.ofRanges(applyRangeOperator(routes, operator));
+		}
+
+		@Override
+		public String toString() {
+			return "{" + StringUtils.join(prefixes, ", ") + "}" + ((operator != null) ? operator : "");
+		}
+	}
+
+	/**
+	 * All route objects of the document
+	 */
+	static class AnyFilter extends BGPRouteFilter {
+		@Override
+		Match evaluate(RouteIndex index) {
+			return Match.ofRoutes(index.universe());
+		}
+
+		@Override
+		public String toString() {
+			return "ANY";
+		}
+	}
+
+	static class AndFilter extends BGPRouteFilter {
+		private final List<BGPRouteFilter> operands;
+
+		AndFilter(List<BGPRouteFilter> operands) {
+			this.operands = operands;
+		}
+
+		@Override
+		Match evaluate(RouteIndex index) {
+			//Negated operands are subtracted, so the universe is only needed if every operand is negated
+			Match result = null;
+			for(BGPRouteFilter operand : operands) {
+				if(!(operand instanceof NotFilter)) {
+					Match operandMatch = operand.evaluate(index);
+					result = (result == null) ? operandMatch : intersect(index, result, operandMatch);
+				}
+			}
+			if(result == null)
+				result = Match.ofRoutes(index.universe());
+			for(BGPRouteFilter operand : operands) {
+				if(operand instanceof NotFilter)
+					result = subtract(index, result, ((NotFilter) operand).operand.evaluate(index));
+			}
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return "(" + StringUtils.join(operands, " AND ") + ")";
+		}
+	}
+
+	static class OrFilter extends BGPRouteFilter {
+		private final List<BGPRouteFilter> operands;
+
+		OrFilter(List<BGPRouteFilter> operands) {
+			this.operands = operands;
+		}
+
+		@Override
+		Match evaluate(RouteIndex index) {
+			Match result = Match.ofRoutes(new BitSet());
+			for(BGPRouteFilter operand : operands) {
+				Match operandMatch = operand.evaluate(index);
+				result.routes.or(operandMatch.routes);
+				result.ranges.addAll(operandMatch.ranges);
+			}
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return "(" + StringUtils.join(operands, " OR ") + ")";
+		}
+	}
+
+	/**
+	 * Routes of the document not matched by the operand, routes contained in the operand's ranges aren't matched
+	 */
+	static class NotFilter extends BGPRouteFilter {
+		private final BGPRouteFilter operand;
+
+		NotFilter(BGPRouteFilter operand) {
+			this.operand = operand;
+		}
+
+		@Override
+		Match evaluate(RouteIndex index) {
+			return subtract(index, Match.ofRoutes(index.universe()), operand.evaluate(index));
+		}
+
+		@Override
+		public String toString() {
+			return "NOT " + operand;
+		}
+	}
+}
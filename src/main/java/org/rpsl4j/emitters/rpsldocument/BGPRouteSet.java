@@ -5,12 +5,15 @@
 
 package org.rpsl4j.emitters.rpsldocument;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.lang3.tuple.Pair;
-
-import com.google.common.collect.Sets;
+import org.rpsl4j.util.SparseBitmap;
+import org.rpsl4j.util.SymbolTable;
 
 import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.rpsl.RpslObject;
@@ -19,61 +22,80 @@ import net.ripe.db.whois.common.rpsl.attrs.AttributeParseException;
 
 public class BGPRouteSet extends BGPRpslSet {
 	
+	//Prefix members, parsed once with their range operators applied
+	final Set<BGPRoute> memberRoutes;
+	
 	public BGPRouteSet(RpslObject obj) {
-		super(obj);
-	}	
-
-	@Override
-	protected Set<BGPRoute> resolve(BGPRpslDocument parentRpslDocument, Set<BGPRpslSet> visitedNodes) {
-		HashSet<BGPRoute> flattenedRoutes = new HashSet<BGPRoute>();
-		
-		if (visitedNodes.contains(this)) //ensure we're not retracing our footsteps
-			return flattenedRoutes;
-		visitedNodes.add(this); //add this set to the index
+		this(obj, new SymbolTable());
+	}
+	
+	BGPRouteSet(RpslObject obj, SymbolTable symbols) {
+		super(obj, symbols, "rs-");
 		
-		//Resolve route prefixes or route-sets in members list
-		for(CIString member : members) {
-			//Split member into its name and prefix
+		//Parse the prefix members once, members that aren't prefixes or route-sets are skipped
+		Set<BGPRoute> memberRoutes = new HashSet<BGPRoute>();
+		for(CIString member : getMembers(obj)) {
+			//Split member into its name and range operator
 			Pair<String, String> refMemberPair = splitPrefix(member.toString());
 			String 	memberName = refMemberPair.getLeft(),
 					prefix = refMemberPair.getRight();
 			
-			if(prefix != null) {
-				log.warn("Encountered prefix operator'" + member + "' this is unsupported and the member will be skipped");
+			//Prefixes always have a length, so names without one needn't be tried
+			if(memberName.indexOf('/') == -1)
 				continue;
-			}
 			
-			//Try it as a prefix
+			//A range operator makes it a range of prefixes
 			try {
 				BGPRoute newRoute = new BGPRoute(AddressPrefixRange.parse(memberName), null);
 
-				flattenedRoutes.add(newRoute);
-				continue;
-			} catch(AttributeParseException e) {}
-			
-			//Try member as a route set
-			if(memberName.startsWith("rs-")) {
-				BGPRpslSet memberSetObject = parentRpslDocument.routeSets.get(memberName);
-				Set<BGPRoute> resolvedRoutes = memberSetObject.resolve(parentRpslDocument, visitedNodes);
-				
-				flattenedRoutes.addAll(resolvedRoutes);
+				if(prefix == null)
+					memberRoutes.add(newRoute);
+				else
+					memberRoutes.addAll(applyRangeOperator(Collections.singleton(newRoute), prefix, member.toString()));
+			} catch(AttributeParseException e) {
+				log.warn("Member '" + member + "' of " + getName() + " is not a valid prefix and will be skipped");
 			}
-			
-		}				
+		}
+		this.memberRoutes = Collections.unmodifiableSet(memberRoutes);
+	}
+
+	@Override
+	List<String> getMemberNames() {
+		List<String> memberNames = new ArrayList<String>();
+		for(BGPRoute route : memberRoutes) {
+			String prefix = route.getRouteNetworkString() + "/" + route.getRoutePrefix();
+			memberNames.add(route.hasRangeOperator() ? prefix + "^" + route.getMinLength() + "-" + route.getMaxLength() : prefix);
+		}
+		memberNames.addAll(super.getMemberNames());
+		return memberNames;
+	}
+
+	@Override
+	BGPRpslSet getDocumentSet(BGPRpslDocument parentRpslDocument, int setId) {
+		return parentRpslDocument.getRouteSet(setId);
+	}
+
+	@Override
+	Set<BGPRoute> resolveDirectRoutes(BGPRpslDocument parentRpslDocument) {
+		HashSet<BGPRoute> flattenedRoutes = new HashSet<BGPRoute>(memberRoutes);
+		
+		//Resolve member route-sets with range operators
+		flattenedRoutes.addAll(resolveRangedMemberSets(parentRpslDocument));
 		
 		//Resolve mbrs-by-ref routes
-		if(mbrsByRef.size() == 1 && mbrsByRef.contains(CIString.ciString("ANY"))) {
+		int setId = documentSymbol(parentRpslDocument, nameId);
+		if(mbrsByRefAny) {
 			//Take all routes that are member-of this set
-			flattenedRoutes.addAll(parentRpslDocument.getSetMemberRoutes(name));
-		} else if(mbrsByRef.size() > 0) {
-			//Take intersection of routes that are member-of this set, and routes mnt-by a mbr-by-ref maintainer
-			Set<BGPRoute> 	setMembers 		= parentRpslDocument.getSetMemberRoutes(name),
-							byRefMembers 	= new HashSet<>();
+			flattenedRoutes.addAll(parentRpslDocument.getRouteObjects(parentRpslDocument.getSetMemberRouteIds(setId)));
+		} else if(mbrsByRefIds.length > 0) {
+			//Take intersection of route ids that are member-of this set, and route ids mnt-by a mbr-by-ref maintainer
+			SparseBitmap	setMembers 		= parentRpslDocument.getSetMemberRouteIds(setId),
+							byRefMembers 	= new SparseBitmap();
 			
-			for(CIString maintainer : mbrsByRef)
-				byRefMembers.addAll(parentRpslDocument.getMntByRoutes(maintainer));
+			for(int maintainer : mbrsByRefIds)
+				byRefMembers = SparseBitmap.or(byRefMembers, parentRpslDocument.getMntByRouteIds(documentSymbol(parentRpslDocument, maintainer)));
 			
-			flattenedRoutes.addAll(Sets.intersection(setMembers, byRefMembers));
+			flattenedRoutes.addAll(parentRpslDocument.getRouteObjects(SparseBitmap.and(setMembers, byRefMembers)));
 		}
 		
 		return flattenedRoutes;
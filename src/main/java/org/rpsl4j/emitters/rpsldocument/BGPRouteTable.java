@@ -6,23 +6,27 @@
 package org.rpsl4j.emitters.rpsldocument;
 
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import net.ripe.db.whois.common.rpsl.attrs.AttributeParseException;
-import net.ripe.db.whois.common.rpsl.attrs.IPAddress;
 
-import org.apache.commons.lang3.tuple.Pair;
+import com.google.common.collect.ImmutableMap;
 
 /**
- * BGPRouteTable represents the a table taht can be exported to an ODL configuration
+ * BGPRouteTable represents the a table taht can be exported to an ODL configuration.
+ * Tables of a document with the same routes and actions share a single immutable route set.
  * @author Benjamin George Roberts
  */
 public class BGPRouteTable implements Iterable<BGPRoute> {
 	String peerAddress, speakerName, tableName;
 	long peerAutNum;
+	BGPPeeringKey peer;
 	Set<BGPRoute> routeSet;
+	ImmutableMap<BGPRoute, Map<String, String>> routeActions; //shared map the route set is the key set of
+	private final int hash;
 	
 	/**
 	 * Construct a new BGPRouteTable using the provided fields and route set
@@ -35,28 +39,42 @@ public class BGPRouteTable implements Iterable<BGPRoute> {
 	 */
 	public BGPRouteTable(long peerAutNum, String peerAddress,
 			String speakerName, Collection<BGPRoute> routeSet) {
-		//Sanity check arguments, will throw AttributeParseException on bad arguments
-		if(peerAutNum <= 0)
-			throw new IllegalArgumentException("Illegal peer ASN: " + peerAutNum);
-		try {
-			IPAddress.parse(peerAddress);
-		} catch (AttributeParseException e)
-		{
-			throw new IllegalArgumentException("Illegal peer address: " + peerAddress);
-		}
-		
+		//Sanity check arguments, will throw IllegalArgumentException on bad arguments
+		this(BGPPeeringKey.of(peerAutNum, peerAddress), peerAddress, speakerName, routeSet);
+	}
+	
+	/**
+	 * Construct a new BGPRouteTable of a peer whose address has already been parsed
+	 * @param peer key of the peer the table is exported to
+	 * @param peerAddress Address of the peer, used to name the table
+	 * @param speakerName Name of the AutNum the speaker is associated with
+	 * @param routeSet Routes to populate table with
+	 */
+	BGPRouteTable(BGPPeeringKey peer, String peerAddress, String speakerName, Collection<BGPRoute> routeSet) {
+		this(peer, peerAddress, speakerName, shareRoutes(routeSet, null));
+	}
+	
+	/**
+	 * Construct a new BGPRouteTable of routes that have already been shared
+	 * @param routeActions map of route to actions returned by {@link #shareRoutes(Collection, BGPRpslDocument)}
+	 */
+	private BGPRouteTable(BGPPeeringKey peer, String peerAddress, String speakerName, ImmutableMap<BGPRoute, Map<String, String>> routeActions) {
 		//Store fields
+		this.peer = peer;
 		this.peerAddress = peerAddress;
-		this.peerAutNum = peerAutNum;
+		this.peerAutNum = peer.getAutNum();
 		this.speakerName = speakerName;
-		this.routeSet = new HashSet<BGPRoute>(routeSet);
+		this.routeActions = routeActions;
+		this.routeSet = routeActions.keySet();
 		
 		//Assign table name, using "ANY" if the peer address is 0.0.0.0
-		if(peerAddress.equals(BGPRoute.ANY_ADDRESS)) {
+		if(peer.isAnyAddress()) {
 			this.tableName = String.format("AS%d(ANY)-in-%s", peerAutNum, speakerName);
 		} else {
 			this.tableName = String.format("AS%d(%s)-in-%s",peerAutNum, peerAddress, speakerName);
 		}
+		
+		this.hash = 31 * (31 * peer.hashCode() + speakerName.hashCode()) + routeActions.hashCode();
 	}
 	
 	/**
@@ -67,13 +85,18 @@ public class BGPRouteTable implements Iterable<BGPRoute> {
 	 * @throws AttributeParseException malformed rpsl statement
 	 */
 	public BGPRouteTable(long peerAutNum, String peerAddress, BGPAutNum speakerAutNum) {
-		//Initialise with empty route set
-		this(peerAutNum, peerAddress, speakerAutNum.name, new HashSet<BGPRoute>());
-		
-		//Attempt to retrieve table from speakerAutNum
-		Pair<Long, String> tableIdentifier = Pair.of(peerAutNum, peerAddress);
-		if(speakerAutNum.includedRouteMap.containsKey(tableIdentifier)) 
-			this.routeSet = new HashSet<BGPRoute>(speakerAutNum.includedRouteMap.get(tableIdentifier));
+		this(BGPPeeringKey.of(peerAutNum, peerAddress), peerAddress, speakerAutNum);
+	}
+	
+	/**
+	 * Construct a new BGPRouteTable by querying a {@link BGPAutNum} instance for the routes of a peer whose address has already been parsed
+	 * @param peer key of the peer the table is exported to
+	 * @param peerAddress Address of the peer, used to name the table
+	 * @param speakerAutNum AutNum object speaker originates from. Used to lookup route table
+	 */
+	BGPRouteTable(BGPPeeringKey peer, String peerAddress, BGPAutNum speakerAutNum) {
+		//Tables of peers without exported routes are empty
+		this(peer, peerAddress, speakerAutNum.name, speakerAutNum.getPeerRouteActions(peer));
 	}
 	
 	/**
@@ -83,7 +106,41 @@ public class BGPRouteTable implements Iterable<BGPRoute> {
 	 * @throws AttributeParseException malformed rpsl statement
 	 */
 	public BGPRouteTable(long peerAutNum, BGPAutNum speakerAutNum) {
-		this(peerAutNum, BGPRoute.ANY_ADDRESS, speakerAutNum);
+		this(BGPPeeringKey.ofAS(peerAutNum), BGPRoute.ANY_ADDRESS, speakerAutNum);
+	}
+	
+	/**
+	 * Get the immutable map holding a collection of routes and their actions. The key set of the map is the
+	 * table's route set. Of routes that are equal but for their actions, the first is kept.
+	 * @param routes routes of the table
+	 * @param parentDocument document whose tables the map is shared between, or null to not share it
+	 * @return immutable map of route to actions, shared with the document's other tables of the same routes and actions
+	 */
+	static ImmutableMap<BGPRoute, Map<String, String>> shareRoutes(Collection<BGPRoute> routes, BGPRpslDocument parentDocument) {
+		Map<BGPRoute, Map<String, String>> routeActions = new LinkedHashMap<BGPRoute, Map<String, String>>();
+		for(BGPRoute route : routes) {
+			if(!routeActions.containsKey(route))
+				routeActions.put(route, route.getActions());
+		}
+		ImmutableMap<BGPRoute, Map<String, String>> routeMap = ImmutableMap.copyOf(routeActions);
+		return (parentDocument != null) ? parentDocument.internRouteActions(routeMap) : routeMap;
+	}
+	
+	/**
+	 * Get the routes of the table
+	 * @return read-only set of the table's routes
+	 */
+	public Set<BGPRoute> getRoutes() {
+		return routeSet;
+	}
+	
+	/**
+	 * Get the routes of the table aggregated into fewer, less specific routes
+	 * @see BGPRouteAggregator
+	 * @return aggregated routes of the table
+	 */
+	public Set<BGPRoute> getAggregatedRoutes() {
+		return BGPRouteAggregator.aggregate(routeSet);
 	}
 	
 	@Override
@@ -91,6 +148,23 @@ public class BGPRouteTable implements Iterable<BGPRoute> {
 		return tableName;
 	}
 
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if(!(o instanceof BGPRouteTable))
+			return false;
+		
+		//Tables of a document share equal maps, so the routes and actions are only compared when the maps differ.
+		//Tables of the same routes with different actions differ
+		BGPRouteTable other = (BGPRouteTable) o;
+		return this.hash == other.hash && this.peer.equals(other.peer) && this.speakerName.equals(other.speakerName)
+				&& (this.routeActions == other.routeActions || this.routeActions.equals(other.routeActions));
+	}
+
 	@Override
 	public Iterator<BGPRoute> iterator() {
 		return routeSet.iterator();
@@ -5,71 +5,218 @@
 
 package org.rpsl4j.emitters.rpsldocument;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
+import org.rpsl4j.io.RpslObjectClassFilter;
+import org.rpsl4j.util.LongHashSet;
+import org.rpsl4j.util.LongObjectHashMap;
+import org.rpsl4j.util.LongSet;
+import org.rpsl4j.util.PrefixTrie;
+import org.rpsl4j.util.SparseBitmap;
+import org.rpsl4j.util.SymbolTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.io.RpslObjectStreamReader;
 import net.ripe.db.whois.common.rpsl.AttributeType;
 import net.ripe.db.whois.common.rpsl.ObjectType;
+import net.ripe.db.whois.common.rpsl.RpslAttribute;
 import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.common.rpsl.attrs.AddressPrefixRange;
 import net.ripe.db.whois.common.rpsl.attrs.AutNum;
 
+/**
+ * BGP model of a set of RPSL objects: its aut-nums, speakers and peers, and indexes of its routes and sets.
+ * The document isn't modified once it is built. The aut-nums, speakers and peers are built once, on first use or by
+ * {@link Builder#build()}, and route tables are resolved once on demand, so a document can be shared and read from any number of threads.
+ * @author Benjamin George Roberts
+ */
 public class BGPRpslDocument {
 
 	/**
-	 * Object sets available for templates
+	 * Types of objects used by the document, objects of other types are ignored
 	 */
-	Set<RpslObject> rpslObjects = new HashSet<RpslObject>();
-	Set<BGPAutNum> autNumSet = new HashSet<BGPAutNum>();
-	Set<BGPInetRtr> inetRtrSet = new HashSet<BGPInetRtr>();
-	Set<BGPPeer> peerSet = new HashSet<BGPPeer>();
+	public final static Set<ObjectType> OBJECT_TYPES = Collections.unmodifiableSet(EnumSet.of(
+			ObjectType.ROUTE, ObjectType.AUT_NUM, ObjectType.INET_RTR, ObjectType.AS_SET, ObjectType.ROUTE_SET));
+
+	/**
+	 * Object sets available for templates, each built once. Memoized suppliers publish them safely to other threads.
+	 */
+	private final Supplier<Map<String, BGPAutNum>> autNumMap = Suppliers.memoize(new Supplier<Map<String, BGPAutNum>>() {
+		@Override
+		public Map<String, BGPAutNum> get() {
+			return buildAutNumMap();
+		}
+	});
+	private final Supplier<Set<BGPAutNum>> autNumSet = Suppliers.memoize(new Supplier<Set<BGPAutNum>>() {
+		@Override
+		public Set<BGPAutNum> get() {
+			return ImmutableSet.copyOf(getAutNumMap().values());
+		}
+	});
+	//The parts of inet-rtr objects speakers are built from, kept once the raw objects are released
+	private final Supplier<List<BGPInetRtr.Declaration>> inetRtrDeclarations = Suppliers.memoize(new Supplier<List<BGPInetRtr.Declaration>>() {
+		@Override
+		public List<BGPInetRtr.Declaration> get() {
+			List<BGPInetRtr.Declaration> declarations = new ArrayList<BGPInetRtr.Declaration>();
+			for(RpslObject o : getRpslObjects(ObjectType.INET_RTR))
+				declarations.add(new BGPInetRtr.Declaration(o));
+			return Collections.unmodifiableList(declarations);
+		}
+	});
+	private final Supplier<Set<BGPInetRtr>> inetRtrSet = Suppliers.memoize(new Supplier<Set<BGPInetRtr>>() {
+		@Override
+		public Set<BGPInetRtr> get() {
+			return buildInetRtrSet();
+		}
+	});
+	private final Supplier<Set<BGPPeer>> peerSet = Suppliers.memoize(new Supplier<Set<BGPPeer>>() {
+		@Override
+		public Set<BGPPeer> get() {
+			return buildPeerSet();
+		}
+	});
+	
+	//Objects of the document's types, bucketed by a single pass over the objects it was built from. The only references
+	//the document holds to the raw objects, objects of other types aren't kept
+	private volatile Map<ObjectType, List<RpslObject>> objectsByType = new EnumMap<ObjectType, List<RpslObject>>(ObjectType.class);
+	//Set once the raw objects have been dropped, the BGP model is built beforehand
+	private volatile boolean rawObjectsReleased = false;
 
 	final static Logger log = LoggerFactory.getLogger(BGPRpslDocument.class);
 	
+	//Pool shared by all documents, building aut-nums and resolving announced routes. Its workers are daemon threads
+	private static final ForkJoinPool BUILD_POOL = new ForkJoinPool();
+	//Returned for names without ids in an index, never modified
+	private static final SparseBitmap NO_IDS = new SparseBitmap();
+	
+	
+    //Set and maintainer names of the document, indexes below are keyed by their ids
+    private final SymbolTable symbols = new SymbolTable();
+    //Canonical instances of next hop and peer address strings
+    private final Interner<String> addresses = Interners.newStrongInterner();
+    //Canonical route maps of the route tables. Peers of an aut-num usually share a handful of distinct policies.
+    //Routes are keyed with their actions as route equality ignores actions, equal routes exported with different actions aren't shared
+    private final Interner<ImmutableMap<BGPRoute, Map<String, String>>> tableRoutes = Interners.newWeakInterner();
+	
+    //Route objects by their dense id, assigned in document order. Membership indexes are bitmaps of these ids
+    private final List<BGPRpslRoute> routeObjects = new ArrayList<BGPRpslRoute>();
+    private final LongObjectHashMap<SparseBitmap>	setMemberRoutes	= new LongObjectHashMap<SparseBitmap>(), //ids of routes by the set(s) they say they are members of
+    												mntByRoutes	= new LongObjectHashMap<SparseBitmap>(); //ids of routes grouped by their maintainer
+    //Immutable sets of the routes of each maintainer and route set, built on first request
+    private final ConcurrentHashMap<Integer, Set<BGPRoute>>	mntByRouteSets	= new ConcurrentHashMap<Integer, Set<BGPRoute>>(),
+    														setMemberRouteSets	= new ConcurrentHashMap<Integer, Set<BGPRoute>>();
+    private final LongObjectHashMap<Set<BGPRpslRoute>>	asOriginRoutes	= new LongObjectHashMap<Set<BGPRpslRoute>>(); //routes by the ASs the route states as its origin, keyed by primitive ASN
 	
-    private Multimap<CIString, BGPRpslRoute>	setMemberRoutes	= HashMultimap.create(), //routes by the set(s) they say they are members of
-    											mntByRoutes	= HashMultimap.create(); //routes grouped by their maintainer
-    private Multimap<Long, BGPRpslRoute>		asOriginRoutes	= HashMultimap.create(); //routes by the ASs the route states as its origin
+    //route objects by their prefix, for covering and more specific lookups
+    private final PrefixTrie<List<BGPRpslRoute>>	ipv4PrefixRoutes = new PrefixTrie<List<BGPRpslRoute>>(),
+    										ipv6PrefixRoutes = new PrefixTrie<List<BGPRpslRoute>>();
 	
-    private Multimap<CIString, Long>			setMemberAutNum = HashMultimap.create(),
-												mntByAutNum = HashMultimap.create();
+    //ASNs of aut-nums by their dense id, and the ids of each ASN
+    private final long[] autNumsById;
+    private final LongObjectHashMap<Integer> autNumIds = new LongObjectHashMap<Integer>();
+    //Ids of aut-nums by the sets they are members of and their maintainer
+    private final LongObjectHashMap<SparseBitmap>			setMemberAutNum = new LongObjectHashMap<SparseBitmap>(),
+												mntByAutNum = new LongObjectHashMap<SparseBitmap>();
     
-    //Maps of route-set/as-set RPSL objects to java representations
-    Map<String, BGPRpslSet>		routeSets   = new HashMap<>(),
-    							asSets		= new HashMap<>();
+    //Maps of route-set/as-set name ids to java representations
+    private final LongObjectHashMap<BGPRpslSet>	routeSets   = new LongObjectHashMap<BGPRpslSet>(),
+    										asSets		= new LongObjectHashMap<BGPRpslSet>();
     
-	private Map<String, BGPAutNum> autNumMap = new HashMap<String, BGPAutNum>();
+	//Memoized resolution of route-sets and as-sets
+	private final BGPRpslSetResolver setResolver;
 	
+	//Compiled export attributes by their normalised text, shared between the document's aut-nums
+	private final ConcurrentHashMap<String, BGPExportPolicy> exportPolicies = new ConcurrentHashMap<String, BGPExportPolicy>();
+	//Routes announced by each distinct announce filter of the document's export policies
+	private final ConcurrentHashMap<String, Set<BGPRoute>> announcedRoutes = new ConcurrentHashMap<String, Set<BGPRoute>>();
+	
+	/**
+	 * Create a document of a copy of the given objects, its BGP model is built on first use
+	 * @param rpslObjects objects of the document
+	 * @deprecated use {@link #builder()}, which builds the model before the document is shared
+	 */
+	@Deprecated
 	public BGPRpslDocument(Set<RpslObject> rpslObjects) {
-		this.rpslObjects = rpslObjects;
+		this(rpslObjects, BGPRpslSetResolver.DEFAULT_CACHE_SIZE);
+	}
+	
+	/**
+	 * Create a document of a copy of the given objects with a bounded cache of resolved sets
+	 * @param rpslObjects objects of the document
+	 * @param setCacheSize maximum number of resolved sets (or cycles of sets) kept in memory
+	 * @deprecated use {@link #builder()}, which builds the model before the document is shared
+	 */
+	@Deprecated
+	public BGPRpslDocument(Set<RpslObject> rpslObjects, int setCacheSize) {
+		this(setCacheSize, rpslObjects);
+	}
+	
+	/**
+	 * Create a document of objects, see {@link Builder#build()}. Only the objects of the document's types are kept.
+	 * @param setCacheSize maximum number of resolved sets (or cycles of sets) kept in memory
+	 * @param rpslObjects objects of the document, not referenced after construction
+	 */
+	BGPRpslDocument(int setCacheSize, Iterable<RpslObject> rpslObjects) {
+		classifyRpslObjects(rpslObjects);
 		
 		//Route and AutNum objects need to be parsed first due to member-of relatioshis
 		parseRpslRouteObjects();
-		parseRpslAutNumObjects();
+		autNumsById = parseRpslAutNumObjects();
 		//Can now resolve sets with member-of relationships
 		parseRpslSetObjects(); 
+		
+		List<BGPRpslSet> sets = routeSets.values();
+		sets.addAll(asSets.values());
+		setResolver = new BGPRpslSetResolver(this, sets, setCacheSize);
 	}
 
 
 	/**
-	 * Construct an RPSL document by iterating through {@link RpslObjectStreamReader} objects
+	 * Construct an RPSL document by iterating through {@link RpslObjectStreamReader} objects.
+	 * Objects of types not in {@link #OBJECT_TYPES} are skipped without being parsed.
 	 * @param rpslDocumentReader Stream to read {@link RpslObject}s from
 	 * @return {@link BGPRpslDocument} containing {@link RpslObject}s
 	 */
 	public static BGPRpslDocument parseRpslDocument(RpslObjectStreamReader rpslDocumentReader) {
-		HashSet<RpslObject> rpslObjectSet = new HashSet<RpslObject>();
+		return parseRpslDocument(rpslDocumentReader, false);
+	}
+	
+	/**
+	 * Construct an RPSL document by iterating through {@link RpslObjectStreamReader} objects, optionally in low-memory mode.
+	 * In low-memory mode the BGP model is built straight away and the parsed objects are released (see {@link #releaseRawObjects()}),
+	 * for emitters that only use the BGP model.
+	 * @param rpslDocumentReader Stream to read {@link RpslObject}s from
+	 * @param releaseRawObjects true to release the parsed objects once the document is built
+	 * @return {@link BGPRpslDocument} containing {@link RpslObject}s
+	 */
+	public static BGPRpslDocument parseRpslDocument(RpslObjectStreamReader rpslDocumentReader, boolean releaseRawObjects) {
+		Builder builder = builder().releaseRawObjects(releaseRawObjects);
 		
-		for(String stringObject : rpslDocumentReader)
+		for(String stringObject : new RpslObjectClassFilter(OBJECT_TYPES).filter(rpslDocumentReader))
     	{
     		//parse can return null or throw exceptions
     		try {
@@ -77,7 +224,7 @@ public class BGPRpslDocument {
     			if (object == null)
     				throw new NullPointerException("Object failed to parse");
         		
-    			rpslObjectSet.add(object);
+    			builder.addObject(object);
     		} catch (NullPointerException | IllegalArgumentException e) {
     			//Object failed to parse, print error with excerpt of object
     			String[] splitObject = stringObject.split("\n");
@@ -92,63 +239,273 @@ public class BGPRpslDocument {
     		}
     	}
 		
-		return new BGPRpslDocument(rpslObjectSet);
+		return builder.build();
+	}
+	
+	/**
+	 * Create a builder of a document. Documents built by the builder have their aut-nums built before they are returned,
+	 * see {@link Builder#build()}.
+	 * @return new, empty builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * Collects the objects of a document and builds it. Builders aren't thread-safe, the documents they build are.
+	 */
+	public static class Builder {
+		//Objects of the document's types, handed to the document as they are
+		final Set<RpslObject> rpslObjects = new HashSet<RpslObject>();
+		private int setCacheSize = BGPRpslSetResolver.DEFAULT_CACHE_SIZE;
+		private boolean releaseRawObjects = false;
+		
+		private Builder() {}
+		
+		/**
+		 * Add an object to the document, objects of types not in {@link BGPRpslDocument#OBJECT_TYPES} are ignored
+		 * @param object object to add
+		 * @return this builder
+		 */
+		public Builder addObject(RpslObject object) {
+			if(OBJECT_TYPES.contains(object.getType()))
+				rpslObjects.add(object);
+			return this;
+		}
+		
+		/**
+		 * Add objects to the document, objects of types not in {@link BGPRpslDocument#OBJECT_TYPES} are ignored
+		 * @param objects objects to add
+		 * @return this builder
+		 */
+		public Builder addObjects(Collection<RpslObject> objects) {
+			for(RpslObject object : objects)
+				addObject(object);
+			return this;
+		}
+		
+		/**
+		 * @param setCacheSize maximum number of resolved sets (or cycles of sets) kept in memory
+		 * @return this builder
+		 */
+		public Builder setCacheSize(int setCacheSize) {
+			this.setCacheSize = setCacheSize;
+			return this;
+		}
+		
+		/**
+		 * @param releaseRawObjects true to release the objects once the document is built, see {@link BGPRpslDocument#releaseRawObjects()}
+		 * @return this builder
+		 */
+		public Builder releaseRawObjects(boolean releaseRawObjects) {
+			this.releaseRawObjects = releaseRawObjects;
+			return this;
+		}
+		
+		/**
+		 * Build the document of the added objects, including its aut-nums, releasing the raw objects if requested.
+		 * Speakers, peers and their route tables are built on first use, so emitters that never read them don't pay for every table.
+		 * @return built document
+		 */
+		public BGPRpslDocument build() {
+			BGPRpslDocument doc = new BGPRpslDocument(setCacheSize, rpslObjects);
+			if(releaseRawObjects)
+				doc.releaseRawObjects();
+			else
+				doc.getAutNumMap();
+			return doc;
+		}
+	}
+	
+	/**
+	 * Bucket the document's objects by their type, so later stages only iterate over objects of their type.
+	 * Objects of types not in {@link #OBJECT_TYPES} are dropped.
+	 * @param rpslObjects objects of the document
+	 */
+	private void classifyRpslObjects(Iterable<RpslObject> rpslObjects) {
+		for(ObjectType type : OBJECT_TYPES)
+			objectsByType.put(type, new ArrayList<RpslObject>());
+		
+		for(RpslObject o : rpslObjects) {
+			List<RpslObject> bucket = objectsByType.get(o.getType());
+			if(bucket != null)
+				bucket.add(o);
+		}
+	}
+	
+	/**
+	 * Build the aut-nums of the document, extract the inet-rtr declarations its speakers are built from and release the raw
+	 * RPSL objects. The model only holds what it extracted, so the objects and their attribute parse trees can be collected,
+	 * unless the caller still references them. Speakers, peers and route tables are still built on first use afterwards.
+	 * Calling it again has no effect.
+	 * @return counts of what the document released, none if it was already released
+	 */
+	public synchronized ReleasedObjects releaseRawObjects() {
+		if(rawObjectsReleased)
+			return new ReleasedObjects(0, 0);
+		
+		//Everything built from the raw objects has to be extracted before they go
+		getAutNumMap();
+		inetRtrDeclarations.get();
+		
+		int objects = 0, attributes = 0;
+		for(List<RpslObject> bucket : objectsByType.values()) {
+			objects += bucket.size();
+			for(RpslObject o : bucket)
+				attributes += o.getAttributes().size();
+		}
+		
+		//Replace rather than clear, readers may be iterating over the buckets
+		objectsByType = new EnumMap<ObjectType, List<RpslObject>>(ObjectType.class);
+		rawObjectsReleased = true;
+		
+		log.info("Released {} raw objects ({} attributes)", objects, attributes);
+		return new ReleasedObjects(objects, attributes);
+	}
+	
+	/**
+	 * Counts of the raw objects released by {@link BGPRpslDocument#releaseRawObjects()}. These are all the objects the
+	 * document held, objects of types not in {@link BGPRpslDocument#OBJECT_TYPES} aren't kept when it is built.
+	 */
+	public static final class ReleasedObjects {
+		private final int objects, attributes;
+		
+		private ReleasedObjects(int objects, int attributes) {
+			this.objects = objects;
+			this.attributes = attributes;
+		}
+		
+		/**
+		 * @return number of RPSL objects released
+		 */
+		public int getObjects() {
+			return objects;
+		}
+		
+		/**
+		 * @return total number of attributes of the released objects, including their type attributes
+		 */
+		public int getAttributes() {
+			return attributes;
+		}
+		
+		@Override
+		public String toString() {
+			return objects + " objects (" + attributes + " attributes)";
+		}
+	}
+	
+	/**
+	 * @return true if the raw RPSL objects of the document have been released
+	 */
+	public boolean isRawObjectsReleased() {
+		return rawObjectsReleased;
+	}
+	
+	/**
+	 * Get the document's objects of a type
+	 * @param type type of objects to retrieve
+	 * @return objects of the type, empty if the type is not in {@link #OBJECT_TYPES} or the objects have been released
+	 */
+	List<RpslObject> getRpslObjects(ObjectType type) {
+		List<RpslObject> bucket = objectsByType.get(type);
+		return (bucket != null) ? Collections.unmodifiableList(bucket) : Collections.<RpslObject>emptyList();
 	}
 	
 	/**
 	 * Parse Route type objects to identify member-of and mbrs-by-ref relationships
 	 */
 	private void parseRpslRouteObjects() {
-		for(RpslObject o : this.rpslObjects) {
-			if(o.getType() != ObjectType.ROUTE)
-				continue; //skip non Route objects
-
-			BGPRpslRoute bgpRoute = new BGPRpslRoute(o);
+		for(RpslObject o : getRpslObjects(ObjectType.ROUTE)) {
+			BGPRpslRoute bgpRoute = new BGPRpslRoute(o, symbols);
 			
 			if(bgpRoute.isWithdrawn())
 				continue;
 			
-			asOriginRoutes.put(bgpRoute.asNumber, bgpRoute);
-			for(CIString set : bgpRoute.parentSets) {
-				setMemberRoutes.put(set, bgpRoute);
+			int routeId = routeObjects.size();
+			routeObjects.add(bgpRoute);
+			
+			addRoute(asOriginRoutes, bgpRoute.asNumber, bgpRoute);
+			addPrefixRoute(bgpRoute);
+			for(int set : bgpRoute.parentSetIds) {
+				addId(setMemberRoutes, set, routeId);
 			}
 
-			if(bgpRoute.getMaintainer() != null)
-				mntByRoutes.put(bgpRoute.getMaintainer(), bgpRoute);
+			if(bgpRoute.getMaintainerId() != SymbolTable.NO_SYMBOL)
+				addId(mntByRoutes, bgpRoute.getMaintainerId(), routeId);
 
 		}
 	}
 	
+	private void addPrefixRoute(BGPRpslRoute route) {
+		PrefixTrie<List<BGPRpslRoute>> prefixRoutes = getPrefixRoutes(route);
+		List<BGPRpslRoute> routes = prefixRoutes.get(route.getPrefixHigh(), route.getPrefixLow(), route.getRoutePrefix());
+		if(routes == null) {
+			routes = new ArrayList<BGPRpslRoute>(1);
+			prefixRoutes.put(route.getPrefixHigh(), route.getPrefixLow(), route.getRoutePrefix(), routes);
+		}
+		routes.add(route);
+	}
+	
+	private static void addRoute(LongObjectHashMap<Set<BGPRpslRoute>> routeIndex, long key, BGPRpslRoute route) {
+		Set<BGPRpslRoute> routes = routeIndex.get(key);
+		if(routes == null) {
+			routes = new HashSet<BGPRpslRoute>();
+			routeIndex.put(key, routes);
+		}
+		routes.add(route);
+	}
+	
+	private static void addId(LongObjectHashMap<SparseBitmap> idIndex, long key, int id) {
+		SparseBitmap ids = idIndex.get(key);
+		if(ids == null) {
+			ids = new SparseBitmap();
+			idIndex.put(key, ids);
+		}
+		ids.add(id);
+	}
+	
 	/**
 	 *	Parse and build {@link BGPRouteSet} type objects
 	 */
 	private void parseRpslSetObjects() {
-		for(RpslObject o : this.rpslObjects) {
-			if(o.getType() == ObjectType.ROUTE_SET) {
-				routeSets.put(o.getValueForAttribute(AttributeType.ROUTE_SET).toLowerCase(), new BGPRouteSet(o));
-			} else if(o.getType() == ObjectType.AS_SET) {
-				asSets.put(o.getValueForAttribute(AttributeType.AS_SET).toLowerCase(), new BGPAsSet(o));
-			}
+		for(RpslObject o : getRpslObjects(ObjectType.ROUTE_SET)) {
+			BGPRpslSet routeSet = new BGPRouteSet(o, symbols);
+			routeSets.put(routeSet.nameId, routeSet);
+		}
+		for(RpslObject o : getRpslObjects(ObjectType.AS_SET)) {
+			BGPRpslSet asSet = new BGPAsSet(o, symbols);
+			asSets.put(asSet.nameId, asSet);
 		}
 	}
 	
 	/**
 	 * Parse AutNum type objects to identify member-of and mbrs-by-ref relationships
+	 * @return ASNs of the aut-nums by their dense id
 	 */
-	private void parseRpslAutNumObjects() {
-		for(RpslObject o: this.rpslObjects) {
-			if(o.getType() != ObjectType.AUT_NUM)
-				continue;
-			Long autNum = AutNum.parse(o.getTypeAttribute().getCleanValue()).getValue();
+	private long[] parseRpslAutNumObjects() {
+		long[] autNumsById = new long[16];
+		for(RpslObject o: getRpslObjects(ObjectType.AUT_NUM)) {
+			long autNum = AutNum.parse(o.getTypeAttribute().getCleanValue()).getValue();
+			Integer autNumId = autNumIds.get(autNum);
+			if(autNumId == null) {
+				//Assign the next id to ASNs seen for the first time
+				autNumId = autNumIds.size();
+				if(autNumId == autNumsById.length)
+					autNumsById = Arrays.copyOf(autNumsById, autNumId * 2);
+				autNumsById[autNumId] = autNum;
+				autNumIds.put(autNum, autNumId);
+			}
             
 			//Add to member-of etc sets
             if(o.containsAttribute(AttributeType.MNT_BY))
-                mntByAutNum.put(o.getValueForAttribute(AttributeType.MNT_BY), autNum);
+                addId(mntByAutNum, symbols.intern(o.getValueForAttribute(AttributeType.MNT_BY)), autNumId);
             if(o.containsAttribute(AttributeType.MEMBER_OF)) {
                 for(CIString parentSet : o.getValuesForAttribute(AttributeType.MEMBER_OF))
-                    setMemberAutNum.put(parentSet, autNum);
+                    addId(setMemberAutNum, symbols.intern(parentSet), autNumId);
             }
 		}
+		return autNumsById;
 	}
 	
 	
@@ -158,46 +515,120 @@ public class BGPRpslDocument {
 	 * @return set of routes declared as member of set
 	 */
 	public Collection<BGPRpslRoute> getSetRoutes(CIString setName) {
-		return setMemberRoutes.get(setName);
+		return ImmutableSet.copyOf(getRouteObjects(getSetMemberRouteIds(symbols.lookup(setName))));
 	}
 	
 	/**
 	 * Generate or return cached set of {@link BGPAutNum}s declared in rpsl document
-	 * @return Set of document's {@link BGPAutNum}s 
+	 * @return immutable set of document's {@link BGPAutNum}s 
 	 */
 	public Set<BGPAutNum> getAutNumSet() {
-		//Cache autnum set
-		if(this.autNumSet.size() != 0) 
-			return this.autNumSet;
-		
-		this.autNumSet = new HashSet<BGPAutNum>(getAutNumMap().values());
-		return this.autNumSet;
-		
+		return autNumSet.get();
 	}
 	
 	/**
 	 * Generate or return cached map of Autonomous System Numbers to {@link BGPAutNum}s decalred in rpsl document.
-	 * @return Map of AS Numbers to {@link BGPAutNum}s as declared in objects
+	 * @return immutable map of AS Numbers to {@link BGPAutNum}s as declared in objects
 	 */
 	Map<String, BGPAutNum> getAutNumMap() {
-		//Cache autnum map
-		if(this.autNumMap.size() != 0)
-			return this.autNumMap;
-				
-		//Iterate through object set to find aut-num objects
-		for(RpslObject o: this.rpslObjects) {
-			if(o.getType() != ObjectType.AUT_NUM)
-				continue;
-			String asNumber = o.getTypeAttribute().getCleanValue().toString();
-			
-			//TODO check and handle case where asNumber is already inserted
-			autNumMap.put(asNumber, new BGPAutNum(o, this));
-			
-			//Add to member-of etc sets
+		return autNumMap.get();
+	}
+	
+	/**
+	 * Build the map of Autonomous System Numbers to {@link BGPAutNum}s. The {@link BGPAutNum}s are built in parallel on a fork/join pool.
+	 */
+	private Map<String, BGPAutNum> buildAutNumMap() {
+		final List<AutNumTask> autNumTasks = new ArrayList<AutNumTask>();
+		for(RpslObject o: getRpslObjects(ObjectType.AUT_NUM))
+			autNumTasks.add(new AutNumTask(o, this));
+		
+		invokeAll(autNumTasks);
+		
+		//Insert in document order so the map is the same as one built sequentially
+		Map<String, BGPAutNum> autNumMap = new LinkedHashMap<String, BGPAutNum>();
+		for(AutNumTask autNumTask : autNumTasks) {
+			String asNumber = autNumTask.autNumObject.getTypeAttribute().getCleanValue().toString();
 			
+			//Keep the first of duplicate aut-nums
+			if(autNumMap.containsKey(asNumber))
+				log.warn("Duplicate aut-num {}, ignoring", asNumber);
+			else
+				autNumMap.put(asNumber, autNumTask.join());
+		}
+		
+		return ImmutableMap.copyOf(autNumMap);
+	}
+	
+	/**
+	 * Run fork/join tasks on the shared pool, or in the current pool if called from one, and wait for them to finish
+	 * @param tasks tasks to run
+	 */
+	private static void invokeAll(final Collection<? extends ForkJoinTask<?>> tasks) {
+		if(ForkJoinTask.inForkJoinPool()) {
+			ForkJoinTask.invokeAll(tasks);
+			return;
+		}
+		
+		BUILD_POOL.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				ForkJoinTask.invokeAll(tasks);
+			}
+		});
+	}
+	
+	/**
+	 * Resolve the routes announced by export policies, one task per policy on the shared pool.
+	 * Tables of the policies' peerings are then assembled from the resolved routes without resolving filters.
+	 * @param policies compiled export attributes
+	 */
+	void resolveAnnouncedRoutes(Collection<BGPExportPolicy> policies) {
+		List<AnnouncedRoutesTask> tasks = new ArrayList<AnnouncedRoutesTask>();
+		for(BGPExportPolicy policy : policies) {
+			if(policy.getAnnounceFilter() != null && !announcedRoutes.containsKey(policy.getAnnounceFilter().toString()))
+				tasks.add(new AnnouncedRoutesTask(policy, this));
+		}
+		invokeAll(tasks);
+	}
+	
+	/**
+	 * Fork/join task resolving the routes announced by a single export attribute
+	 */
+	private static class AnnouncedRoutesTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final BGPExportPolicy policy;
+		private final BGPRpslDocument doc;
+		
+		AnnouncedRoutesTask(BGPExportPolicy policy, BGPRpslDocument doc) {
+			this.policy = policy;
+			this.doc = doc;
 		}
 		
-		return autNumMap;
+		@Override
+		protected void compute() {
+			doc.getAnnouncedRoutes(policy);
+		}
+	}
+	
+	/**
+	 * Fork/join task building a single {@link BGPAutNum}
+	 */
+	private static class AutNumTask extends RecursiveTask<BGPAutNum> {
+		private static final long serialVersionUID = 1L;
+		private final RpslObject autNumObject;
+		private final BGPRpslDocument doc;
+		
+		AutNumTask(RpslObject autNumObject, BGPRpslDocument doc) {
+			this.autNumObject = autNumObject;
+			this.doc = doc;
+		}
+		
+		@Override
+		protected BGPAutNum compute() {
+			return new BGPAutNum(autNumObject, doc);
+		}
 	}
 	
 	/**
@@ -206,133 +637,365 @@ public class BGPRpslDocument {
 	 * @return as-set object or null
 	 */
 	BGPRpslSet getASSet(String setName) {
+		return getASSet(symbols.lookup(setName));
+	}
+	
+	/**
+	 * Get the as-set of the provided name id
+	 * @param setId id of the set's name in the document's symbol table
+	 * @return as-set object or null
+	 */
+	BGPRpslSet getASSet(int setId) {
 		//asSets initialised at construct time
-		return asSets.get(CIString.ciString(setName));
+		return asSets.get(setId);
 	}
 	
+	/**
+	 * Get the BGPRpslSet object representing the route-set of the provided name
+	 * @param setName name of route-set object to retrieve
+	 * @return route-set object or null
+	 */
 	BGPRpslSet getRouteSet(String setName) {
+		return getRouteSet(symbols.lookup(setName));
+	}
+	
+	/**
+	 * Get the route-set of the provided name id
+	 * @param setId id of the set's name in the document's symbol table
+	 * @return route-set object or null
+	 */
+	BGPRpslSet getRouteSet(int setId) {
 		//routeSets initialised at construct time
-		return routeSets.get(CIString.ciString(setName));
+		return routeSets.get(setId);
+	}
+	
+	/**
+	 * Get the document's canonical instance of an address string, so equal next hops and peer addresses share a String
+	 * @param address address string or null
+	 * @return equal, shared address string or null
+	 */
+	String internAddress(String address) {
+		return (address != null) ? addresses.intern(address) : null;
+	}
+	
+	/**
+	 * Get the document's canonical instance of a route table's routes and actions, so tables of equal routes share a map
+	 * @param routeActions immutable map of route to actions
+	 * @return equal, shared map
+	 */
+	ImmutableMap<BGPRoute, Map<String, String>> internRouteActions(ImmutableMap<BGPRoute, Map<String, String>> routeActions) {
+		return tableRoutes.intern(routeActions);
+	}
+	
+	/**
+	 * Get the table of set and maintainer names used by the document's indexes
+	 * @return document's symbol table
+	 */
+	SymbolTable getSymbols() {
+		return symbols;
+	}
+	
+	/**
+	 * Resolve the routes of a set, using the document's cache of resolved sets
+	 * @param set route-set or as-set to resolve
+	 * @return shared, unmodifiable set of the set's routes
+	 */
+	Set<BGPRoute> resolveSet(BGPRpslSet set) {
+		return setResolver.resolve(set);
+	}
+	
+	/**
+	 * Get the resolver of the document's sets
+	 * @return set resolver
+	 */
+	BGPRpslSetResolver getSetResolver() {
+		return setResolver;
 	}
 	
 	/**
 	 * Generate or return cached  set of {@link BGPInetRtr}s declared in the RPSL document.
 	 * Peers must be members of declared {@link BGPAutNum} objects.
-	 * @return Set of declared {@link BGPInetRtr}s
+	 * @return immutable set of declared {@link BGPInetRtr}s
 	 */
 	public Set<BGPInetRtr> getInetRtrSet() {
-		if(this.inetRtrSet.size() != 0)
-			return this.inetRtrSet;
-		
+		return inetRtrSet.get();
+	}
+	
+	private Set<BGPInetRtr> buildInetRtrSet() {
 		HashSet<BGPInetRtr> inetRtrSet = new HashSet<BGPInetRtr>();
 		Map<String, BGPAutNum> autNumMap = getAutNumMap();
 		
-		//Iterate through object set to find inet-rtr objects
-		for(RpslObject o : this.rpslObjects) {
-			if(o.getType() != ObjectType.INET_RTR)
-				continue;
-			
+		//Speakers are built from the extracted declarations, so they can be built after the raw objects are released
+		for(BGPInetRtr.Declaration declaration : inetRtrDeclarations.get()) {
 			//get AS of inet-rtr
-			String localAS = o.getValueForAttribute(AttributeType.LOCAL_AS).toString();
-			
-			if(!autNumMap.containsKey(localAS))
+			BGPAutNum autNum = autNumMap.get(declaration.localAS);
+			if(autNum == null)
 				continue; //TODO handle this case better
 			
-			inetRtrSet.addAll(BGPInetRtr.getSpeakerInstances(o, autNumMap.get(localAS)));
+			inetRtrSet.addAll(BGPInetRtr.getSpeakerInstances(declaration, autNum));
 		}
 		
-		//cache and return
-		this.inetRtrSet = inetRtrSet;
-		return inetRtrSet;	
+		return ImmutableSet.copyOf(inetRtrSet);
 	}
 	
 	/**
-	 * Generate the set of peers declared by {@link BGPInetRtr}s.
-	 * @return Set of declared {@link BGPPeer}s
+	 * Generate or return cached set of peers declared by {@link BGPInetRtr}s.
+	 * @return immutable set of declared {@link BGPPeer}s
 	 */
 	public Set<BGPPeer> getPeerSet() {
-		if(this.peerSet.size() != 0)
-			return this.peerSet;
-		
+		return peerSet.get();
+	}
+	
+	private Set<BGPPeer> buildPeerSet() {
 		HashSet<BGPPeer> peerSet = new HashSet<BGPPeer>();
 		
 		for(BGPInetRtr speaker : getInetRtrSet()) {
 			peerSet.addAll(speaker.getPeers());
 		}
 		
-		//cache and return
-		this.peerSet = peerSet;
-		return peerSet;
+		return ImmutableSet.copyOf(peerSet);
 	}
 	
 	/**
-	 * Return a copy of the {@link BGPRoute}s of a particular autnum; declared as RPSL Route objects.
+	 * Return the {@link BGPRoute}s of a particular autnum; declared as RPSL Route objects.
 	 * @param autNum autnum to query routes from
-	 * @return copy of autnum's routes
+	 * @return read-only view of autnum's routes
 	 */
 	public Set<BGPRoute> getASRoutes(long autNum) {
-		Set<BGPRoute> routeSet = new HashSet<>();
-		//Check if AS has declared route objects
-		if(asOriginRoutes.containsKey(autNum)) {
-			for(BGPRoute r : asOriginRoutes.get(autNum))
-				routeSet.add(r.clone());
+		Set<BGPRpslRoute> originRoutes = asOriginRoutes.get(autNum);
+		return (originRoutes != null) ? Collections.<BGPRoute>unmodifiableSet(originRoutes) : Collections.<BGPRoute>emptySet();
+	}
+	
+	/**
+	 * Get the compiled policy of an export attribute, compiling it if no attribute of the same text has been compiled
+	 * for the document. Policies are kept as long as the document.
+	 * @param exportAttr export attribute of an aut-num RPSL object
+	 * @return compiled policy, shared by the document's attributes of the same text
+	 * @throws IllegalArgumentException if the attribute isn't an export attribute
+	 */
+	BGPExportPolicy getExportPolicy(RpslAttribute exportAttr) {
+		String text = BGPExportPolicy.getText(exportAttr);
+		BGPExportPolicy policy = exportPolicies.get(text);
+		if(policy == null) {
+			policy = BGPExportPolicy.compile(exportAttr);
+			BGPExportPolicy compiledPolicy = exportPolicies.putIfAbsent(text, policy);
+			if(compiledPolicy != null)
+				policy = compiledPolicy;
+		}
+		return policy;
+	}
+	
+	/**
+	 * Return the routes announced by an export policy. Policies with the same announce filter share the result.
+	 * @param policy compiled export attribute
+	 * @return unmodifiable set of announced routes, without next hops or actions
+	 */
+	Set<BGPRoute> getAnnouncedRoutes(BGPExportPolicy policy) {
+		if(policy.getAnnounceFilter() == null)
+			return Collections.emptySet();
+		
+		String filter = policy.getAnnounceFilter().toString();
+		Set<BGPRoute> routes = announcedRoutes.get(filter);
+		if(routes == null) {
+			routes = Collections.unmodifiableSet(policy.resolveAnnouncedRoutes(this));
+			Set<BGPRoute> resolvedRoutes = announcedRoutes.putIfAbsent(filter, routes);
+			if(resolvedRoutes != null)
+				routes = resolvedRoutes;
 		}
-		return routeSet;
+		return routes;
 	}
 	
 	/**
-	 * Return a copy of the {@link BGPRoute}s maintained by a particular maintainer; declared as RPSL Route objects.
+	 * Return the route objects of the document, ie. the routes of every origin AS.
+	 * @return route objects of the document
+	 */
+	Collection<BGPRpslRoute> getRouteObjects() {
+		return Collections.unmodifiableList(routeObjects);
+	}
+	
+	/**
+	 * Return the route objects of a bitmap of route ids
+	 * @param routeIds ids of the routes
+	 * @return route objects in id order
+	 */
+	List<BGPRpslRoute> getRouteObjects(SparseBitmap routeIds) {
+		List<BGPRpslRoute> routes = new ArrayList<BGPRpslRoute>(routeIds.cardinality());
+		for(int id = routeIds.nextSetBit(0); id >= 0; id = routeIds.nextSetBit(id + 1))
+			routes.add(routeObjects.get(id));
+		return routes;
+	}
+	
+	/**
+	 * Return the ASNs of a bitmap of aut-num ids
+	 * @param autNumIds ids of the aut-nums
+	 * @return set of ASNs
+	 */
+	LongHashSet getAutNums(SparseBitmap autNumIds) {
+		LongHashSet autNums = new LongHashSet(autNumIds.cardinality());
+		for(int id = autNumIds.nextSetBit(0); id >= 0; id = autNumIds.nextSetBit(id + 1))
+			autNums.add(autNumsById[id]);
+		return autNums;
+	}
+	
+	/**
+	 * Return the {@link BGPRoute}s maintained by a particular maintainer; declared as RPSL Route objects.
 	 * @param maintainer name of maintainer to retrieve routes of
-	 * @return copy of maintainer's routes
+	 * @return immutable set of maintainer's routes
 	 */
 	public Set<BGPRoute> getMntByRoutes(CIString maintainer) {
-		Set<BGPRoute> routeSet = new HashSet<>();
-		if(mntByRoutes.containsKey(maintainer)) {
-			for(BGPRoute r : mntByRoutes.get(maintainer))
-				routeSet.add(r.clone());
-		}
-		return routeSet;			
+		return getMntByRoutes(symbols.lookup(maintainer));
+	}
+	
+	Set<BGPRoute> getMntByRoutes(int maintainerId) {
+		return getIndexedRoutes(mntByRouteSets, mntByRoutes, maintainerId);
+	}
+	
+	/**
+	 * @param maintainerId id of the maintainer in the document's symbol table
+	 * @return ids of the maintainer's route objects, shouldn't be modified
+	 */
+	SparseBitmap getMntByRouteIds(int maintainerId) {
+		return idsOrEmpty(mntByRoutes.get(maintainerId));
 	}
 	
 	/**
-	 * Return a copy of the {@link BGPRoute}s that are members-of a route set
+	 * Return the {@link BGPRoute}s that are members-of a route set
 	 * @param setName name of set to retrieve member routes of
-	 * @return copy of set's member routes
+	 * @return immutable set of set's member routes
 	 */
 	public Set<BGPRoute> getSetMemberRoutes(CIString setName) {
-		Set<BGPRoute> routeSet = new HashSet<>();
-		if(setMemberRoutes.containsKey(setName)) {
-			for(BGPRoute r : setMemberRoutes.get(setName))
-				routeSet.add(r.clone());
-		}
-		return routeSet;			
+		return getSetMemberRoutes(symbols.lookup(setName));
+	}
+	
+	Set<BGPRoute> getSetMemberRoutes(int setId) {
+		return getIndexedRoutes(setMemberRouteSets, setMemberRoutes, setId);
+	}
+	
+	/**
+	 * Get the immutable set of the routes an index holds for a name, building it once
+	 * @param routeSets sets already built for the index
+	 * @param index route ids by name id
+	 * @param nameId id of the maintainer or set name
+	 * @return shared, immutable set of routes
+	 */
+	private Set<BGPRoute> getIndexedRoutes(ConcurrentHashMap<Integer, Set<BGPRoute>> routeSets, LongObjectHashMap<SparseBitmap> index, int nameId) {
+		Set<BGPRoute> routes = routeSets.get(nameId);
+		if(routes != null)
+			return routes;
+		
+		SparseBitmap routeIds = index.get(nameId);
+		if(routeIds == null)
+			return ImmutableSet.of();
+		routes = ImmutableSet.<BGPRoute>copyOf(getRouteObjects(routeIds));
+		Set<BGPRoute> existing = routeSets.putIfAbsent(nameId, routes);
+		return (existing != null) ? existing : routes;
+	}
+	
+	/**
+	 * @param setId id of the set in the document's symbol table
+	 * @return ids of the route objects that are members-of the set, shouldn't be modified
+	 */
+	SparseBitmap getSetMemberRouteIds(int setId) {
+		return idsOrEmpty(setMemberRoutes.get(setId));
 	}
 	
 	/**
 	 * Return the set of AutNums maintained by a provided maintainer
 	 * @param maintainer set name to query autnums for
-	 * @return maintainers autnums
+	 * @return new set of maintainers autnums
 	 */
-	public Set<Long> getMntByAutNums(CIString maintainer) {
-		Set<Long> autNumSet = new HashSet<>();
-		if(mntByAutNum.containsKey(maintainer)) {
-			for(Long autNum : mntByAutNum.get(maintainer))
-				autNumSet.add(autNum);
-		}
-		return autNumSet;			
+	public LongSet getMntByAutNums(CIString maintainer) {
+		return getMntByAutNums(symbols.lookup(maintainer));
+	}
+	
+	LongSet getMntByAutNums(int maintainerId) {
+		return getAutNums(getMntByAutNumIds(maintainerId));
+	}
+	
+	/**
+	 * @param maintainerId id of the maintainer in the document's symbol table
+	 * @return ids of the maintainer's aut-nums, shouldn't be modified
+	 */
+	SparseBitmap getMntByAutNumIds(int maintainerId) {
+		return idsOrEmpty(mntByAutNum.get(maintainerId));
 	}
 	
 	/**
 	 * Return the set of AutNums that are members-of an as-set
 	 * @param setName name of as-set to query
-	 * @return set's member autnums
+	 * @return new set of set's member autnums
 	 */
-	public Set<Long> getSetMemberAutNums(CIString setName) {
-		Set<Long> autNumSet = new HashSet<>();
-		if(setMemberAutNum.containsKey(setName)) {
-			for(Long autNum : setMemberAutNum.get(setName))
-				autNumSet.add(autNum);
-		}
-		return autNumSet;	
+	public LongSet getSetMemberAutNums(CIString setName) {
+		return getSetMemberAutNums(symbols.lookup(setName));
+	}
+	
+	LongSet getSetMemberAutNums(int setId) {
+		return getAutNums(getSetMemberAutNumIds(setId));
+	}
+	
+	/**
+	 * @param setId id of the set in the document's symbol table
+	 * @return ids of the aut-nums that are members-of the set, shouldn't be modified
+	 */
+	SparseBitmap getSetMemberAutNumIds(int setId) {
+		return idsOrEmpty(setMemberAutNum.get(setId));
+	}
+	
+	private static SparseBitmap idsOrEmpty(SparseBitmap ids) {
+		return (ids != null) ? ids : NO_IDS;
+	}
+	
+	/**
+	 * Return the route objects of exactly the provided prefix.
+	 * Route objects of the same prefix with different origins are all returned.
+	 * @param prefix prefix to look up, range operators are ignored
+	 * @return read-only view of the prefix's route objects
+	 */
+	public Collection<BGPRpslRoute> getExactRoutes(AddressPrefixRange prefix) {
+		BGPRoute key = new BGPRoute(prefix, null);
+		List<BGPRpslRoute> routes = getPrefixRoutes(key).get(key.getPrefixHigh(), key.getPrefixLow(), key.getRoutePrefix());
+		return (routes != null) ? Collections.unmodifiableList(routes) : Collections.<BGPRpslRoute>emptyList();
+	}
+	
+	/**
+	 * Return the route objects of the most specific prefix covering the provided prefix, including the prefix itself
+	 * @param prefix prefix to look up, range operators are ignored
+	 * @return read-only view of the longest matching prefix's route objects, empty if no route covers the prefix
+	 */
+	public Collection<BGPRpslRoute> getLongestMatchRoutes(AddressPrefixRange prefix) {
+		BGPRoute key = new BGPRoute(prefix, null);
+		List<BGPRpslRoute> routes = getPrefixRoutes(key).getLongestMatch(key.getPrefixHigh(), key.getPrefixLow(), key.getRoutePrefix());
+		return (routes != null) ? Collections.unmodifiableList(routes) : Collections.<BGPRpslRoute>emptyList();
+	}
+	
+	/**
+	 * Return the route objects of prefixes less specific than (covering) the provided prefix
+	 * @param prefix prefix to look up, range operators are ignored
+	 * @return route objects of covering prefixes from least to most specific, excluding those of the prefix itself
+	 */
+	public Collection<BGPRpslRoute> getLessSpecificRoutes(AddressPrefixRange prefix) {
+		BGPRoute key = new BGPRoute(prefix, null);
+		return concat(getPrefixRoutes(key).getCovering(key.getPrefixHigh(), key.getPrefixLow(), key.getRoutePrefix(), false));
+	}
+	
+	/**
+	 * Return the route objects of prefixes more specific than (covered by) the provided prefix
+	 * @param prefix prefix to look up, range operators are ignored
+	 * @return route objects of covered prefixes in address order, excluding those of the prefix itself
+	 */
+	public Collection<BGPRpslRoute> getMoreSpecificRoutes(AddressPrefixRange prefix) {
+		BGPRoute key = new BGPRoute(prefix, null);
+		return concat(getPrefixRoutes(key).getCovered(key.getPrefixHigh(), key.getPrefixLow(), key.getRoutePrefix(), false));
+	}
+	
+	private PrefixTrie<List<BGPRpslRoute>> getPrefixRoutes(BGPRoute key) {
+		return key.isIpv6() ? ipv6PrefixRoutes : ipv4PrefixRoutes;
+	}
+	
+	private static List<BGPRpslRoute> concat(List<List<BGPRpslRoute>> prefixRoutes) {
+		List<BGPRpslRoute> routes = new ArrayList<BGPRpslRoute>();
+		for(List<BGPRpslRoute> routesOfPrefix : prefixRoutes)
+			routes.addAll(routesOfPrefix);
+		return routes;
 	}
 }
@@ -7,10 +7,14 @@ package org.rpsl4j.emitters.rpsldocument;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
+import org.rpsl4j.util.SymbolTable;
+
 import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.rpsl.AttributeType;
 import net.ripe.db.whois.common.rpsl.RpslAttribute;
@@ -26,28 +30,47 @@ import net.ripe.db.whois.common.rpsl.attrs.AutNum;
  */
 public class BGPRpslRoute extends BGPRoute implements Cloneable {
 
-	Set<CIString> parentSets = new HashSet<CIString>(); //route-sets this route (says) it's a member of (no double checking and mbrsByRef validation yet) //TODO
+	final int[] parentSetIds; //sorted ids of route-sets this route (says) it's a member of (no double checking and mbrsByRef validation yet) //TODO
 	final long asNumber;
+	final SymbolTable symbols; //table the set and maintainer ids were interned in
 	
-	private boolean isWithdrawn = false;
-	private CIString maintainedBy;
+	private final boolean isWithdrawn;
+	private final int maintainerId;
 
 	
 	/**
-	 * Create a BGPRpslRoute object from a rpsl route
+	 * Create a BGPRpslRoute object from a rpsl route, with its own symbol table
 	 * @param object rpsl route object
 	 */
 	BGPRpslRoute(RpslObject object) {
+		this(object, new SymbolTable());
+	}
+	
+	/**
+	 * Create a BGPRpslRoute object from a rpsl route
+	 * @param object rpsl route object
+	 * @param symbols table to intern set and maintainer names in, usually that of the document
+	 */
+	BGPRpslRoute(RpslObject object, SymbolTable symbols) {
 		super(AddressPrefixRange.parse(object.getTypeAttribute().getCleanValue()), null);
 		
+		this.symbols = symbols;
 		this.asNumber = AutNum.parse(object.getValueForAttribute(AttributeType.ORIGIN)).getValue();
-		this.parentSets.addAll(object.getValuesForAttribute(AttributeType.MEMBER_OF));
+		
+		Set<Integer> parentSets = new HashSet<Integer>();
+		for(CIString parentSet : object.getValuesForAttribute(AttributeType.MEMBER_OF))
+			parentSets.add(symbols.intern(parentSet));
+		this.parentSetIds = new int[parentSets.size()];
+		int i = 0;
+		for(Integer parentSet : parentSets)
+			this.parentSetIds[i++] = parentSet;
+		Arrays.sort(this.parentSetIds);
 
-		//Get maintainer string
-		if(object.containsAttribute(AttributeType.MNT_BY))
-			maintainedBy = object.getValueForAttribute(AttributeType.MNT_BY);
+		//Get maintainer id
+		this.maintainerId = object.containsAttribute(AttributeType.MNT_BY) ? symbols.intern(object.getValueForAttribute(AttributeType.MNT_BY)) : SymbolTable.NO_SYMBOL;
 		
 		// Check if route has been withdrawn, there is no AttributeType for withdrawn
+		boolean isWithdrawn = false;
 		for(RpslAttribute attr : object.getAttributes()) {
 			if(!attr.getKey().equals("withdrawn"))
 				continue;
@@ -63,13 +86,29 @@ public class BGPRpslRoute extends BGPRoute implements Cloneable {
 						+ attr.getCleanValue().toString() + "\"", e);
 			}
 		}
+		this.isWithdrawn = isWithdrawn;
+	}
+	
+	/**
+	 * Create a route sharing the prefix and route object attributes of another route
+	 */
+	private BGPRpslRoute(BGPRpslRoute route, String nextHop, Map<String, String> actions) {
+		super(route, nextHop, actions);
+		this.parentSetIds = route.parentSetIds;
+		this.asNumber = route.asNumber;
+		this.symbols = route.symbols;
+		this.isWithdrawn = route.isWithdrawn;
+		this.maintainerId = route.maintainerId;
+	}
+	
+	@Override
+	BGPRoute copy(String nextHop, Map<String, String> actions) {
+		return new BGPRpslRoute(this, nextHop, actions);
 	}
 	
 	@Override
 	public BGPRpslRoute clone() {
-		BGPRpslRoute clone = (BGPRpslRoute) super.clone();
-		clone.parentSets = new HashSet<CIString>(parentSets);
-		return clone;
+		return (BGPRpslRoute) super.clone();
 	}
 	
 	@Override
@@ -80,7 +119,35 @@ public class BGPRpslRoute extends BGPRoute implements Cloneable {
 		BGPRpslRoute otherRoute = (BGPRpslRoute) other;
 		
 		//We don't compare AS as it results in doubles when resolving as sets
-		return parentSets.equals(otherRoute.parentSets);
+		if(symbols == otherRoute.symbols)
+			return Arrays.equals(parentSetIds, otherRoute.parentSetIds);
+		
+		//Routes of different documents, look up the other route's sets by name rather than building sets of names
+		if(parentSetIds.length != otherRoute.parentSetIds.length)
+			return false;
+		for(int parentSet : otherRoute.parentSetIds) {
+			int id = symbols.translate(otherRoute.symbols, parentSet);
+			if(id == SymbolTable.NO_SYMBOL || Arrays.binarySearch(parentSetIds, id) < 0)
+				return false;
+		}
+		return true;
+	}
+	
+	//Parent sets aren't hashed, routes equal to a plain BGPRoute must hash the same
+	@Override
+	public int hashCode() {
+		return super.hashCode();
+	}
+	
+	/**
+	 * Get the names of the sets the route declares itself a member of
+	 * @return lower case names of parent sets
+	 */
+	public Set<String> getParentSets() {
+		Set<String> parentSets = new HashSet<String>();
+		for(int parentSet : parentSetIds)
+			parentSets.add(symbols.getName(parentSet));
+		return parentSets;
 	}
 	
 	/**
@@ -96,7 +163,15 @@ public class BGPRpslRoute extends BGPRoute implements Cloneable {
 	 * @return name of maintainer object or null
 	 */
 	public CIString getMaintainer() {
-		return maintainedBy;
+		return (maintainerId != SymbolTable.NO_SYMBOL) ? CIString.ciString(symbols.getName(maintainerId)) : null;
+	}
+	
+	/**
+	 * Return the symbol id of the maintainer of the route object
+	 * @return id of maintainer name in {@link #symbols} or {@link SymbolTable#NO_SYMBOL}
+	 */
+	int getMaintainerId() {
+		return maintainerId;
 	}
 
 }
@@ -5,10 +5,19 @@
 
 package org.rpsl4j.emitters.rpsldocument;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang3.tuple.Pair;
+import org.rpsl4j.util.SymbolTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,24 +33,83 @@ public abstract class BGPRpslSet {
 	
 	final static Logger log = LoggerFactory.getLogger(BGPRpslSet.class);
 	
-	protected final CIString name;
-	protected Set<CIString> members = new HashSet<CIString>();
-	protected Set<CIString> mbrsByRef = new HashSet<CIString>();
+	//Ids of the set's name, member sets and mbrs-by-ref maintainers in the symbol table
+	final SymbolTable symbols;
+	final int nameId;
+	final int[] memberSetIds, mbrsByRefIds;
+	final boolean mbrsByRefAny;
+	
+	//Member sets with a range operator (eg. rs-foo^+), and their operators
+	final int[] rangedMemberSetIds;
+	final String[] rangedMemberOperators;
 
 	/**
-	 * Build set object and extract names of member sets etc.
+	 * Build set object and intern the names of the set, its member sets and mbrs-by-ref maintainers
 	 * @param setObject as-set or route-set object to instantiate from 
+	 * @param symbols table to intern names in, usually that of the document
+	 * @param memberSetPrefix lower case prefix of the names of member sets ("as-" or "rs-")
 	 */
-	public BGPRpslSet(RpslObject setObject) {
-		name = setObject.getTypeAttribute().getCleanValue();
-		
-		if(setObject.containsAttribute(AttributeType.MEMBERS))
-			members = setObject.getValuesForAttribute(AttributeType.MEMBERS);
+	protected BGPRpslSet(RpslObject setObject, SymbolTable symbols, String memberSetPrefix) {
+		//Only the ids of the names are kept, the parsed attributes are dropped with the object
+		Set<CIString> members = getMembers(setObject), mbrsByRef = Collections.emptySet();
 		if(setObject.containsAttribute(AttributeType.MBRS_BY_REF))
 			mbrsByRef = setObject.getValuesForAttribute(AttributeType.MBRS_BY_REF);
+		
+		this.symbols = symbols;
+		this.nameId = symbols.intern(setObject.getTypeAttribute().getCleanValue());
+		
+		//Member sets with range operators have the operator applied to each of their routes, so are kept separately
+		Set<Integer> memberSets = new LinkedHashSet<Integer>();
+		Map<Integer, String> rangedMemberSets = new LinkedHashMap<Integer, String>();
+		for(CIString member : members) {
+			Pair<String, String> refMemberPair = splitPrefix(member.toLowerCase());
+			if(!refMemberPair.getLeft().startsWith(memberSetPrefix))
+				continue;
+			if(refMemberPair.getRight() == null)
+				memberSets.add(symbols.intern(refMemberPair.getLeft()));
+			else
+				rangedMemberSets.put(symbols.intern(refMemberPair.getLeft()), refMemberPair.getRight());
+		}
+		this.memberSetIds = toIdArray(memberSets);
+		this.rangedMemberSetIds = toIdArray(rangedMemberSets.keySet());
+		this.rangedMemberOperators = rangedMemberSets.values().toArray(new String[rangedMemberSets.size()]);
+		
+		this.mbrsByRefAny = mbrsByRef.size() == 1 && mbrsByRef.contains(CIString.ciString("ANY"));
+		Set<Integer> maintainers = new LinkedHashSet<Integer>();
+		if(!mbrsByRefAny) {
+			for(CIString maintainer : mbrsByRef)
+				maintainers.add(symbols.intern(maintainer));
+		}
+		this.mbrsByRefIds = toIdArray(maintainers);
+	}
+	
+	/**
+	 * Get the members of a set object
+	 * @param setObject as-set or route-set object
+	 * @return values of the members attribute, empty if it has none
+	 */
+	protected static Set<CIString> getMembers(RpslObject setObject) {
+		if(setObject.containsAttribute(AttributeType.MEMBERS))
+			return setObject.getValuesForAttribute(AttributeType.MEMBERS);
+		return Collections.emptySet();
+	}
+	
+	private static int[] toIdArray(Collection<Integer> ids) {
+		int[] idArray = new int[ids.size()];
+		int i = 0;
+		for(Integer id : ids)
+			idArray[i++] = id;
+		return idArray;
 	}
 	
 	
+	/**
+	 * @return lower case name of the set
+	 */
+	public String getName() {
+		return symbols.getName(nameId);
+	}
+	
 	/**
 	 * Separate address prefix (eg. '^+') from referenced route-set, as-set or AS
 	 * @param referencedObject name of reference
@@ -57,24 +125,152 @@ public abstract class BGPRpslSet {
 	}
 	
 	/**
-	 * Recursively resolve the set of BGPRoute objects contained within this set
+	 * Recursively resolve the set of BGPRoute objects contained within this set.
+	 * Resolution is memoized by the document, sets in a cycle resolve to the same routes.
 	 * @param parentRpslDocument document that set resolves members from
-	 * @return clone of {@link BGPRoute} objects contained by set
+	 * @return shared, unmodifiable set of {@link BGPRoute} objects contained by set.
 	 */
 	public Set<BGPRoute> resolve(BGPRpslDocument parentRpslDocument) {
-		return resolve(parentRpslDocument, new HashSet<BGPRpslSet>());
+		return parentRpslDocument.resolveSet(this);
+	}
+	
+	/**
+	 * Lazily expand the routes of this set. Unlike {@link #resolve(BGPRpslDocument)} the expansions of this set and
+	 * the sets it references aren't built, routes are produced as the set graph is walked. Used by emitters writing the
+	 * routes of large sets out once.
+	 * @param parentRpslDocument document that set resolves members from
+	 * @return iterator over the set's distinct routes, in no particular order.
+	 */
+	public Iterator<BGPRoute> expand(BGPRpslDocument parentRpslDocument) {
+		return parentRpslDocument.getSetResolver().expand(this);
+	}
+	
+	/**
+	 * Get the sets of the document referenced by this set's members. References to undeclared sets are skipped.
+	 * @param parentRpslDocument document used to look up member sets
+	 * @return member sets
+	 */
+	Collection<BGPRpslSet> getMemberSets(BGPRpslDocument parentRpslDocument) {
+		List<BGPRpslSet> memberSets = new ArrayList<BGPRpslSet>();
+		
+		for(int memberSetId : memberSetIds) {
+			BGPRpslSet memberSetObject = getDocumentSet(parentRpslDocument, documentSymbol(parentRpslDocument, memberSetId));
+			if(memberSetObject != null)
+				memberSets.add(memberSetObject);
+			else
+				log.warn("Member '" + symbols.getName(memberSetId) + "' of " + getName() + " is not declared and will be skipped");
+		}
+		return memberSets;
 	}
 	
 	/**
-	 * Recursively resolve the set, stopping if the called object is already in the set of visited nodes
+	 * Get the sets of the document referenced by this set's members with range operators.
+	 * The routes of these sets are only included with the operator applied, see {@link #resolveRangedMemberSets(BGPRpslDocument)}.
+	 * @param parentRpslDocument document used to look up member sets
+	 * @return member sets with range operators
+	 */
+	Collection<BGPRpslSet> getRangedMemberSets(BGPRpslDocument parentRpslDocument) {
+		List<BGPRpslSet> memberSets = new ArrayList<BGPRpslSet>();
+		for(int memberSetId : rangedMemberSetIds) {
+			BGPRpslSet memberSetObject = getDocumentSet(parentRpslDocument, documentSymbol(parentRpslDocument, memberSetId));
+			if(memberSetObject != null)
+				memberSets.add(memberSetObject);
+		}
+		return memberSets;
+	}
+	
+	/**
+	 * Resolve the routes of member sets with range operators, applying the operator to each route.
+	 * A member set in a cycle with this set can't be resolved before this set, so it is skipped.
+	 * @param parentRpslDocument document used to resolve member sets
+	 * @return routes of member sets with their range operators applied
+	 */
+	Set<BGPRoute> resolveRangedMemberSets(BGPRpslDocument parentRpslDocument) {
+		Set<BGPRoute> routes = new HashSet<BGPRoute>();
+		for(int i = 0; i < rangedMemberSetIds.length; i++) {
+			String member = symbols.getName(rangedMemberSetIds[i]) + rangedMemberOperators[i];
+			BGPRpslSet memberSetObject = getDocumentSet(parentRpslDocument, documentSymbol(parentRpslDocument, rangedMemberSetIds[i]));
+			
+			if(memberSetObject == null) {
+				log.warn("Member '" + member + "' of " + getName() + " is not declared and will be skipped");
+				continue;
+			} else if(parentRpslDocument.getSetResolver().inSameComponent(this, memberSetObject)) {
+				log.warn("Member '" + member + "' of " + getName() + " is part of a cycle with the set and will be skipped");
+				continue;
+			}
+			
+			routes.addAll(applyRangeOperator(memberSetObject.resolve(parentRpslDocument), rangedMemberOperators[i], member));
+		}
+		return routes;
+	}
+	
+	/**
+	 * Apply a range operator to routes, dropping routes left with an empty range
+	 * @param routes routes to apply the operator to
+	 * @param operator range operator (eg. ^+)
+	 * @param member member the operator is from, used when reporting an invalid operator
+	 * @return routes with the operator applied
+	 */
+	protected Set<BGPRoute> applyRangeOperator(Collection<BGPRoute> routes, String operator, String member) {
+		Set<BGPRoute> rangedRoutes = new HashSet<BGPRoute>();
+		try {
+			for(BGPRoute route : routes) {
+				BGPRoute rangedRoute = route.withRangeOperator(operator);
+				if(rangedRoute != null)
+					rangedRoutes.add(rangedRoute);
+			}
+		} catch (IllegalArgumentException e) {
+			log.warn("Member '" + member + "' of " + getName() + " has an invalid range operator and will be skipped");
+			rangedRoutes.clear();
+		}
+		return rangedRoutes;
+	}
+	
+	/**
+	 * Get the id a name of this set's symbol table has in the document's symbol table
+	 * @param parentRpslDocument document the set is resolved against
+	 * @param id id in this set's symbol table
+	 * @return id in document's table or {@link SymbolTable#NO_SYMBOL}
+	 */
+	int documentSymbol(BGPRpslDocument parentRpslDocument, int id) {
+		return parentRpslDocument.getSymbols().translate(symbols, id);
+	}
+	
+	/**
+	 * Look up a set of this set's type in the document
+	 * @param parentRpslDocument document to look up set in
+	 * @param setId id of the set's name in the document's symbol table
+	 * @return set or null if not declared
+	 */
+	abstract BGPRpslSet getDocumentSet(BGPRpslDocument parentRpslDocument, int setId);
+	
+	/**
+	 * Resolve the routes this set contains directly, excluding those of its member sets
 	 * @param parentRpslDocument document used to resolve members
-	 * @param visitedNodes Set of nodes that have already been resolved
-	 * @return clone of {@link BGPRoute} objects contained by set
+	 * @return routes of non-set members and mbrs-by-ref members
 	 */
-	abstract Set<BGPRoute> resolve(BGPRpslDocument parentRpslDocument, Set<BGPRpslSet> visitedNodes);
+	abstract Set<BGPRoute> resolveDirectRoutes(BGPRpslDocument parentRpslDocument);
+	
 	
+	/**
+	 * Get the names of the set's members, resolved through the symbol table
+	 * @return names of member sets, with their range operators
+	 */
+	List<String> getMemberNames() {
+		List<String> memberNames = new ArrayList<String>();
+		for(int memberSetId : memberSetIds)
+			memberNames.add(symbols.getName(memberSetId));
+		for(int i = 0; i < rangedMemberSetIds.length; i++)
+			memberNames.add(symbols.getName(rangedMemberSetIds[i]) + rangedMemberOperators[i]);
+		return memberNames;
+	}
 	
 	public String toString() {
-		return name + ":\n    members: " + members + "\n    mbrsByRef: " + mbrsByRef;
+		List<String> mbrsByRefNames = new ArrayList<String>();
+		if(mbrsByRefAny)
+			mbrsByRefNames.add("any");
+		for(int maintainerId : mbrsByRefIds)
+			mbrsByRefNames.add(symbols.getName(maintainerId));
+		return getName() + ":\n    members: " + getMemberNames() + "\n    mbrsByRef: " + mbrsByRefNames;
 	}
 }
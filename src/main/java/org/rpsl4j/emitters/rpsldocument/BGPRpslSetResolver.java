@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.emitters.rpsldocument;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * Resolves the routes of a document's as-sets and route-sets.
+ * The sets are treated as a dependency graph which is collapsed into its strongly connected components, so every set
+ * of a cycle resolves to the same routes regardless of which set resolution starts from. The expansion of each
+ * component is computed once, from the expansions of the components it references, and kept in a size bounded cache.
+ * @author Benjamin George Roberts
+ */
+class BGPRpslSetResolver {
+
+	/**
+	 * Default number of component expansions kept in the cache
+	 */
+	static final int DEFAULT_CACHE_SIZE = 10000;
+
+	private final BGPRpslDocument parentDocument;
+	private final Map<BGPRpslSet, Integer> componentOfSet = new IdentityHashMap<BGPRpslSet, Integer>();
+	private final List<List<BGPRpslSet>> componentSets = new ArrayList<List<BGPRpslSet>>();
+	private final List<Set<Integer>> componentReferences = new ArrayList<Set<Integer>>();
+	private final LoadingCache<Integer, Set<BGPRoute>> expansionCache;
+
+	/**
+	 * Build the dependency graph of the document's sets
+	 * @param doc document the sets are resolved against
+	 * @param sets the document's as-sets and route-sets
+	 * @param cacheSize maximum number of component expansions to cache
+	 */
+	BGPRpslSetResolver(BGPRpslDocument doc, Collection<BGPRpslSet> sets, int cacheSize) {
+		this.parentDocument = doc;
+		buildComponents(new ArrayList<BGPRpslSet>(sets));
+
+		this.expansionCache = CacheBuilder.newBuilder()
+				.maximumSize(cacheSize)
+				.build(new CacheLoader<Integer, Set<BGPRoute>>() {
+					@Override
+					public Set<BGPRoute> load(Integer component) {
+						return expandComponent(component);
+					}
+				});
+	}
+
+	/**
+	 * Resolve the routes of a set
+	 * @param set set to resolve
+	 * @return shared, unmodifiable set of the set's routes
+	 */
+	Set<BGPRoute> resolve(BGPRpslSet set) {
+		Integer component = componentOfSet.get(set);
+		if(component != null)
+			return expansionCache.getUnchecked(component);
+		
+		//Set isn't part of the document's graph, expand it on its own
+		Set<BGPRoute> routes = new HashSet<BGPRoute>(set.resolveDirectRoutes(parentDocument));
+		for(BGPRpslSet memberSet : set.getMemberSets(parentDocument)) {
+			if(componentOfSet.containsKey(memberSet))
+				routes.addAll(resolve(memberSet));
+		}
+		return Collections.unmodifiableSet(routes);
+	}
+
+	/**
+	 * Lazily expand the routes of a set, without building the expansions of the set or the sets it references.
+	 * The components reachable from the set are walked depth first, each once, yielding the routes of their sets as they
+	 * are reached. Expansions already in the cache are reused. Only the routes already returned are kept, to skip duplicates.
+	 * @param set set to expand
+	 * @return iterator over the set's distinct routes
+	 */
+	Iterator<BGPRoute> expand(BGPRpslSet set) {
+		Integer component = componentOfSet.get(set);
+		if(component != null)
+			return new ExpansionIterator(Collections.<BGPRoute>emptyIterator(), Collections.singleton(component));
+		
+		//Set isn't part of the document's graph, start from its own routes and its member sets' components
+		Set<Integer> memberComponents = new HashSet<Integer>();
+		for(BGPRpslSet memberSet : set.getMemberSets(parentDocument)) {
+			Integer memberComponent = componentOfSet.get(memberSet);
+			if(memberComponent != null)
+				memberComponents.add(memberComponent);
+		}
+		return new ExpansionIterator(set.resolveDirectRoutes(parentDocument).iterator(), memberComponents);
+	}
+	
+	/**
+	 * Depth first walk of the component DAG yielding distinct routes
+	 */
+	private class ExpansionIterator extends AbstractIterator<BGPRoute> {
+		private final Deque<Integer> pendingComponents = new ArrayDeque<Integer>();
+		private final Deque<BGPRpslSet> pendingSets = new ArrayDeque<BGPRpslSet>();
+		private final BitSet visitedComponents = new BitSet();
+		private final Set<BGPRoute> returnedRoutes = new HashSet<BGPRoute>();
+		private Iterator<BGPRoute> routes;
+		
+		ExpansionIterator(Iterator<BGPRoute> routes, Collection<Integer> components) {
+			this.routes = routes;
+			pendingComponents.addAll(components);
+		}
+		
+		@Override
+		protected BGPRoute computeNext() {
+			while(true) {
+				while(routes.hasNext()) {
+					BGPRoute route = routes.next();
+					if(returnedRoutes.add(route))
+						return route;
+				}
+				
+				//Routes of the next set of the current component
+				if(!pendingSets.isEmpty()) {
+					routes = pendingSets.pop().resolveDirectRoutes(parentDocument).iterator();
+					continue;
+				}
+				
+				if(pendingComponents.isEmpty())
+					return endOfData();
+				int component = pendingComponents.pop();
+				if(visitedComponents.get(component))
+					continue;
+				visitedComponents.set(component);
+				
+				//A cached expansion covers the component and every component it references
+				Set<BGPRoute> expansion = expansionCache.getIfPresent(component);
+				if(expansion != null) {
+					routes = expansion.iterator();
+					continue;
+				}
+				
+				for(Integer referencedComponent : componentReferences.get(component)) {
+					if(!visitedComponents.get(referencedComponent))
+						pendingComponents.push(referencedComponent);
+				}
+				pendingSets.addAll(componentSets.get(component));
+			}
+		}
+	}
+
+	/**
+	 * Get the number of strongly connected components in the set graph
+	 * @return number of components
+	 */
+	int getComponentCount() {
+		return componentSets.size();
+	}
+
+	/**
+	 * Check if two sets are part of the same cycle, and so resolve to the same routes
+	 * @return true if the sets are in the same strongly connected component
+	 */
+	boolean inSameComponent(BGPRpslSet first, BGPRpslSet second) {
+		Integer firstComponent = componentOfSet.get(first);
+		return firstComponent != null && firstComponent.equals(componentOfSet.get(second));
+	}
+
+	/**
+	 * Compute the expansion of a component from the routes of its sets and the expansions of the components they reference.
+	 * As the components form a DAG, loading the referenced expansions can't recurse into this component.
+	 */
+	private Set<BGPRoute> expandComponent(int component) {
+		Set<BGPRoute> routes = new HashSet<BGPRoute>();
+		for(Integer referencedComponent : componentReferences.get(component))
+			routes.addAll(expansionCache.getUnchecked(referencedComponent));
+		for(BGPRpslSet set : componentSets.get(component))
+			routes.addAll(set.resolveDirectRoutes(parentDocument));
+		return Collections.unmodifiableSet(routes);
+	}
+
+	/**
+	 * Find the strongly connected components of the set graph with an iterative version of Tarjan's algorithm.
+	 * Components are numbered in the order they are completed, so references always point to lower numbered components.
+	 */
+	private void buildComponents(List<BGPRpslSet> sets) {
+		Map<BGPRpslSet, Integer> indexOfSet = new IdentityHashMap<BGPRpslSet, Integer>();
+		for(int i = 0; i < sets.size(); i++)
+			indexOfSet.put(sets.get(i), i);
+
+		//Adjacency lists of set indices. Member sets with range operators only order the components, their routes
+		//are included by the referencing set with the operator applied
+		int[][] references = new int[sets.size()][], orderReferences = new int[sets.size()][];
+		for(int i = 0; i < sets.size(); i++) {
+			references[i] = indicesOf(sets.get(i).getMemberSets(parentDocument), indexOfSet);
+			int[] rangedReferences = indicesOf(sets.get(i).getRangedMemberSets(parentDocument), indexOfSet);
+			orderReferences[i] = Arrays.copyOf(references[i], references[i].length + rangedReferences.length);
+			System.arraycopy(rangedReferences, 0, orderReferences[i], references[i].length, rangedReferences.length);
+		}
+
+		int[] order = new int[sets.size()], lowLink = new int[sets.size()], nextReference = new int[sets.size()];
+		int[] componentOfIndex = new int[sets.size()];
+		boolean[] onStack = new boolean[sets.size()];
+		Arrays.fill(order, -1);
+		Deque<Integer> componentStack = new ArrayDeque<Integer>(), callStack = new ArrayDeque<Integer>();
+		int nextOrder = 0;
+
+		for(int root = 0; root < sets.size(); root++) {
+			if(order[root] != -1)
+				continue;
+
+			callStack.push(root);
+			order[root] = lowLink[root] = nextOrder++;
+			componentStack.push(root);
+			onStack[root] = true;
+
+			while(!callStack.isEmpty()) {
+				int node = callStack.peek();
+				if(nextReference[node] < orderReferences[node].length) {
+					int member = orderReferences[node][nextReference[node]++];
+					if(order[member] == -1) {
+						//Descend into unvisited member
+						order[member] = lowLink[member] = nextOrder++;
+						componentStack.push(member);
+						onStack[member] = true;
+						callStack.push(member);
+					} else if(onStack[member]) {
+						lowLink[node] = Math.min(lowLink[node], order[member]);
+					}
+					continue;
+				}
+
+				//All members visited, pop the node and complete its component if it is the root
+				callStack.pop();
+				if(!callStack.isEmpty())
+					lowLink[callStack.peek()] = Math.min(lowLink[callStack.peek()], lowLink[node]);
+
+				if(lowLink[node] == order[node]) {
+					int component = componentSets.size();
+					List<BGPRpslSet> members = new ArrayList<BGPRpslSet>();
+					int member;
+					do {
+						member = componentStack.pop();
+						onStack[member] = false;
+						componentOfIndex[member] = component;
+						componentOfSet.put(sets.get(member), component);
+						members.add(sets.get(member));
+					} while(member != node);
+					componentSets.add(members);
+				}
+			}
+		}
+
+		//Reference between components, excluding references within a component
+		for(int component = 0; component < componentSets.size(); component++)
+			componentReferences.add(new HashSet<Integer>());
+		for(int i = 0; i < sets.size(); i++) {
+			for(int member : references[i]) {
+				if(componentOfIndex[member] != componentOfIndex[i])
+					componentReferences.get(componentOfIndex[i]).add(componentOfIndex[member]);
+			}
+		}
+	}
+
+	private static int[] indicesOf(Collection<BGPRpslSet> memberSets, Map<BGPRpslSet, Integer> indexOfSet) {
+		List<Integer> memberIndices = new ArrayList<Integer>();
+		for(BGPRpslSet memberSet : memberSets) {
+			Integer memberIndex = indexOfSet.get(memberSet);
+			if(memberIndex != null)
+				memberIndices.add(memberIndex);
+		}
+		int[] indices = new int[memberIndices.size()];
+		for(int j = 0; j < indices.length; j++)
+			indices[j] = memberIndices.get(j);
+		return indices;
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
+
+import net.ripe.db.whois.common.rpsl.ObjectType;
+
+/**
+ * Pre-parse filter of unparsed RPSL objects by their class.
+ * Only the key of an object's first attribute is read, allowing objects of unwanted classes (person, mntner etc.)
+ * to be dropped before they are parsed or, for {@link RpslObjectMappedFileReader}, before their String is created.
+ * @author Benjamin George Roberts
+ */
+public class RpslObjectClassFilter implements Predicate<CharSequence> {
+
+	//Lower case, ASCII class names accepted by the filter
+	private final byte[][] classNames;
+
+	/**
+	 * Create a filter accepting objects of the provided types
+	 * @param objectTypes types of objects to accept
+	 */
+	public RpslObjectClassFilter(Collection<ObjectType> objectTypes) {
+		List<String> names = new ArrayList<String>();
+		for(ObjectType type : objectTypes)
+			names.add(type.getName());
+		this.classNames = toClassNames(names);
+	}
+
+	private RpslObjectClassFilter(byte[][] classNames) {
+		this.classNames = classNames;
+	}
+
+	/**
+	 * Create a filter accepting objects with the provided class names (eg. "aut-num")
+	 * @param names names of RPSL classes to accept
+	 * @return filter of the classes
+	 * @throws IllegalArgumentException if a name isn't a known RPSL class
+	 */
+	public static RpslObjectClassFilter forClassNames(Collection<String> names) {
+		List<String> validNames = new ArrayList<String>();
+		for(String name : names) {
+			boolean known = false;
+			for(ObjectType type : ObjectType.values())
+				known |= type.getName().equalsIgnoreCase(name.trim());
+			if(!known)
+				throw new IllegalArgumentException("Unknown RPSL class: " + name);
+			validNames.add(name.trim());
+		}
+		return new RpslObjectClassFilter(toClassNames(validNames));
+	}
+
+	private static byte[][] toClassNames(Collection<String> names) {
+		byte[][] classNames = new byte[names.size()][];
+		Iterator<String> nameIterator = names.iterator();
+		for(int i = 0; i < classNames.length; i++)
+			classNames[i] = nameIterator.next().toLowerCase(Locale.ENGLISH).getBytes(StandardCharsets.US_ASCII);
+		return classNames;
+	}
+
+	/**
+	 * Check if an unparsed object is of an accepted class. Leading comment lines are skipped.
+	 * @param object unparsed RPSL object
+	 * @return true if the object's class is accepted
+	 */
+	@Override
+	public boolean apply(CharSequence object) {
+		int keyStart = 0;
+		//Skip comment lines
+		while(keyStart < object.length() && (object.charAt(keyStart) == '#' || object.charAt(keyStart) == '%')) {
+			while(keyStart < object.length() && object.charAt(keyStart) != '\n')
+				keyStart++;
+			keyStart++;
+		}
+
+		for(byte[] className : classNames) {
+			if(keyStart + className.length >= object.length() || object.charAt(keyStart + className.length) != ':')
+				continue;
+			boolean matches = true;
+			for(int i = 0; i < className.length && matches; i++)
+				matches = Character.toLowerCase(object.charAt(keyStart + i)) == className[i];
+			if(matches)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Check if the object whose first attribute starts at the provided position of a buffer is of an accepted class
+	 * @param buffer buffer containing the object
+	 * @param keyStart absolute position of the object's first attribute key
+	 * @param lineLength length of the object's first line
+	 * @return true if the object's class is accepted
+	 */
+	public boolean accepts(ByteBuffer buffer, int keyStart, int lineLength) {
+		for(byte[] className : classNames) {
+			if(className.length >= lineLength || buffer.get(keyStart + className.length) != ':')
+				continue;
+			boolean matches = true;
+			for(int i = 0; i < className.length && matches; i++) {
+				byte keyByte = buffer.get(keyStart + i);
+				if(keyByte >= 'A' && keyByte <= 'Z')
+					keyByte += 'a' - 'A';
+				matches = keyByte == className[i];
+			}
+			if(matches)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Wrap a reader of unparsed objects so it only returns objects of the accepted classes
+	 * @param reader source of unparsed RPSL objects
+	 * @return view of the reader's accepted objects
+	 */
+	public Iterable<String> filter(Iterable<String> reader) {
+		return Iterables.filter(reader, this);
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reader splitting an RPSL dump into object strings by memory-mapping the file.
+ * Object boundaries (blank lines) are found by scanning the mapped bytes directly, the String of an object is only
+ * created once it is requested from the iterator. Files larger than the mapping window (including those over 2GB)
+ * are read by remapping the window at the start of the first object not contained in the current window.
+ * Comment lines (starting with '#' or '%') are dropped and lines are returned terminated by '\n'.
+ * If an {@link RpslObjectClassFilter} is provided, objects of rejected classes are skipped without being decoded.
+ * @author Benjamin George Roberts
+ */
+public class RpslObjectMappedFileReader implements Iterable<String> {
+
+	/**
+	 * Default size of the mapped window. Windows grow if an object is larger than the window.
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+
+	private final File file;
+	private final Charset charset;
+	private final int windowSize;
+	private final RpslObjectClassFilter classFilter;
+
+	/**
+	 * Create a reader of an ISO-8859-1 encoded RPSL dump
+	 * @param path path of dump to read
+	 */
+	public RpslObjectMappedFileReader(String path) {
+		this(path, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Create a reader of an RPSL dump
+	 * @param path path of dump to read
+	 * @param charset encoding of the dump
+	 */
+	public RpslObjectMappedFileReader(String path, Charset charset) {
+		this(path, charset, null);
+	}
+
+	/**
+	 * Create a reader of an RPSL dump only returning objects accepted by a class filter
+	 * @param path path of dump to read
+	 * @param charset encoding of the dump
+	 * @param classFilter filter of object classes to return, or null to return all objects
+	 */
+	public RpslObjectMappedFileReader(String path, Charset charset, RpslObjectClassFilter classFilter) {
+		this(path, charset, classFilter, DEFAULT_WINDOW_SIZE);
+	}
+
+	RpslObjectMappedFileReader(String path, Charset charset, RpslObjectClassFilter classFilter, int windowSize) {
+		if(windowSize < 1)
+			throw new IllegalArgumentException("Illegal window size: " + windowSize);
+		this.file = new File(path);
+		this.charset = charset;
+		this.classFilter = classFilter;
+		this.windowSize = windowSize;
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		try {
+			return new MappedObjectIterator();
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to read " + file, e);
+		}
+	}
+
+	/**
+	 * Iterator over the objects of the file. Locates the byte range of the next object ahead of time and
+	 * only decodes it when {@link #next()} is called.
+	 */
+	private class MappedObjectIterator implements Iterator<String> {
+		private final long fileSize;
+		private int currentWindowSize = windowSize;
+		private MappedByteBuffer window;
+		private long windowStart = 0;
+
+		//Absolute offsets of the next object, objectStart is -1 once the end of file is reached
+		private long objectStart, objectEnd, scanPosition = 0;
+		private boolean objectPending = false;
+		private byte[] scratch = new byte[4096];
+
+		MappedObjectIterator() throws IOException {
+			if(!file.isFile())
+				throw new IOException("Not a file: " + file);
+			fileSize = file.length();
+			map(0);
+		}
+
+		@Override
+		public boolean hasNext() {
+			if(!objectPending)
+				objectPending = findNextObject();
+			return objectPending;
+		}
+
+		@Override
+		public String next() {
+			if(!hasNext())
+				throw new NoSuchElementException();
+			objectPending = false;
+			return decodeObject();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Map a window of the file starting at the provided offset
+		 * @param start offset of window in file
+		 */
+		private void map(long start) {
+			long size = Math.min(currentWindowSize, fileSize - start);
+			try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+				//The mapping remains valid after the channel is closed
+				window = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, start, size);
+				windowStart = start;
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to map " + file, e);
+			}
+		}
+
+		/**
+		 * Ensure the byte at the provided offset is mapped. Remaps the window at the start of the current object so
+		 * the whole object remains in one window, growing the window if the object doesn't fit.
+		 * @param offset offset in file that must be mapped
+		 * @param retainFrom offset of the start of the object being scanned
+		 */
+		private void ensureMapped(long offset, long retainFrom) {
+			if(offset < windowStart + window.limit())
+				return;
+			if(retainFrom == windowStart) {
+				if(currentWindowSize == Integer.MAX_VALUE)
+					throw new IllegalStateException("Object at offset " + retainFrom + " is larger than 2GB");
+				currentWindowSize = (int) Math.min(Integer.MAX_VALUE, 2L * currentWindowSize);
+			}
+			map(retainFrom);
+		}
+
+		/**
+		 * Find the end of the line starting at the offset
+		 * @param lineStart offset of the start of the line
+		 * @param retainFrom offset of the start of the object being scanned
+		 * @return offset of the line's '\n' or the end of file
+		 */
+		private long findLineEnd(long lineStart, long retainFrom) {
+			long offset = lineStart;
+			while(offset < fileSize) {
+				ensureMapped(offset, retainFrom);
+				if(window.get((int) (offset - windowStart)) == '\n')
+					break;
+				offset++;
+			}
+			return offset;
+		}
+
+		/**
+		 * Length of a line, excluding line terminators
+		 */
+		private long lineLength(long lineStart, long lineEnd) {
+			if(lineEnd > lineStart && window.get((int) (lineEnd - 1 - windowStart)) == '\r')
+				return lineEnd - 1 - lineStart;
+			return lineEnd - lineStart;
+		}
+
+		/**
+		 * Check if the line at the provided (mapped) offset is a comment line
+		 */
+		private boolean isComment(long lineStart) {
+			byte first = window.get((int) (lineStart - windowStart));
+			return first == '#' || first == '%';
+		}
+
+		/**
+		 * Scan from the current position for the range of the next object
+		 * @return true if an object was found
+		 */
+		private boolean findNextObject() {
+			boolean skippingObject = false;
+			objectStart = -1;
+			while(scanPosition < fileSize) {
+				long lineStart = scanPosition,
+					 lineEnd = findLineEnd(lineStart, objectStart == -1 ? lineStart : objectStart),
+					 lineLength = lineLength(lineStart, lineEnd);
+				scanPosition = lineEnd + 1;
+
+				if(lineLength == 0) {
+					//Blank lines end the current object, or are skipped between objects
+					if(objectStart != -1)
+						break;
+					skippingObject = false;
+				} else if(objectStart == -1 && !skippingObject && !isComment(lineStart)) {
+					//The first line of an object is mapped, check its class before accepting it
+					if(classFilter == null || classFilter.accepts(window, (int) (lineStart - windowStart), (int) lineLength))
+						objectStart = lineStart;
+					else
+						skippingObject = true;
+				}
+				objectEnd = lineEnd;
+			}
+			return objectStart != -1;
+		}
+
+		/**
+		 * Decode the located object, dropping comment lines and carriage returns
+		 * @return String of the object
+		 */
+		private String decodeObject() {
+			int length = 0;
+			long lineStart = objectStart;
+
+			while(lineStart <= objectEnd && lineStart < fileSize) {
+				long lineEnd = findLineEnd(lineStart, objectStart);
+				int lineLength = (int) lineLength(lineStart, lineEnd);
+
+				if(lineLength > 0 && !isComment(lineStart)) {
+					if(length + lineLength + 1 > scratch.length)
+						scratch = Arrays.copyOf(scratch, Math.max(2 * scratch.length, length + lineLength + 1));
+					window.position((int) (lineStart - windowStart));
+					window.get(scratch, length, lineLength);
+					length += lineLength;
+					scratch[length++] = '\n';
+				}
+				lineStart = lineEnd + 1;
+			}
+			return new String(scratch, 0, length, charset);
+		}
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Open addressing hash set of primitive longs, used in place of {@code Set<Long>} for large sets of AS numbers.
+ * Values are stored in a single long array with linear probing. 0 marks a free slot, so the value 0 is tracked
+ * separately.
+ * @author Benjamin George Roberts
+ */
+public class LongHashSet implements LongSet {
+	private static final int MIN_CAPACITY = 4;
+
+	private long[] table;
+	private boolean containsZero = false;
+	private int size = 0;
+
+	/**
+	 * Create an empty set
+	 */
+	public LongHashSet() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * Create an empty set sized to hold the expected number of values without resizing
+	 * @param expectedSize expected number of values
+	 */
+	public LongHashSet(int expectedSize) {
+		table = new long[tableSizeFor(expectedSize)];
+	}
+
+	/**
+	 * Smallest power of two table keeping the load factor at or below 0.5
+	 */
+	static int tableSizeFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while(capacity < 2L * expectedSize)
+			capacity <<= 1;
+		return capacity;
+	}
+
+	/**
+	 * Spread the bits of a value over the table index
+	 */
+	static int hash(long value) {
+		long h = value * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Add a value to the set
+	 * @param value value to add
+	 * @return true if the set did not already contain the value
+	 */
+	public boolean add(long value) {
+		if(value == 0) {
+			if(containsZero)
+				return false;
+			containsZero = true;
+			size++;
+			return true;
+		}
+
+		int mask = table.length - 1;
+		for(int i = hash(value) & mask; ; i = (i + 1) & mask) {
+			if(table[i] == value)
+				return false;
+			if(table[i] == 0) {
+				table[i] = value;
+				if(++size > table.length / 2)
+					resize(table.length * 2);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Add every value of another set
+	 * @param values values to add
+	 */
+	public void addAll(LongSet values) {
+		for(LongIterator it = values.iterator(); it.hasNext();)
+			add(it.next());
+	}
+
+	@Override
+	public boolean contains(long value) {
+		if(value == 0)
+			return containsZero;
+
+		int mask = table.length - 1;
+		for(int i = hash(value) & mask; ; i = (i + 1) & mask) {
+			if(table[i] == value)
+				return true;
+			if(table[i] == 0)
+				return false;
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public LongIterator iterator() {
+		return new LongIterator() {
+			//index of the next slot to check, -1 for the zero value
+			private int index = containsZero ? -1 : 0;
+
+			@Override
+			public boolean hasNext() {
+				if(index == -1)
+					return true;
+				while(index < table.length && table[index] == 0)
+					index++;
+				return index < table.length;
+			}
+
+			@Override
+			public long next() {
+				if(!hasNext())
+					throw new NoSuchElementException();
+				if(index == -1) {
+					index = 0;
+					return 0;
+				}
+				return table[index++];
+			}
+		};
+	}
+
+	@Override
+	public long[] toArray() {
+		long[] values = new long[size];
+		int i = 0;
+		for(LongIterator it = iterator(); it.hasNext();)
+			values[i++] = it.next();
+		return values;
+	}
+
+	/**
+	 * Create the intersection of two sets, probing the larger set with the values of the smaller
+	 * @return new set of the values in both sets
+	 */
+	public static LongHashSet intersection(LongSet first, LongSet second) {
+		LongSet smaller = (first.size() <= second.size()) ? first : second,
+				larger = (smaller == first) ? second : first;
+		LongHashSet intersection = new LongHashSet();
+		for(LongIterator it = smaller.iterator(); it.hasNext();) {
+			long value = it.next();
+			if(larger.contains(value))
+				intersection.add(value);
+		}
+		return intersection;
+	}
+
+	private void resize(int capacity) {
+		long[] oldTable = table;
+		table = new long[capacity];
+		int mask = capacity - 1;
+		for(long value : oldTable) {
+			if(value == 0)
+				continue;
+			int i = hash(value) & mask;
+			while(table[i] != 0)
+				i = (i + 1) & mask;
+			table[i] = value;
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(!(o instanceof LongSet))
+			return false;
+		LongSet other = (LongSet) o;
+		if(other.size() != size)
+			return false;
+		for(LongIterator it = iterator(); it.hasNext();) {
+			if(!other.contains(it.next()))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		//order independent, consistent with equals
+		int hashCode = 0;
+		for(LongIterator it = iterator(); it.hasNext();) {
+			long value = it.next();
+			hashCode += (int) (value ^ (value >>> 32));
+		}
+		return hashCode;
+	}
+
+	@Override
+	public String toString() {
+		long[] values = toArray();
+		Arrays.sort(values);
+		return Arrays.toString(values);
+	}
+}
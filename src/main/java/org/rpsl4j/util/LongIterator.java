@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.util;
+
+/**
+ * Iterator over primitive longs, avoiding the boxing of {@link java.util.Iterator}
+ * @author Benjamin George Roberts
+ */
+public interface LongIterator {
+	/**
+	 * @return true if the iteration has more values
+	 */
+	public boolean hasNext();
+
+	/**
+	 * @return the next value of the iteration
+	 * @throws java.util.NoSuchElementException if there are no more values
+	 */
+	public long next();
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Open addressing hash map of primitive long keys to objects, used in place of {@code Map<Long, V>}.
+ * Keys and values are stored in parallel arrays with linear probing. 0 marks a free key slot, so the value of
+ * key 0 is stored separately. Null values are not permitted.
+ * @author Benjamin George Roberts
+ * @param <V> type of values
+ */
+public class LongObjectHashMap<V> {
+	private long[] keys;
+	private Object[] values;
+	private Object zeroValue = null;
+	private int size = 0;
+
+	/**
+	 * Create an empty map
+	 */
+	public LongObjectHashMap() {
+		this(0);
+	}
+
+	/**
+	 * Create an empty map sized to hold the expected number of keys without resizing
+	 * @param expectedSize expected number of keys
+	 */
+	public LongObjectHashMap(int expectedSize) {
+		int capacity = LongHashSet.tableSizeFor(expectedSize);
+		keys = new long[capacity];
+		values = new Object[capacity];
+	}
+
+	/**
+	 * Get the value of a key
+	 * @param key key to look up
+	 * @return value of key, or null if the key is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		if(key == 0)
+			return (V) zeroValue;
+
+		int mask = keys.length - 1;
+		for(int i = LongHashSet.hash(key) & mask; ; i = (i + 1) & mask) {
+			if(keys[i] == key)
+				return (V) values[i];
+			if(keys[i] == 0)
+				return null;
+		}
+	}
+
+	/**
+	 * @param key key to look up
+	 * @return true if the map contains the key
+	 */
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Associate a value with a key, replacing any existing value
+	 * @param key key of value
+	 * @param value value to store, not null
+	 * @return previous value of the key, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if(value == null)
+			throw new NullPointerException("Null values are not permitted");
+
+		if(key == 0) {
+			V previous = (V) zeroValue;
+			if(previous == null)
+				size++;
+			zeroValue = value;
+			return previous;
+		}
+
+		int mask = keys.length - 1;
+		for(int i = LongHashSet.hash(key) & mask; ; i = (i + 1) & mask) {
+			if(keys[i] == key) {
+				V previous = (V) values[i];
+				values[i] = value;
+				return previous;
+			}
+			if(keys[i] == 0) {
+				keys[i] = key;
+				values[i] = value;
+				if(++size > keys.length / 2)
+					resize(keys.length * 2);
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * @return number of keys in the map
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the map contains no keys
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return new set of the map's keys
+	 */
+	public LongHashSet keySet() {
+		LongHashSet keySet = new LongHashSet(size);
+		if(zeroValue != null)
+			keySet.add(0);
+		for(long key : keys) {
+			if(key != 0)
+				keySet.add(key);
+		}
+		return keySet;
+	}
+
+	/**
+	 * @return new list of the map's values
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> values() {
+		List<V> valueList = new ArrayList<V>(size);
+		if(zeroValue != null)
+			valueList.add((V) zeroValue);
+		for(int i = 0; i < keys.length; i++) {
+			if(keys[i] != 0)
+				valueList.add((V) values[i]);
+		}
+		return valueList;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new long[capacity];
+		values = new Object[capacity];
+		int mask = capacity - 1;
+		for(int j = 0; j < oldKeys.length; j++) {
+			if(oldKeys[j] == 0)
+				continue;
+			int i = LongHashSet.hash(oldKeys[j]) & mask;
+			while(keys[i] != 0)
+				i = (i + 1) & mask;
+			keys[i] = oldKeys[j];
+			values[i] = oldValues[j];
+		}
+	}
+}
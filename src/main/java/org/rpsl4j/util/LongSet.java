@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.util;
+
+/**
+ * Read-only view of a set of primitive longs
+ * @author Benjamin George Roberts
+ */
+public interface LongSet {
+	/**
+	 * @return number of values in the set
+	 */
+	public int size();
+
+	/**
+	 * @return true if the set contains no values
+	 */
+	public boolean isEmpty();
+
+	/**
+	 * @param value value to look up
+	 * @return true if the set contains the value
+	 */
+	public boolean contains(long value);
+
+	/**
+	 * @return iterator over the values of the set, in no particular order
+	 */
+	public LongIterator iterator();
+
+	/**
+	 * @return new array of the values of the set, in no particular order
+	 */
+	public long[] toArray();
+}
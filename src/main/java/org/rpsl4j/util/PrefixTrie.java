@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Path compressed binary radix trie of address prefixes up to 128 bits long.
+ * Prefixes are given as two longs holding the address bits left aligned (the first bit of the prefix is the top bit
+ * of high) and the prefix length, bits past the prefix length are ignored. IPv4 prefixes are stored by shifting the
+ * address into the top 32 bits of high, IPv4 and IPv6 prefixes should be kept in separate tries.
+ * Each query walks at most one node per bit of the prefix. Null values are not permitted.
+ * @author Benjamin George Roberts
+ * @param <V> type of values
+ */
+public class PrefixTrie<V> {
+
+	/**
+	 * Maximum length of a prefix
+	 */
+	public static final int MAX_LENGTH = 128;
+
+	private static class Node<V> {
+		final long high, low;
+		final int length;
+		V value;
+		Node<V> zero, one;
+
+		Node(long high, long low, int length) {
+			this.high = high;
+			this.low = low;
+			this.length = length;
+		}
+	}
+
+	private Node<V> root = null;
+	private int size = 0;
+
+	/**
+	 * Associate a value with a prefix, replacing any existing value
+	 * @param high top 64 bits of the prefix
+	 * @param low bottom 64 bits of the prefix
+	 * @param length length of the prefix
+	 * @param value value to store, not null
+	 * @return previous value of the prefix, or null
+	 */
+	public V put(long high, long low, int length, V value) {
+		if(value == null)
+			throw new NullPointerException("Null values are not permitted");
+		checkLength(length);
+		high = maskHigh(high, length);
+		low = maskLow(low, length);
+
+		Node<V> parent = null, node = root;
+		while(node != null) {
+			int common = commonLength(node.high, node.low, node.length, high, low, length);
+
+			if(common == node.length && common == length) {
+				//Prefix already has a node
+				V previous = node.value;
+				node.value = value;
+				if(previous == null)
+					size++;
+				return previous;
+			} else if(common == node.length) {
+				//Node covers the prefix, descend
+				parent = node;
+				node = bit(high, low, node.length) ? node.one : node.zero;
+				continue;
+			}
+
+			//Prefix diverges from the node or covers it, split the edge
+			Node<V> inserted;
+			if(common == length) {
+				inserted = new Node<V>(high, low, length);
+				inserted.value = value;
+				setChild(inserted, node);
+			} else {
+				inserted = new Node<V>(maskHigh(high, common), maskLow(low, common), common);
+				Node<V> leaf = new Node<V>(high, low, length);
+				leaf.value = value;
+				setChild(inserted, node);
+				setChild(inserted, leaf);
+			}
+			replaceChild(parent, node, inserted);
+			size++;
+			return null;
+		}
+
+		Node<V> leaf = new Node<V>(high, low, length);
+		leaf.value = value;
+		if(parent == null)
+			root = leaf;
+		else
+			setChild(parent, leaf);
+		size++;
+		return null;
+	}
+
+	/**
+	 * Get the value of a prefix
+	 * @param high top 64 bits of the prefix
+	 * @param low bottom 64 bits of the prefix
+	 * @param length length of the prefix
+	 * @return value of the prefix, or null if it isn't in the trie
+	 */
+	public V get(long high, long low, int length) {
+		checkLength(length);
+		Node<V> node = root;
+		while(node != null && node.length <= length && commonLength(node.high, node.low, node.length, high, low, length) == node.length) {
+			if(node.length == length)
+				return node.value;
+			node = bit(high, low, node.length) ? node.one : node.zero;
+		}
+		return null;
+	}
+
+	/**
+	 * Get the value of the longest prefix in the trie covering a prefix
+	 * @param high top 64 bits of the prefix
+	 * @param low bottom 64 bits of the prefix
+	 * @param length length of the prefix
+	 * @return value of the longest covering prefix (including the prefix itself), or null if none are in the trie
+	 */
+	public V getLongestMatch(long high, long low, int length) {
+		List<V> covering = getCovering(high, low, length, true);
+		return covering.isEmpty() ? null : covering.get(covering.size() - 1);
+	}
+
+	/**
+	 * Get the values of the prefixes in the trie covering a prefix
+	 * @param high top 64 bits of the prefix
+	 * @param low bottom 64 bits of the prefix
+	 * @param length length of the prefix
+	 * @param inclusive true if the value of the prefix itself is included
+	 * @return values of covering prefixes, from least to most specific
+	 */
+	public List<V> getCovering(long high, long low, int length, boolean inclusive) {
+		checkLength(length);
+		List<V> covering = new ArrayList<V>();
+		Node<V> node = root;
+		while(node != null && node.length <= length && commonLength(node.high, node.low, node.length, high, low, length) == node.length) {
+			if(node.length == length) {
+				if(inclusive && node.value != null)
+					covering.add(node.value);
+				break;
+			}
+			if(node.value != null)
+				covering.add(node.value);
+			node = bit(high, low, node.length) ? node.one : node.zero;
+		}
+		return covering;
+	}
+
+	/**
+	 * Get the values of the prefixes in the trie covered by a prefix
+	 * @param high top 64 bits of the prefix
+	 * @param low bottom 64 bits of the prefix
+	 * @param length length of the prefix
+	 * @param inclusive true if the value of the prefix itself is included
+	 * @return values of covered prefixes, in address order with less specific prefixes first
+	 */
+	public List<V> getCovered(long high, long low, int length, boolean inclusive) {
+		checkLength(length);
+		List<V> covered = new ArrayList<V>();
+
+		//Find the least specific node covered by the prefix
+		Node<V> node = root;
+		while(node != null && node.length < length) {
+			if(commonLength(node.high, node.low, node.length, high, low, length) != node.length)
+				return covered;
+			node = bit(high, low, node.length) ? node.one : node.zero;
+		}
+		if(node == null || commonLength(node.high, node.low, node.length, high, low, length) != length)
+			return covered;
+
+		Deque<Node<V>> stack = new ArrayDeque<Node<V>>();
+		stack.push(node);
+		while(!stack.isEmpty()) {
+			Node<V> next = stack.pop();
+			if(next.value != null && (inclusive || next.length != length))
+				covered.add(next.value);
+			if(next.one != null)
+				stack.push(next.one);
+			if(next.zero != null)
+				stack.push(next.zero);
+		}
+		return covered;
+	}
+
+	/**
+	 * @return number of prefixes in the trie
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the trie contains no prefixes
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	private void setChild(Node<V> parent, Node<V> child) {
+		if(bit(child.high, child.low, parent.length))
+			parent.one = child;
+		else
+			parent.zero = child;
+	}
+
+	private void replaceChild(Node<V> parent, Node<V> child, Node<V> replacement) {
+		if(parent == null)
+			root = replacement;
+		else if(parent.one == child)
+			parent.one = replacement;
+		else
+			parent.zero = replacement;
+	}
+
+	private static void checkLength(int length) {
+		if(length < 0 || length > MAX_LENGTH)
+			throw new IllegalArgumentException("Invalid prefix length: " + length);
+	}
+
+	/**
+	 * Number of leading bits two prefixes have in common
+	 * @return length of the common prefix, at most the shorter of the two lengths
+	 */
+	public static int commonLength(long firstHigh, long firstLow, int firstLength, long secondHigh, long secondLow, int secondLength) {
+		int maxLength = Math.min(firstLength, secondLength);
+		long highDifference = firstHigh ^ secondHigh;
+		int common = (highDifference != 0) ? Long.numberOfLeadingZeros(highDifference) : 64 + Long.numberOfLeadingZeros(firstLow ^ secondLow);
+		return Math.min(common, maxLength);
+	}
+
+	/**
+	 * Get the bit of a prefix at an index, 0 being the top bit of high
+	 */
+	static boolean bit(long high, long low, int index) {
+		return (index < 64) ? (high >>> (63 - index) & 1) != 0 : (low >>> (127 - index) & 1) != 0;
+	}
+
+	/**
+	 * Clear the bits of high past a prefix length
+	 */
+	public static long maskHigh(long high, int length) {
+		return (length >= 64) ? high : (length == 0) ? 0 : high & (-1L << (64 - length));
+	}
+
+	/**
+	 * Clear the bits of low past a prefix length
+	 */
+	public static long maskLow(long low, int length) {
+		return (length <= 64) ? 0 : (length == 128) ? low : low & (-1L << (128 - length));
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.util;
+
+import java.util.Arrays;
+
+/**
+ * Compressed bitmap of non-negative int ids, used to index large groups of densely numbered objects.
+ * Only the non-zero 64 bit words are stored, with their word indexes in a sorted array, so a bitmap of a few ids
+ * spread over a large id space stays small. Intersections and unions are a merge over the word indexes, combining one
+ * word (64 ids) per step. Ids added in increasing order are appended without searching.
+ * @author Benjamin George Roberts
+ */
+public class SparseBitmap {
+	private static final int MIN_CAPACITY = 4;
+
+	private int[] keys; //sorted indexes of the stored words
+	private long[] words; //non-zero words, words[i] holds ids keys[i] * 64 to keys[i] * 64 + 63
+	private int size = 0; //number of stored words
+
+	/**
+	 * Create an empty bitmap
+	 */
+	public SparseBitmap() {
+		this(MIN_CAPACITY);
+	}
+
+	private SparseBitmap(int capacity) {
+		keys = new int[Math.max(capacity, 1)];
+		words = new long[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Create a bitmap of a list of ids
+	 * @param ids ids to add
+	 * @return new bitmap
+	 */
+	public static SparseBitmap of(int... ids) {
+		SparseBitmap bitmap = new SparseBitmap();
+		for(int id : ids)
+			bitmap.add(id);
+		return bitmap;
+	}
+
+	/**
+	 * Add an id to the bitmap
+	 * @param id non-negative id to add
+	 * @return true if the bitmap did not already contain the id
+	 */
+	public boolean add(int id) {
+		if(id < 0)
+			throw new IllegalArgumentException("Negative id: " + id);
+
+		int key = id >>> 6;
+		long bit = 1L << id;
+		int index;
+		if(size > 0 && keys[size - 1] == key) {
+			index = size - 1;
+		} else if(size == 0 || keys[size - 1] < key) {
+			index = insertWord(size, key);
+		} else {
+			index = Arrays.binarySearch(keys, 0, size, key);
+			if(index < 0)
+				index = insertWord(-index - 1, key);
+		}
+
+		if((words[index] & bit) != 0)
+			return false;
+		words[index] |= bit;
+		return true;
+	}
+
+	private int insertWord(int index, int key) {
+		if(size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			words = Arrays.copyOf(words, size * 2);
+		}
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		System.arraycopy(words, index, words, index + 1, size - index);
+		keys[index] = key;
+		words[index] = 0;
+		size++;
+		return index;
+	}
+
+	/**
+	 * @param id id to look up
+	 * @return true if the bitmap contains the id
+	 */
+	public boolean contains(int id) {
+		if(id < 0)
+			return false;
+		int index = Arrays.binarySearch(keys, 0, size, id >>> 6);
+		return index >= 0 && (words[index] & (1L << id)) != 0;
+	}
+
+	/**
+	 * @return number of ids in the bitmap
+	 */
+	public int cardinality() {
+		int cardinality = 0;
+		for(int i = 0; i < size; i++)
+			cardinality += Long.bitCount(words[i]);
+		return cardinality;
+	}
+
+	/**
+	 * @return true if the bitmap contains no ids
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Find the first id of the bitmap at or after an id. Ids are iterated with
+	 * {@code for(int id = bitmap.nextSetBit(0); id >= 0; id = bitmap.nextSetBit(id + 1))}
+	 * @param fromId id to start from, negative ids (ie. one past the largest id) find nothing
+	 * @return first id at or after fromId, or -1 if there is none
+	 */
+	public int nextSetBit(int fromId) {
+		if(fromId < 0)
+			return -1;
+		int key = fromId >>> 6;
+		int index = Arrays.binarySearch(keys, 0, size, key);
+		if(index < 0) {
+			index = -index - 1;
+		} else {
+			long word = words[index] & (-1L << fromId);
+			if(word != 0)
+				return (key << 6) + Long.numberOfTrailingZeros(word);
+			index++;
+		}
+		return (index < size) ? (keys[index] << 6) + Long.numberOfTrailingZeros(words[index]) : -1;
+	}
+
+	/**
+	 * @return ids of the bitmap in increasing order
+	 */
+	public int[] toArray() {
+		int[] ids = new int[cardinality()];
+		int i = 0;
+		for(int id = nextSetBit(0); id >= 0; id = nextSetBit(id + 1))
+			ids[i++] = id;
+		return ids;
+	}
+
+	/**
+	 * Create the intersection of two bitmaps, combining the words both bitmaps store
+	 * @return new bitmap of the ids in both bitmaps
+	 */
+	public static SparseBitmap and(SparseBitmap first, SparseBitmap second) {
+		SparseBitmap intersection = new SparseBitmap(Math.min(first.size, second.size));
+		int i = 0, j = 0;
+		while(i < first.size && j < second.size) {
+			if(first.keys[i] < second.keys[j]) {
+				i++;
+			} else if(first.keys[i] > second.keys[j]) {
+				j++;
+			} else {
+				long word = first.words[i] & second.words[j];
+				if(word != 0)
+					intersection.appendWord(first.keys[i], word);
+				i++;
+				j++;
+			}
+		}
+		return intersection;
+	}
+
+	/**
+	 * Create the union of two bitmaps, combining the words both bitmaps store
+	 * @return new bitmap of the ids in either bitmap
+	 */
+	public static SparseBitmap or(SparseBitmap first, SparseBitmap second) {
+		SparseBitmap union = new SparseBitmap(first.size + second.size);
+		int i = 0, j = 0;
+		while(i < first.size || j < second.size) {
+			if(j == second.size || (i < first.size && first.keys[i] < second.keys[j])) {
+				union.appendWord(first.keys[i], first.words[i]);
+				i++;
+			} else if(i == first.size || first.keys[i] > second.keys[j]) {
+				union.appendWord(second.keys[j], second.words[j]);
+				j++;
+			} else {
+				union.appendWord(first.keys[i], first.words[i] | second.words[j]);
+				i++;
+				j++;
+			}
+		}
+		return union;
+	}
+
+	private void appendWord(int key, long word) {
+		if(size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			words = Arrays.copyOf(words, size * 2);
+		}
+		keys[size] = key;
+		words[size] = word;
+		size++;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(!(o instanceof SparseBitmap))
+			return false;
+		SparseBitmap other = (SparseBitmap) o;
+		if(other.size != size)
+			return false;
+		for(int i = 0; i < size; i++) {
+			if(keys[i] != other.keys[i] || words[i] != other.words[i])
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 1;
+		for(int i = 0; i < size; i++) {
+			hash = 31 * hash + keys[i];
+			hash = 31 * hash + (int) (words[i] ^ (words[i] >>> 32));
+		}
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+}
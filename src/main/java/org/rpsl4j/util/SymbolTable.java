@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns case-insensitive names (set names, maintainers etc.) to dense int ids.
+ * Names are case-folded once when interned, after which names can be stored and compared as ids.
+ * Ids are assigned in the order names are first interned, starting at 0. Lookups may run concurrently with interning.
+ * @author Benjamin George Roberts
+ */
+public class SymbolTable {
+
+	/**
+	 * Id returned by {@link #lookup(CharSequence)} for names that have not been interned
+	 */
+	public static final int NO_SYMBOL = -1;
+
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+	private final List<String> names = new ArrayList<String>();
+
+	/**
+	 * Get the id of a name, assigning it a new id if it hasn't been interned
+	 * @param name name to intern, compared case-insensitively
+	 * @return id of the name
+	 */
+	public int intern(CharSequence name) {
+		String folded = fold(name);
+		Integer id = ids.get(folded);
+		if(id != null)
+			return id;
+
+		synchronized(names) {
+			id = ids.get(folded);
+			if(id == null) {
+				id = names.size();
+				names.add(folded);
+				ids.put(folded, id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * Get the id of a name without interning it
+	 * @param name name to look up, compared case-insensitively
+	 * @return id of the name, or {@link #NO_SYMBOL} if it hasn't been interned
+	 */
+	public int lookup(CharSequence name) {
+		Integer id = ids.get(fold(name));
+		return (id != null) ? id : NO_SYMBOL;
+	}
+
+	/**
+	 * Get the case-folded name of an id
+	 * @param id id returned by {@link #intern(CharSequence)}
+	 * @return lower case name of the id
+	 * @throws IndexOutOfBoundsException if the id hasn't been assigned
+	 */
+	public String getName(int id) {
+		synchronized(names) {
+			return names.get(id);
+		}
+	}
+
+	/**
+	 * Translate an id of another table to the id of the same name in this table
+	 * @param other table the id was assigned by
+	 * @param id id of the other table
+	 * @return id of the name in this table, or {@link #NO_SYMBOL} if it hasn't been interned
+	 */
+	public int translate(SymbolTable other, int id) {
+		return (other == this) ? id : lookup(other.getName(id));
+	}
+
+	/**
+	 * @return number of interned names
+	 */
+	public int size() {
+		return ids.size();
+	}
+
+	private static String fold(CharSequence name) {
+		return name.toString().toLowerCase(Locale.ENGLISH);
+	}
+}
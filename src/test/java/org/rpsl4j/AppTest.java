@@ -5,6 +5,7 @@
 
 package org.rpsl4j;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -17,13 +18,12 @@ import java.io.IOException;
 import java.io.File;
 import java.util.HashMap;
 
-import net.ripe.db.whois.common.io.RpslObjectFileReader;
-
 import org.junit.Before;
 import org.junit.Test;
 import org.rpsl4j.App;
 import org.rpsl4j.emitters.NullEmitter;
 import org.rpsl4j.emitters.XMLEmitter;
+import org.rpsl4j.io.RpslObjectMappedFileReader;
 
 import com.beust.jcommander.ParameterException;
 
@@ -108,6 +108,12 @@ public class AppTest {
 		assertTrue("Help mode shouldn't initialise other parameters", app.emitter==null && app.reader==null && app.writer==null);
 	}
 
+	@Test (expected = ParameterException.class)
+	public void testInvalidThreadCountFail() {
+		app.setup(new String[] {"-i", inputPath.toString(), "-t", "0"});
+		fail("Setup should fail if less than one parser thread is requested");
+	}
+
 	@Test (expected = ParameterException.class)
 	public void testInputNoPathFail() {
 		app.setup(arg_inputShort_noval);
@@ -141,10 +147,39 @@ public class AppTest {
 		assertFalse(app.help_displayEmitters);
 
 		//check that a file - rather than stdin - reader was set up
-		assertTrue(app.reader instanceof RpslObjectFileReader);
+		assertTrue(app.reader instanceof RpslObjectMappedFileReader);
 		assertTrue(app.writer.outputEmitter instanceof XMLEmitter);
 	}
 
+	@Test
+	public void testThreadsParam() {
+		final String argSample[] = {"-i", inputPath.toString(), "--threads", "3"};
+		app.setup(argSample);
+		assertEquals("Thread count should be read from --threads", 3, app.parserThreads);
+	}
+
+	@Test (expected = ParameterException.class)
+	public void testInvalidClassFail() {
+		app.setup(new String[] {"-i", inputPath.toString(), "-c", "aut-num,not-a-class"});
+	}
+
+	@Test
+	public void testClassFilter() {
+		app.setup(new String[] {"-i", inputPath.toString(), "-e", XMLEmitter.class.getName()});
+		assertTrue("Emitters not declaring classes should be passed every object", app.classFilter == null);
+
+		app = new App();
+		app.setup(new String[] {"-i", inputPath.toString()});
+		assertTrue("Classes declared by the emitter should be filtered", app.classFilter != null);
+		assertTrue(!app.classFilter.apply("aut-num: AS1\n"));
+
+		app = new App();
+		app.setup(new String[] {"-i", inputPath.toString(), "--classes", "aut-num,route"});
+		assertTrue("--classes should override the emitter's classes", app.classFilter.apply("aut-num: AS1\n"));
+		assertTrue(app.classFilter.apply("route: 1.1.1.0/24\n"));
+		assertTrue(!app.classFilter.apply("person: Someone\n"));
+	}
+
 	@Test
 	public void testXMLOutput() throws IOException {
 		final String argSample[] = {"-i", inputPath.toString(), "-o", outputPath.toString(), "-e", XMLEmitter.class.getName()};
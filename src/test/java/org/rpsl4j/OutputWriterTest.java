@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import net.ripe.db.whois.common.rpsl.RpslObject;
+
+import org.junit.Test;
+import org.rpsl4j.emitters.OutputEmitter;
+import org.rpsl4j.emitters.StreamingOutputEmitter;
+
+public class OutputWriterTest {
+	private static final RpslObject AUTNUM = RpslObject.parse("aut-num: AS1\nas-name: TEST-AS\n");
+
+	/**
+	 * Emitter only implementing the String based interface
+	 */
+	private static class CountingEmitter implements OutputEmitter {
+		@Override
+		public String emit(Set<RpslObject> objects) {
+			return "objects: " + objects.size();
+		}
+
+		@Override
+		public void setArguments(Map<String, String> arguments) {
+		}
+
+		@Override
+		public Map<String, String> validArguments() {
+			return new HashMap<String, String>();
+		}
+	}
+
+	/**
+	 * Emitter which writes different output when streaming, to identify which method was called
+	 */
+	private static class CountingStreamingEmitter extends CountingEmitter implements StreamingOutputEmitter {
+		@Override
+		public void emit(Set<RpslObject> objects, Writer out) throws IOException {
+			out.write("streamed objects: " + objects.size());
+		}
+	}
+
+	@Test
+	public void bridgesStringEmitters() throws IOException {
+		OutputWriter outputWriter = new OutputWriter(new CountingEmitter());
+		outputWriter.addObject(AUTNUM);
+
+		StringWriter destination = new StringWriter();
+		outputWriter.writeTo(destination);
+		assertEquals("String output of emitter should be written to destination", "objects: 1", destination.toString());
+		assertEquals("objects: 1", outputWriter.toString());
+	}
+
+	@Test
+	public void prefersStreamingEmitters() throws IOException {
+		OutputWriter outputWriter = new OutputWriter(new CountingStreamingEmitter());
+		outputWriter.addObject(AUTNUM);
+
+		StringWriter destination = new StringWriter();
+		outputWriter.writeTo(destination);
+		assertEquals("Streaming emitters should write directly to the destination", "streamed objects: 1", destination.toString());
+		assertEquals("streamed objects: 1", outputWriter.toString());
+	}
+}
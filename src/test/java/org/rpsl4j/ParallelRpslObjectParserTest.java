@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import net.ripe.db.whois.common.io.RpslObjectStringReader;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+
+import org.junit.Test;
+import org.rpsl4j.emitters.NullEmitter;
+
+public class ParallelRpslObjectParserTest {
+	private static final String INVALID_OBJECT = "this is not\nan rpsl\nobject\nat all\n\n";
+
+	/**
+	 * Generate a document of distinct aut-num objects
+	 * @param count number of objects in document
+	 * @return RPSL document string
+	 */
+	private static String generateDocument(int count) {
+		StringBuilder builder = new StringBuilder();
+		for(int i = 1; i <= count; i++)
+			builder.append("aut-num: AS").append(i).append("\nas-name: AS").append(i).append("\n\n");
+		return builder.toString();
+	}
+
+	@Test
+	public void parsesAllObjects() throws InterruptedException {
+		for(int threads : new int[] {1, 4}) {
+			OutputWriter writer = new OutputWriter(new NullEmitter());
+			new ParallelRpslObjectParser(threads).parse(new RpslObjectStringReader(generateDocument(5000)), writer);
+			assertEquals("Every object should be parsed and added to the writer", 5000, writer.getObjects().size());
+		}
+	}
+
+	@Test
+	public void skipsAndReportsInvalidObjects() throws InterruptedException {
+		ByteArrayOutputStream errorOutput = new ByteArrayOutputStream();
+		OutputWriter writer = new OutputWriter(new NullEmitter());
+
+		new ParallelRpslObjectParser(2, new PrintStream(errorOutput, true))
+			.parse(new RpslObjectStringReader(generateDocument(10) + INVALID_OBJECT), writer);
+
+		assertEquals("Valid objects should still be added when another fails", 10, writer.getObjects().size());
+		assertTrue("Failed object should be reported", errorOutput.toString().contains("Unable to parse following object, skipping..."));
+		assertTrue("Report should contain excerpt of failed object", errorOutput.toString().contains("this is not\nan rpsl\nobject\n...\n"));
+	}
+
+	@Test(timeout=10000)
+	public void failsWhenWorkerDies() throws InterruptedException {
+		ParallelRpslObjectParser parser = new ParallelRpslObjectParser(1) {
+			@Override
+			RpslObject parseObject(String stringObject) {
+				throw new AssertionError("Worker died");
+			}
+		};
+
+		//More objects than the queue holds, so the reader fills it behind the dead worker
+		try {
+			parser.parse(new RpslObjectStringReader(generateDocument(2 * ParallelRpslObjectParser.QUEUE_CAPACITY_PER_THREAD)),
+					new OutputWriter(new NullEmitter()));
+			fail("Failure of the worker should be thrown");
+		} catch (IllegalStateException e) {
+			assertTrue("Worker's error should be the cause", e.getCause() instanceof AssertionError);
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void requiresWorkerThread() {
+		new ParallelRpslObjectParser(0);
+	}
+}
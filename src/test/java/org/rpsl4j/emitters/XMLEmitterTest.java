@@ -7,6 +7,8 @@ package org.rpsl4j.emitters;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -187,6 +189,13 @@ public class XMLEmitterTest {
 		assertEquals("Should match reference XML output", EXAMPLE_RPSL_XML_OUTPUT, xmlString);
 	}
 	
+	@Test
+	public void streamsXMLFromRPSL() throws IOException {
+		StringWriter writer = new StringWriter();
+		new XMLEmitter().emit(parseRPSL(EXAMPLE_RPSL_STRING), writer);
+		assertEquals("Streamed output should match reference XML output", EXAMPLE_RPSL_XML_OUTPUT, writer.toString());
+	}
+	
 	@Test
 	public void generatesXMLString() {
 		Document root = newDocument();
@@ -7,9 +7,12 @@ package org.rpsl4j.emitters.rpsldocument;
 
 import static org.junit.Assert.*;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 import net.ripe.db.whois.common.io.RpslObjectStringReader;
+import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.common.rpsl.attrs.AddressPrefixRange;
 
 import org.junit.Test;
@@ -33,13 +36,13 @@ public class BGPAsSetTest {
 				autNumMaintainedMember + autNumMember + autNumOrphan + asSetByRef));
 		
 		assertEquals("only routes with origin matching member-of and mnt-by should be added to set with restrictive mbrs-by-ref", 1,
-				doc.asSets.get("as-set").resolve(doc).size());
+				doc.getASSet("as-set").resolve(doc).size());
 		
 		//Check that all routes with member-of are added to unrestricted set
 		doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(
 				autNumMaintainedMember + autNumMember + autNumOrphan + asSetAny));
 		assertTrue("all routes with origin matching member-of should be added to set with mbrs-by-ref: ANY",
-				doc.asSets.get("as-set").resolve(doc).size() == 2);
+				doc.getASSet("as-set").resolve(doc).size() == 2);
 		
 		
 		
@@ -47,7 +50,7 @@ public class BGPAsSetTest {
 		doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(
 				autNumMaintainedMember + autNumMember + autNumOrphan + asSetEmpty));
 		assertTrue("as set with no mbrs-by-ref should not load any member-of routes",
-				doc.asSets.get("rs-set").resolve(doc).size() == 0);
+				doc.getASSet("rs-set").resolve(doc).size() == 0);
 	}
 	
 	@Test
@@ -113,4 +116,28 @@ public class BGPAsSetTest {
 				setBothRoutes.contains(new BGPRoute(AddressPrefixRange.parse("1.1.1.0/24"), null)) &&
 				setBothRoutes.contains(new BGPRoute(AddressPrefixRange.parse("1.1.2.0/24"), null)));		
 	}
+
+	@Test
+	public void classifiesMembers() {
+		BGPAsSet asSet = new BGPAsSet(RpslObject.parse("as-set: as-members\nmembers: AS1, as4200000000^+, as-other, AS-OTHER^-, 1.1.1.0/24\n"));
+		
+		Map<Long, String> autNumOperators = new HashMap<Long, String>();
+		for(int i = 0; i < asSet.memberAutNums.length; i++)
+			autNumOperators.put(asSet.memberAutNums[i], asSet.memberAutNumOperators[i]);
+		
+		assertEquals("AS members should be parsed once, including 32 bit ASNs", 2, asSet.memberAutNums.length);
+		assertTrue(autNumOperators.containsKey(1L) && autNumOperators.get(1L) == null);
+		assertEquals("^+", autNumOperators.get(4200000000L));
+		assertEquals("Set members should not be parsed as ASes", 1, asSet.memberSetIds.length);
+		assertEquals(1, asSet.rangedMemberSetIds.length);
+	}
+	
+	@Test
+	public void skipsUndeclaredMembers() {
+		BGPRpslDocument doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(
+				"aut-num: AS1\nas-name: AS1\n\nroute: 1.1.1.0/24\norigin: AS1\n\n"
+				+ "as-set: as-set\nmembers: AS1, as-undeclared, as-undeclared^+\n\n"));
+		
+		assertEquals("Undeclared member sets should be skipped", 1, doc.getASSet("as-set").resolve(doc).size());
+	}
 }
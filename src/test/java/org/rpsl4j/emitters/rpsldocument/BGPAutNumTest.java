@@ -7,50 +7,28 @@ package org.rpsl4j.emitters.rpsldocument;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import net.ripe.db.whois.common.rpsl.AttributeType;
-import net.ripe.db.whois.common.rpsl.RpslAttribute;
+import net.ripe.db.whois.common.io.RpslObjectStringReader;
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.common.rpsl.attrs.AddressPrefixRange;
 
-import org.apache.commons.lang3.tuple.Pair;
 import org.junit.Test;
 import org.rpsl4j.emitters.rpsldocument.BGPAutNum;
 import org.rpsl4j.emitters.rpsldocument.BGPRoute;
 
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+
 public class BGPAutNumTest {
 
-	@Test
-	public void getExportPeers() {
-		String exportPeerString = 
-				"export: 	to AS1 at 3.3.3.3" +
-				"			to AS2 1.1.1.1 2.2.2.2 at 3.3.3.3\n" +
-				"			announce AS3",
-				trueMessage = "List should contain ((%s, %s), %s)",
-				falseMessage = "List should not contain ((%s, %s), %s)";
-		
-		RpslAttribute exportAttr = new RpslAttribute(AttributeType.EXPORT, exportPeerString);
-		Set<Pair<Pair<Long, String>, String>> peerList = BGPAutNum.getExportPeers(exportAttr);		
-	
-		assertTrue(String.format(trueMessage, "1", "0.0.0.0", "3.3.3.3"), peerList.contains(Pair.of(Pair.of(1l, "0.0.0.0"), "3.3.3.3")));
-		assertTrue(String.format(trueMessage, "2", "1.1.1.1", "3.3.3.3"), peerList.contains(Pair.of(Pair.of(2l, "1.1.1.1"), "3.3.3.3")));
-		assertTrue(String.format(trueMessage, "2", "2.2.2.2", "3.3.3.3"), peerList.contains(Pair.of(Pair.of(2l, "2.2.2.2"), "3.3.3.3")));
-		assertFalse(String.format(falseMessage, "2", "0.0.0.0", "3.3.3.3"), peerList.contains(Pair.of(Pair.of(2l, "0.0.0.0"), "3.3.3.3")));
-	}
-	
-	@Test
-	public void getExportPeersRequiresLocalRouter() {
-		String exportPeerString = 
-				"export: 	to AS1\n" +
-			    "			to AS2 1.1.1.1\n" + 
-			    "			announce AS3";
-		
-		RpslAttribute exportAttr = new RpslAttribute(AttributeType.EXPORT, exportPeerString);
-		Set<Pair<Pair<Long, String>, String>> peerList = BGPAutNum.getExportPeers(exportAttr);
-		assertTrue("Export Peers should not add peers with missing local routers", peerList.size() == 0);
-	}
-	
 	@Test
 	public void generateRouteMaps() {
 		String autNumString = 
@@ -64,34 +42,103 @@ public class BGPAutNumTest {
 			   message = "Route map should contain following entry: \"%s\" -> \"%s\"";
 		RpslObject rpslAutNum = RpslObject.parse(autNumString);
 		BGPAutNum bgpAutNum = new BGPAutNum(rpslAutNum);
+		Multimap<BGPPeeringKey, BGPRoute> includedRouteMap = bgpAutNum.getIncludedRouteMap();
 		
 		//Build routes that should be present
 		BGPRoute routeOne 	= new BGPRoute(AddressPrefixRange.parse("2.2.1.0/24") , "8.8.8.8"),
 				 routeTwo 	= new BGPRoute(AddressPrefixRange.parse("2.2.1.0/24") , "9.9.9.9"),
 				 routeThree = new BGPRoute(AddressPrefixRange.parse("2.2.2.0/23^+") , "8.8.8.8"),
 				 routeFour 	= new BGPRoute(AddressPrefixRange.parse("2.2.2.0/23^+") , "8.8.8.8");
-		Pair<Long, String> peerOne 	= Pair.of(2l, "1.1.1.1"),
-							 peerTwo 	= Pair.of(2l, "1.1.1.2"),
-							 peerThree	= Pair.of(3l, "1.1.1.3"),
-							 peerFour   = Pair.of(4l, "0.0.0.0");
-		assertTrue(String.format(message, peerOne, routeOne), bgpAutNum.includedRouteMap.containsEntry(peerOne, routeOne));
-		assertTrue(String.format(message, peerOne, routeThree), bgpAutNum.includedRouteMap.containsEntry(peerOne, routeThree));
-		assertTrue(String.format(message, peerTwo, routeOne), bgpAutNum.includedRouteMap.containsEntry(peerTwo, routeOne));
-		assertTrue(String.format(message, peerTwo, routeThree), bgpAutNum.includedRouteMap.containsEntry(peerTwo, routeThree));
-		assertTrue(String.format(message, peerThree, routeTwo), bgpAutNum.includedRouteMap.containsEntry(peerThree, routeTwo));
-		assertTrue(String.format(message, peerThree, routeFour), bgpAutNum.includedRouteMap.containsEntry(peerThree, routeFour));
-		assertTrue(String.format(message, peerFour, routeOne), bgpAutNum.includedRouteMap.containsEntry(peerThree, routeOne));
-		assertTrue(String.format(message, peerFour, routeThree), bgpAutNum.includedRouteMap.containsEntry(peerThree, routeThree));
+		BGPPeeringKey peerOne 	= BGPPeeringKey.of(2, "1.1.1.1"),
+					  peerTwo 	= BGPPeeringKey.of(2, "1.1.1.2"),
+					  peerThree	= BGPPeeringKey.of(3, "1.1.1.3"),
+					  peerFour   = BGPPeeringKey.ofAS(4);
+		assertTrue(String.format(message, peerOne, routeOne), includedRouteMap.containsEntry(peerOne, routeOne));
+		assertTrue(String.format(message, peerOne, routeThree), includedRouteMap.containsEntry(peerOne, routeThree));
+		assertTrue(String.format(message, peerTwo, routeOne), includedRouteMap.containsEntry(peerTwo, routeOne));
+		assertTrue(String.format(message, peerTwo, routeThree), includedRouteMap.containsEntry(peerTwo, routeThree));
+		assertTrue(String.format(message, peerThree, routeTwo), includedRouteMap.containsEntry(peerThree, routeTwo));
+		assertTrue(String.format(message, peerThree, routeFour), includedRouteMap.containsEntry(peerThree, routeFour));
+		assertTrue(String.format(message, peerFour, routeOne), includedRouteMap.containsEntry(peerThree, routeOne));
+		assertTrue(String.format(message, peerFour, routeThree), includedRouteMap.containsEntry(peerThree, routeThree));
 	}
 	
-	@Test(expected=IllegalArgumentException.class)
-	public void checkConstructorTypeAssertion() {
-		(new BGPAutNum(RpslObject.parse("route: 1.0.0.0/8\norigin: AS1"))).toString();
+	@Test
+	public void generateRouteMapsInParallel() {
+		StringBuilder document = new StringBuilder("aut-num: AS1\nas-name: LARGE-AS\n");
+		for(int i = 0; i < 2 * BGPAutNum.PARALLEL_EXPORT_THRESHOLD; i++)
+			document.append(String.format("export: to AS%d 1.1.%d.1 at 8.8.8.8 announce AS%d 2.2.0.0/16\n", i % 5 + 2, i, i + 100));
+		document.append("\n");
+		for(int i = 0; i < 2 * BGPAutNum.PARALLEL_EXPORT_THRESHOLD; i++)
+			document.append(String.format("route: 2.2.%d.0/24\norigin: AS%d\n\n", i, i + 100));
+		
+		//Every export attribute is resolved as its own task, the document's announced routes are then reused
+		BGPRpslDocument doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(document.toString()));
+		BGPAutNum parallelAutNum = doc.getAutNumMap().get("AS1");
+		Multimap<BGPPeeringKey, BGPRoute> parallelRouteMap = parallelAutNum.getIncludedRouteMap();
+		
+		//Resolve the tables of another document one by one, without the pool
+		BGPAutNum sequentialAutNum = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(document.toString())).getAutNumMap().get("AS1");
+		List<Map.Entry<BGPPeeringKey, BGPRoute>> sequentialEntries = new ArrayList<>();
+		for(BGPPeeringKey peer : parallelRouteMap.keySet()) {
+			for(BGPRoute route : sequentialAutNum.getPeerRoutes(peer))
+				sequentialEntries.add(Maps.immutableEntry(peer, route));
+		}
+		
+		assertEquals(2 * BGPAutNum.PARALLEL_EXPORT_THRESHOLD, parallelRouteMap.keySet().size());
+		assertEquals("Parallel build should produce the same route map entries in the same order",
+				sequentialEntries, new ArrayList<>(parallelRouteMap.entries()));
+	}
+	
+	@Test
+	public void resolveTablesOnDemand() {
+		BGPAutNum bgpAutNum = new BGPAutNum(RpslObject.parse("aut-num: AS1\nas-name: LAZY-AS\n"
+				+ "export: to AS2 1.1.1.1 at 8.8.8.8 announce 2.2.1.0/24\n"
+				+ "export: to AS3 at 8.8.8.8 announce 2.2.2.0/24\n"));
+		BGPPeeringKey peerOne = BGPPeeringKey.of(2, "1.1.1.1"),
+					  peerTwo = BGPPeeringKey.ofAS(3);
+		
+		assertFalse("Tables should not be resolved before they are requested", bgpAutNum.isResolved(peerOne) || bgpAutNum.isResolved(peerTwo));
+		BGPRouteTable table = bgpAutNum.getTableForPeer(2, "1.1.1.1");
+		assertTrue("Requested table should be resolved", bgpAutNum.isResolved(peerOne));
+		assertFalse("Other tables should not be resolved", bgpAutNum.isResolved(peerTwo));
+		assertSame("Resolved tables should be reused", table.routeSet, bgpAutNum.getTableForPeer(2, "1.1.1.1").routeSet);
+		
+		assertTrue("Unknown peers should have empty tables", bgpAutNum.getTableForPeer(5, "1.1.1.5").routeSet.isEmpty());
+		assertFalse("Unknown peers should not be resolved", bgpAutNum.isResolved(BGPPeeringKey.of(5, "1.1.1.5")));
+	}
+	
+	@Test
+	public void resolveTablesOnceConcurrently() throws Exception {
+		StringBuilder autNumString = new StringBuilder("aut-num: AS1\nas-name: SHARED-AS\n");
+		for(int i = 0; i < 16; i++)
+			autNumString.append(String.format("export: to AS2 1.1.1.1 at 8.8.8.8 announce 2.2.%d.0/24\n", i));
+		final BGPAutNum bgpAutNum = new BGPAutNum(RpslObject.parse(autNumString.toString()));
+		
+		List<Callable<Set<BGPRoute>>> requests = new ArrayList<>();
+		for(int i = 0; i < 8; i++) {
+			requests.add(new Callable<Set<BGPRoute>>() {
+				@Override
+				public Set<BGPRoute> call() {
+					return bgpAutNum.getTableForPeer(2, "1.1.1.1").routeSet;
+				}
+			});
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			Set<BGPRoute> routes = bgpAutNum.getPeerRoutes(BGPPeeringKey.of(2, "1.1.1.1"));
+			for(Future<Set<BGPRoute>> result : executor.invokeAll(requests))
+				assertSame("Concurrent requests should share a single resolved table", routes, result.get());
+			assertEquals(16, routes.size());
+		} finally {
+			executor.shutdown();
+		}
 	}
 	
 	@Test(expected=IllegalArgumentException.class)
-	public void checkExportAttributeTypeAssertion() {
-		BGPAutNum.getExportPeers(new RpslAttribute(AttributeType.DEFAULT, "default: to AS1"));
+	public void checkConstructorTypeAssertion() {
+		(new BGPAutNum(RpslObject.parse("route: 1.0.0.0/8\norigin: AS1"))).toString();
 	}
 	
 	@Test
@@ -112,6 +159,7 @@ public class BGPAutNumTest {
 		
 		assertEquals("Should return AS of requested peer", 2, autNum.getASOfPeer("1.1.1.1"));
 		assertTrue("Should return null for non-existant peer", autNum.getASOfPeer("1.2.3.4") == -1);
+		assertTrue("Should return -1 for malformed peer address", autNum.getASOfPeer("1.2.3") == -1);
 	}
 	
 	@Test
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.emitters.rpsldocument;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import net.ripe.db.whois.common.io.RpslObjectStringReader;
+import net.ripe.db.whois.common.rpsl.AttributeType;
+import net.ripe.db.whois.common.rpsl.RpslAttribute;
+import net.ripe.db.whois.common.rpsl.attrs.AddressPrefixRange;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+
+public class BGPExportPolicyTest {
+
+	@Test
+	public void compilesOncePerText() {
+		BGPRpslDocument doc = BGPRpslDocument.builder().build();
+		BGPExportPolicy policy = doc.getExportPolicy(new RpslAttribute(AttributeType.EXPORT, "to AS2 1.1.1.1 at 2.2.2.2 announce 1.1.1.0/24"));
+		assertSame("Attributes of the same text should share a policy", policy,
+				doc.getExportPolicy(new RpslAttribute(AttributeType.EXPORT, "to AS2 1.1.1.1 at 2.2.2.2 announce 1.1.1.0/24")));
+		assertSame("Whitespace should be ignored when sharing policies", policy,
+				doc.getExportPolicy(new RpslAttribute(AttributeType.EXPORT, "to AS2   1.1.1.1\n\tat 2.2.2.2  announce 1.1.1.0/24")));
+		assertNotSame(policy, doc.getExportPolicy(new RpslAttribute(AttributeType.EXPORT, "to AS2 1.1.1.1 at 2.2.2.2 announce 1.1.2.0/24")));
+		assertNotSame("Policies should not be shared between documents", policy,
+				BGPRpslDocument.builder().build().getExportPolicy(new RpslAttribute(AttributeType.EXPORT, "to AS2 1.1.1.1 at 2.2.2.2 announce 1.1.1.0/24")));
+	}
+
+	@Test
+	public void keepsDeclarationOrder() {
+		BGPExportPolicy policy = BGPExportPolicy.compile(new RpslAttribute(AttributeType.EXPORT,
+				"to AS9 at 2.2.2.2 to AS3 3.3.3.3 1.1.1.1 at 2.2.2.2 to AS5 at 2.2.2.2 announce ANY"));
+		assertEquals("Peers should be in declaration order", Arrays.asList(Pair.of(Pair.of(9l, "0.0.0.0"), "2.2.2.2"),
+				Pair.of(Pair.of(3l, "3.3.3.3"), "2.2.2.2"), Pair.of(Pair.of(3l, "1.1.1.1"), "2.2.2.2"), Pair.of(Pair.of(5l, "0.0.0.0"), "2.2.2.2")),
+				new ArrayList<Pair<Pair<Long, String>, String>>(policy.getExportPeers()));
+	}
+
+	@Test
+	public void compilesExportPeers() {
+		String exportPeerString = 
+				"export: 	to AS1 at 3.3.3.3" +
+				"			to AS2 1.1.1.1 2.2.2.2 at 3.3.3.3\n" +
+				"			announce AS3",
+				trueMessage = "List should contain ((%s, %s), %s)",
+				falseMessage = "List should not contain ((%s, %s), %s)";
+		
+		Set<Pair<Pair<Long, String>, String>> peerList = BGPExportPolicy.compile(new RpslAttribute(AttributeType.EXPORT, exportPeerString)).getExportPeers();
+	
+		assertTrue(String.format(trueMessage, "1", "0.0.0.0", "3.3.3.3"), peerList.contains(Pair.of(Pair.of(1l, "0.0.0.0"), "3.3.3.3")));
+		assertTrue(String.format(trueMessage, "2", "1.1.1.1", "3.3.3.3"), peerList.contains(Pair.of(Pair.of(2l, "1.1.1.1"), "3.3.3.3")));
+		assertTrue(String.format(trueMessage, "2", "2.2.2.2", "3.3.3.3"), peerList.contains(Pair.of(Pair.of(2l, "2.2.2.2"), "3.3.3.3")));
+		assertFalse(String.format(falseMessage, "2", "0.0.0.0", "3.3.3.3"), peerList.contains(Pair.of(Pair.of(2l, "0.0.0.0"), "3.3.3.3")));
+	}
+
+	@Test
+	public void skipsMalformedPeerings() {
+		BGPExportPolicy policy = BGPExportPolicy.compile(new RpslAttribute(AttributeType.EXPORT, "to AS2 1.1.1.1"));
+		assertTrue("Peerings without a local router should be skipped", policy.getExportPeers().isEmpty());
+		policy = BGPExportPolicy.compile(new RpslAttribute(AttributeType.EXPORT, "export: to AS1\n to AS2 1.1.1.1\n announce AS3"));
+		assertTrue("Export Peers should not add peers with missing local routers", policy.getExportPeers().isEmpty());
+		policy = BGPExportPolicy.compile(new RpslAttribute(AttributeType.EXPORT, "to AS2 1.1.1.1 at 2.2.2.2"));
+		assertTrue("Peerings without actions should have none", policy.getActions(Pair.of(Pair.of(2l, "1.1.1.1"), "2.2.2.2")).isEmpty());
+		policy = BGPExportPolicy.compile(new RpslAttribute(AttributeType.EXPORT, "to AS2 at 2.2.2.2 action pref = 10; announce ANY"));
+		assertEquals("Actions of the peering should be compiled", Collections.singletonMap("pref", "10"),
+				policy.getActions(Pair.of(Pair.of(2l, "0.0.0.0"), "2.2.2.2")));
+	}
+
+	@Test
+	public void compilesPeersAndActions() {
+		BGPExportPolicy policy = BGPExportPolicy.compile(new RpslAttribute(AttributeType.EXPORT,
+				"to AS2 1.1.1.1 at 2.2.2.2 action pref = 10; to AS3 at 2.2.2.2 announce 1.1.1.0/24"));
+		Pair<Pair<Long, String>, String> peerOne = Pair.of(Pair.of(2l, "1.1.1.1"), "2.2.2.2"),
+										 peerTwo = Pair.of(Pair.of(3l, "0.0.0.0"), "2.2.2.2");
+
+		assertEquals(2, policy.getExportPeers().size());
+		assertTrue(policy.getExportPeers().contains(peerOne) && policy.getExportPeers().contains(peerTwo));
+		assertEquals(Collections.singletonMap("pref", "10"), policy.getActions(peerOne));
+		assertTrue("Peers without actions should have no actions", policy.getActions(peerTwo).isEmpty());
+		assertEquals("1.1.1.0/24", policy.getAnnounceFilter().toString());
+	}
+
+	@Test
+	public void missingAnnounceClause() {
+		BGPExportPolicy policy = BGPExportPolicy.compile(new RpslAttribute(AttributeType.EXPORT, "to AS2 1.1.1.1 at 2.2.2.2"));
+		assertNull(policy.getAnnounceFilter());
+		assertTrue(policy.resolveAnnouncedRoutes(null).isEmpty());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void checksAttributeType() {
+		BGPExportPolicy.compile(new RpslAttribute(AttributeType.DEFAULT, "to AS1"));
+	}
+
+	@Test
+	public void resolvesLargeAutNums() {
+		BGPRpslDocument doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(
+				"aut-num: AS4200000000\nas-name: LARGE-AS\nexport: to AS2 2.2.2.2 at 1.1.1.1 announce AS4200000000\n\n"
+				+ "aut-num: AS1\nas-name: SMALL-AS\nexport: to AS2 2.2.2.2 at 1.1.1.1 announce AS4200000000\n\n"
+				+ "route: 1.1.1.0/24\norigin: AS4200000000\n\n"));
+		BGPRoute route = new BGPRoute(AddressPrefixRange.parse("1.1.1.0/24"), "1.1.1.1");
+
+		assertTrue("32 bit ASNs should be resolved", doc.getAutNumMap().get("AS4200000000").getTableForPeer(2, "2.2.2.2").routeSet.contains(route));
+		assertEquals("Aut-nums of the same export policy should export the same routes",
+				doc.getAutNumMap().get("AS4200000000").getTableForPeer(2, "2.2.2.2").routeSet, doc.getAutNumMap().get("AS1").getTableForPeer(2, "2.2.2.2").routeSet);
+	}
+}
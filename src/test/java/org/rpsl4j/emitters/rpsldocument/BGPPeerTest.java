@@ -61,18 +61,19 @@ public class BGPPeerTest {
 				bgpPeerTwo = new BGPPeer(2, "2.2.2.3", inetRtr);
 
 		//Test tables added in constructor
-		assertTrue("Peer should contain own routes", bgpPeerOne.routes.contains(peerRoute));
-		assertTrue("Peers in AS should contain AS common routes", bgpPeerOne.routes.contains(asRoute) && bgpPeerTwo.routes.contains(asRoute));
-		assertFalse("Peers should not contain routes of other peers", bgpPeerTwo.routes.contains(peerRoute));
+		assertTrue("Peer should contain own routes", bgpPeerOne.getRoutes().contains(peerRoute));
+		assertTrue("Peers in AS should contain AS common routes", bgpPeerOne.getRoutes().contains(asRoute) && bgpPeerTwo.getRoutes().contains(asRoute));
+		assertFalse("Peers should not contain routes of other peers", bgpPeerTwo.getRoutes().contains(peerRoute));
 
 		//Test manunally adding new table
 		Set<BGPRoute> routeSet = new HashSet<BGPRoute>();
 		routeSet.add(extraRoute);
 		BGPRouteTable table = new BGPRouteTable(2, "2.2.2.2", bgpPeerOne.speaker.speakerName, routeSet);
 		assertTrue("Adding table that speaker doesn't have should suceed", bgpPeerOne.addRouteTable(table));
-		assertTrue("Adding new routing table with unique route should increase size of peer routes", bgpPeerOne.routes.size() == 3);
-		assertTrue("Adding table with new route should add route to peer", bgpPeerOne.routes.contains(extraRoute));
+		assertTrue("Adding new routing table with unique route should increase size of peer routes", bgpPeerOne.getRoutes().size() == 3);
+		assertTrue("Adding table with new route should add route to peer", bgpPeerOne.getRoutes().contains(extraRoute));
 		assertFalse("Adding repeated table should have no effect", bgpPeerOne.addRouteTable(table));
+		assertSame("Peers without their own routes should share the AS table", autNum.getTableForAS(2).routeSet, bgpPeerTwo.getRoutes());
 	}
 
 	@Test
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.emitters.rpsldocument;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class BGPPeeringKeyTest {
+
+	@Test
+	public void equality() {
+		assertEquals("Keys of the same peer should be equal", BGPPeeringKey.of(2, "1.1.1.1"), BGPPeeringKey.of(2, "1.1.1.1"));
+		assertEquals(BGPPeeringKey.of(2, "1.1.1.1").hashCode(), BGPPeeringKey.of(2, "1.1.1.1").hashCode());
+		assertEquals("Addresses should be compared in binary", BGPPeeringKey.of(2, "2001:db8:0:0::1"), BGPPeeringKey.of(2, "2001:DB8::1"));
+		assertFalse("Keys of different ASes should not be equal", BGPPeeringKey.of(2, "1.1.1.1").equals(BGPPeeringKey.of(3, "1.1.1.1")));
+		assertFalse("Keys of different addresses should not be equal", BGPPeeringKey.of(2, "1.1.1.1").equals(BGPPeeringKey.of(2, "1.1.1.2")));
+		assertEquals("AS keys should have the any address", BGPPeeringKey.of(2, BGPRoute.ANY_ADDRESS), BGPPeeringKey.ofAS(2));
+	}
+
+	@Test
+	public void formatsAddress() {
+		assertEquals("1.1.1.1", BGPPeeringKey.of(2, "1.1.1.1").getAddress());
+		assertEquals("2001:db8::1", BGPPeeringKey.of(2, "2001:DB8:0::1").getAddress());
+		assertEquals("AS2 0.0.0.0", BGPPeeringKey.ofAS(2).toString());
+		assertTrue(BGPPeeringKey.ofAS(2).isAnyAddress());
+		assertFalse(BGPPeeringKey.of(2, "::").isAnyAddress());
+	}
+
+	@Test
+	public void addressKeys() {
+		assertEquals("Address keys should ignore the AS", BGPPeeringKey.of(2, "1.1.1.1").getAddressKey(), BGPPeeringKey.of(3, "1.1.1.1").getAddressKey());
+		assertEquals(BGPPeeringKey.ofAddress("1.1.1.1"), BGPPeeringKey.of(2, "1.1.1.1").getAddressKey());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void rejectsIllegalAddress() {
+		BGPPeeringKey.of(2, "1.1.1.1.1.1.1");
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void rejectsHostnames() {
+		BGPPeeringKey.of(2, "localhost");
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void rejectsIllegalAutNum() {
+		BGPPeeringKey.of(-1, "1.1.1.1");
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.emitters.rpsldocument;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.ripe.db.whois.common.rpsl.attrs.AddressPrefixRange;
+
+import org.junit.Test;
+
+public class BGPRouteAggregatorTest {
+
+	private static List<BGPRoute> routes(String nextHop, String... prefixes) {
+		List<BGPRoute> routes = new ArrayList<BGPRoute>();
+		for(String prefix : prefixes)
+			routes.add(new BGPRoute(AddressPrefixRange.parse(prefix), nextHop));
+		return routes;
+	}
+
+	private static Set<BGPRoute> routeSet(String nextHop, String... prefixes) {
+		return new HashSet<BGPRoute>(routes(nextHop, prefixes));
+	}
+
+	@Test
+	public void mergesSiblings() {
+		assertEquals("Sibling prefixes should merge into their network", routeSet("1.1.1.1", "10.0.0.0/23"),
+				BGPRouteAggregator.aggregate(routes("1.1.1.1", "10.0.0.0/24", "10.0.1.0/24")));
+		assertEquals("Merged networks should merge with their own siblings", routeSet("1.1.1.1", "10.0.0.0/22"),
+				BGPRouteAggregator.aggregate(routes("1.1.1.1", "10.0.2.0/23", "10.0.0.0/24", "10.0.1.0/24")));
+		assertEquals("Adjacent prefixes which aren't siblings should not merge", routeSet("1.1.1.1", "10.0.1.0/24", "10.0.2.0/24"),
+				BGPRouteAggregator.aggregate(routes("1.1.1.1", "10.0.1.0/24", "10.0.2.0/24")));
+	}
+
+	@Test
+	public void dropsCoveredRoutes() {
+		assertEquals(routeSet("1.1.1.1", "10.0.0.0/16", "10.2.0.0/24"),
+				BGPRouteAggregator.aggregate(routes("1.1.1.1", "10.0.5.0/24", "10.0.0.0/16", "10.0.0.0/20", "10.2.0.0/24", "10.2.0.0/24")));
+	}
+
+	@Test
+	public void keepsDifferentAttributesApart() {
+		List<BGPRoute> routes = routes("1.1.1.1", "10.0.0.0/24");
+		routes.addAll(routes("1.1.1.2", "10.0.1.0/24", "10.0.0.0/16"));
+		routes.add(new BGPRoute(AddressPrefixRange.parse("10.0.0.0/24"), "1.1.1.2").withActions(Collections.singletonMap("pref", "10")));
+
+		Set<BGPRoute> aggregated = BGPRouteAggregator.aggregate(routes);
+		assertEquals(3, aggregated.size());
+		assertTrue("Routes of different next hops should not be covered by each other", aggregated.containsAll(routes("1.1.1.1", "10.0.0.0/24")));
+		assertTrue("Routes of different actions should not be covered by each other", aggregated.contains(routes.get(3)));
+	}
+
+	@Test
+	public void keepsRangedRoutes() {
+		Set<BGPRoute> aggregated = BGPRouteAggregator.aggregate(routes("1.1.1.1", "10.0.0.0/24^+", "10.0.1.0/24", "10.0.0.0/16"));
+		assertEquals(routeSet("1.1.1.1", "10.0.0.0/24^+", "10.0.0.0/16"), aggregated);
+	}
+
+	@Test
+	public void aggregatesIpv6() {
+		assertEquals(routeSet("1.1.1.1", "2001:db8::/32"),
+				BGPRouteAggregator.aggregate(routes("1.1.1.1", "2001:db8::/33", "2001:db8:8000::/33", "2001:db8:1::/48")));
+		assertEquals("IPv4 and IPv6 routes should not merge", 2, BGPRouteAggregator.aggregate(routes("1.1.1.1", "0.0.0.0/1", "::/1")).size());
+	}
+
+	@Test
+	public void emptyInput() {
+		assertTrue(BGPRouteAggregator.aggregate(Arrays.<BGPRoute>asList()).isEmpty());
+	}
+}
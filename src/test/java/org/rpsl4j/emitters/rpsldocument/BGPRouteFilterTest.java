@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.emitters.rpsldocument;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import net.ripe.db.whois.common.io.RpslObjectStringReader;
+import net.ripe.db.whois.common.rpsl.attrs.AddressPrefixRange;
+
+import org.junit.Test;
+
+public class BGPRouteFilterTest {
+	private final String DOCUMENT = "route: 1.1.1.0/24\norigin: AS1\nmember-of: rs-set\n\n"
+			+ "route: 1.1.2.0/24\norigin: AS1\n\n"
+			+ "route: 2.2.2.0/24\norigin: AS2\nmember-of: rs-set\n\n"
+			+ "route-set: rs-set\nmbrs-by-ref: ANY\n\n"
+			+ "as-set: as-both\nmembers: AS1, AS2\n\n";
+
+	private static Set<String> prefixes(Set<BGPRoute> routes) {
+		Set<String> prefixes = new HashSet<String>();
+		for(BGPRoute route : routes)
+			prefixes.add(route.getRouteNetworkString() + "/" + route.getRoutePrefix());
+		return prefixes;
+	}
+
+	private static Set<String> resolve(String filter, BGPRpslDocument doc) {
+		return prefixes(BGPRouteFilter.parse(Arrays.asList(filter.split(" "))).resolve(doc));
+	}
+
+	@Test
+	public void operatorPrecedence() {
+		assertEquals("NOT should bind tighter than AND, which binds tighter than OR", "(AS1 OR (AS2 AND NOT AS3))",
+				BGPRouteFilter.parse(Arrays.asList("AS1", "OR", "AS2", "AND", "NOT", "AS3")).toString());
+		assertEquals("Parentheses should group expressions", "((AS1 OR AS2) AND NOT AS3)",
+				BGPRouteFilter.parse(Arrays.asList("(AS1", "OR", "AS2)", "AND", "NOT", "AS3")).toString());
+		assertEquals("Terms without operators should be combined with OR", "(1.1.1.0/24 OR 1.1.2.0/23^+)",
+				BGPRouteFilter.parse(Arrays.asList("1.1.1.0/24", "1.1.2.0/23^+")).toString());
+		assertEquals("Prefix sets should keep their range operator", "{1.1.1.0/24, 1.1.2.0/24}^24-25",
+				BGPRouteFilter.parse(Arrays.asList("{", "1.1.1.0/24,", "1.1.2.0/24", "}^24-25")).toString());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void rejectsUnbalancedParentheses() {
+		BGPRouteFilter.parse(Arrays.asList("(AS1", "OR", "AS2"));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void rejectsMissingOperand() {
+		BGPRouteFilter.parse(Arrays.asList("AS1", "AND"));
+	}
+
+	@Test
+	public void prefixFilters() {
+		assertEquals(new HashSet<String>(Arrays.asList("1.1.1.0/24", "1.1.2.0/24")), resolve("1.1.1.0/24 OR 1.1.2.0/24", null));
+		assertTrue("Disjoint prefixes should have an empty intersection", resolve("1.1.1.0/24 AND 1.1.2.0/24", null).isEmpty());
+		assertEquals(new HashSet<String>(Arrays.asList("1.1.1.0/24")), resolve("{1.1.1.0/24, 1.1.2.0/24} AND NOT 1.1.2.0/24", null));
+		assertTrue("Without a document NOT should match nothing", resolve("NOT 1.1.2.0/24", null).isEmpty());
+	}
+
+	@Test
+	public void documentFilters() {
+		BGPRpslDocument doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(DOCUMENT));
+
+		assertEquals(new HashSet<String>(Arrays.asList("1.1.1.0/24")), resolve("AS1 AND rs-set", doc));
+		assertEquals(new HashSet<String>(Arrays.asList("1.1.2.0/24", "2.2.2.0/24")), resolve("as-both AND NOT ( AS1 AND rs-set )", doc));
+		assertEquals("NOT should match route objects not matched by its operand", new HashSet<String>(Arrays.asList("2.2.2.0/24")),
+				resolve("NOT AS1", doc));
+		assertEquals("ANY should match all route objects", 3, resolve("ANY", doc).size());
+		assertEquals("AND should match prefixes regardless of the term they were found by", new HashSet<String>(Arrays.asList("2.2.2.0/24")),
+				resolve("AS2 AND 2.2.2.0/24", doc));
+	}
+
+	@Test
+	public void rangesContainRoutes() {
+		BGPRpslDocument doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(DOCUMENT));
+
+		assertEquals("AND should match the routes a range contains", new HashSet<String>(Arrays.asList("1.1.1.0/24", "1.1.2.0/24")),
+				resolve("AS1 AND {1.1.0.0/16^+}", doc));
+		assertTrue("Ranges should only contain routes of their lengths", resolve("AS1 AND {1.1.0.0/16^17-23}", doc).isEmpty());
+		assertTrue("NOT should remove the routes a range contains", resolve("NOT {0.0.0.0/0^+}", doc).isEmpty());
+		assertEquals(new HashSet<String>(Arrays.asList("2.2.2.0/24")), resolve("rs-set AND NOT {1.1.0.0/16^+}", doc));
+		assertEquals("Range operators should make terms ranges of their more specifics", new HashSet<String>(Arrays.asList("1.1.1.0/24")),
+				resolve("rs-set AND 1.1.0.0/16^+", doc));
+		assertEquals("Ranges overlapping a subtracted term should match the routes they contain", new HashSet<String>(Arrays.asList("1.1.2.0/24")),
+				resolve("{1.1.0.0/16^+} AND NOT rs-set", doc));
+	}
+
+	@Test
+	public void rangeOperators() {
+		Set<BGPRoute> routes = BGPRouteFilter.parse(Arrays.asList("1.1.0.0/16^+", "AND", "1.1.0.0/16^17-32")).resolve(null);
+		assertEquals("Ranges should intersect to their common prefix lengths",
+				Collections.singleton(new BGPRoute(AddressPrefixRange.parse("1.1.0.0/16^17-32"), null)), routes);
+		routes = BGPRouteFilter.parse(Arrays.asList("1.0.0.0/8^16", "AND", "1.1.0.0/16^+")).resolve(null);
+		assertEquals("Ranges should intersect to the more specific prefix",
+				Collections.singleton(new BGPRoute(AddressPrefixRange.parse("1.1.0.0/16"), null)), routes);
+		assertTrue("Ranges of different lengths should not intersect", resolve("1.1.0.0/16^24 AND 1.1.0.0/16^25-32", null).isEmpty());
+
+		routes = BGPRouteFilter.parse(Arrays.asList("{1.1.0.0/16}^17-24")).resolve(null);
+		assertEquals(new BGPRoute(AddressPrefixRange.parse("1.1.0.0/16^17-24"), null), routes.iterator().next());
+	}
+}
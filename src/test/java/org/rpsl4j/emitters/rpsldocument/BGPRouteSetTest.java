@@ -11,6 +11,7 @@ import java.util.Set;
 
 import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.io.RpslObjectStringReader;
+import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.common.rpsl.attrs.AddressPrefixRange;
 
 import org.junit.Test;
@@ -31,16 +32,16 @@ public class BGPRouteSetTest {
 				routeMaintainedMember + routeMember + routeOrphan + routeSetByRef));
 		
 		assertEquals("only routes with matching member-of and mnt-by should be added to set with restrictive mbrs-by-ref", 1,
-				doc.routeSets.get("rs-set").resolve(doc).size());
+				doc.getRouteSet("rs-set").resolve(doc).size());
 
 		//double check it was the right one (I think I get the convoluted call award :L) 
-		assertTrue(((BGPRpslRoute)doc.routeSets.get("rs-set").resolve(doc).iterator().next()).getMaintainer().equals(CIString.ciString("MNTR-ONE")));
+		assertTrue(((BGPRpslRoute)doc.getRouteSet("rs-set").resolve(doc).iterator().next()).getMaintainer().equals(CIString.ciString("MNTR-ONE")));
 		
 		//Check that all routes with member-of are added to unrestricted set
 		doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(
 				routeMaintainedMember + routeMember + routeOrphan + routeSetAny));
 		assertTrue("all routes with matching member-of should be added to set with mbrs-by-ref: ANY",
-				doc.routeSets.get("rs-set").resolve(doc).size() == 2);
+				doc.getRouteSet("rs-set").resolve(doc).size() == 2);
 		
 		
 		
@@ -48,7 +49,7 @@ public class BGPRouteSetTest {
 		doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(
 				routeMaintainedMember + routeMember + routeOrphan + routeSetEmpty));
 		assertTrue("route set with no mbrs-by-ref should not load any member-of routes",
-				doc.routeSets.get("rs-set").resolve(doc).size() == 0);
+				doc.getRouteSet("rs-set").resolve(doc).size() == 0);
 		
 	}
 	
@@ -119,4 +120,39 @@ public class BGPRouteSetTest {
 		assertTrue(flattenedRoutes.size()==2);
 	}
 
+	
+	@Test
+	public void rangeOperatorMembers() {
+		BGPRpslDocument doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(
+				"route-set: rs-ranged\nmembers: 1.1.0.0/16^+, 1.2.0.0/16^24-28, rs-plain^-\n\n"
+				+ "route-set: rs-plain\nmembers: 1.3.0.0/16, 1.4.0.0/32\n\n"));
+		
+		Set<BGPRoute> routes = doc.getRouteSet("rs-ranged").resolve(doc);
+		assertEquals("Ranged members should resolve to one route each, routes with empty ranges are dropped", 3, routes.size());
+		for(BGPRoute route : routes)
+			assertTrue("Resolved members should keep their range", route.hasRangeOperator());
+		
+		assertTrue(routes.contains(new BGPRoute(AddressPrefixRange.parse("1.1.0.0/16"), null).withRangeOperator("^16-32")));
+		assertTrue(routes.contains(new BGPRoute(AddressPrefixRange.parse("1.2.0.0/16"), null).withRangeOperator("^24-28")));
+		assertTrue("Operator should be applied to routes of member set",
+				routes.contains(new BGPRoute(AddressPrefixRange.parse("1.3.0.0/16"), null).withRangeOperator("^17-32")));
+		assertEquals("Member set should be unchanged", 2, doc.getRouteSet("rs-plain").resolve(doc).size());
+	}
+
+	@Test
+	public void classifiesMembers() {
+		BGPRouteSet routeSet = new BGPRouteSet(RpslObject.parse("route-set: rs-members\nmembers: 1.1.1.0/24, 1.2.0.0/16^+, rs-other, AS1, 1.1.1.1/33\n"));
+		
+		assertEquals("Prefix members should be parsed once, invalid prefixes are skipped", 2, routeSet.memberRoutes.size());
+		assertTrue(routeSet.memberRoutes.contains(new BGPRoute(AddressPrefixRange.parse("1.2.0.0/16"), null).withRangeOperator("^+")));
+		assertEquals("Set members should not be parsed as prefixes", 1, routeSet.memberSetIds.length);
+	}
+	
+	@Test
+	public void namesMembersFromSymbols() {
+		BGPRouteSet routeSet = new BGPRouteSet(RpslObject.parse("route-set: RS-NAMED\nmembers: 1.1.1.0/24, RS-OTHER, rs-ranged^+\nmbrs-by-ref: MAINT-ONE\n"));
+		
+		assertEquals("Set name should be resolved through the symbol table", "rs-named", routeSet.getName());
+		assertEquals("Members should be listed by name", "rs-named:\n    members: [1.1.1.0/24, rs-other, rs-ranged^+]\n    mbrsByRef: [maint-one]", routeSet.toString());
+	}
 }
@@ -7,8 +7,11 @@ package org.rpsl4j.emitters.rpsldocument;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
 
 import net.ripe.db.whois.common.rpsl.RpslObject;
 import net.ripe.db.whois.common.rpsl.attrs.AddressPrefixRange;
@@ -68,6 +71,72 @@ public class BGPRouteTableTest {
 		assertTrue("Should return empty table for nonexistant peer", emptyPeerTable.routeSet.size() == 0);
 	}
 	
+	@Test
+	public void sharesEqualRouteSets() {
+		BGPRoute route = new BGPRoute(AddressPrefixRange.parse("1.1.1.0/24"), "1.1.1.1");
+		BGPRpslDocument doc = BGPRpslDocument.builder().build(), otherDoc = BGPRpslDocument.builder().build();
+		Collection<BGPRoute> routes = Collections.singleton(route),
+							 equalRoutes = Arrays.asList(new BGPRoute(AddressPrefixRange.parse("1.1.1.0/24"), "1.1.1.1"));
+		
+		assertSame("Tables of equal routes in a document should share a route set", BGPRouteTable.shareRoutes(routes, doc), BGPRouteTable.shareRoutes(equalRoutes, doc));
+		assertNotSame("Tables of different routes should not share a route set", BGPRouteTable.shareRoutes(routes, doc), BGPRouteTable.shareRoutes(Collections.<BGPRoute>emptySet(), doc));
+		assertNotSame("Tables of different documents should not share a route set", BGPRouteTable.shareRoutes(routes, doc), BGPRouteTable.shareRoutes(equalRoutes, otherDoc));
+		assertSame("Repeated lookups of a table should share a route set", autNum.getTableForAS(2).routeSet, autNum.getTableForAS(2).routeSet);
+	}
+	
+	@Test
+	public void keepsActionsOfEqualRoutes() {
+		BGPRoute route = new BGPRoute(AddressPrefixRange.parse("1.1.1.0/24"), "1.1.1.1");
+		BGPRouteTable tableOne = new BGPRouteTable(2, "3.3.3.3", "TEST-AS", Collections.singleton(route.withActions(Collections.singletonMap("pref", "100")))),
+					  tableTwo = new BGPRouteTable(3, "4.4.4.4", "TEST-AS", Collections.singleton(route.withActions(Collections.singletonMap("pref", "200"))));
+		
+		assertNotSame("Routes with different actions should not share a route set", tableOne.routeSet, tableTwo.routeSet);
+		assertEquals(Collections.singletonMap("pref", "100"), tableOne.getRoutes().iterator().next().getActions());
+		assertEquals(Collections.singletonMap("pref", "200"), tableTwo.getRoutes().iterator().next().getActions());
+	}
+	
+	@Test
+	public void keepsActionsOfPeers() {
+		BGPAutNum autNum = new BGPAutNum(RpslObject.parse("aut-num: AS1\n"
+				+ "as-name: TEST-AS\n"
+				+ "export: to AS2 at 1.1.1.1 action pref = 100; announce 2.2.2.0/24\n"
+				+ "export: to AS3 at 1.1.1.1 action pref = 200; announce 2.2.2.0/24\n"));
+		
+		assertEquals("Peers should keep the actions exported to them", Collections.singletonMap("pref", "100"),
+				autNum.getTableForAS(2).getRoutes().iterator().next().getActions());
+		assertEquals(Collections.singletonMap("pref", "200"), autNum.getTableForAS(3).getRoutes().iterator().next().getActions());
+	}
+	
+	@Test
+	public void equality() {
+		BGPRoute route = new BGPRoute(AddressPrefixRange.parse("1.1.1.0/24"), "1.1.1.1");
+		BGPRouteTable table = new BGPRouteTable(1, "3.3.3.3", "TEST-AS", Collections.singleton(route)),
+					  tableMatch = new BGPRouteTable(1, "3.3.3.3", "TEST-AS", Arrays.asList(new BGPRoute(AddressPrefixRange.parse("1.1.1.0/24"), "1.1.1.1")));
+		
+		assertEquals("Tables of the same peer, speaker and routes should be equal", table, tableMatch);
+		assertEquals(table.hashCode(), tableMatch.hashCode());
+		assertNotEquals(table, new BGPRouteTable(1, "3.3.3.3", "TEST-AS", Collections.<BGPRoute>emptySet()));
+		assertNotEquals(table, new BGPRouteTable(1, "3.3.3.4", "TEST-AS", Collections.singleton(route)));
+		assertNotEquals(table, new BGPRouteTable(1, "3.3.3.3", "OTHER-AS", Collections.singleton(route)));
+		assertEquals("Repeated lookups of a table should be equal", autNum.getTableForAS(2), autNum.getTableForAS(2));
+	}
+	
+	@Test
+	public void tablesOfDifferentActionsDiffer() {
+		BGPRoute route = new BGPRoute(AddressPrefixRange.parse("1.1.1.0/24"), "1.1.1.1");
+		BGPRouteTable table = new BGPRouteTable(1, "3.3.3.3", "TEST-AS", Collections.singleton(route.withActions(Collections.singletonMap("pref", "100")))),
+					  otherActions = new BGPRouteTable(1, "3.3.3.3", "TEST-AS", Collections.singleton(route.withActions(Collections.singletonMap("pref", "200"))));
+		Set<BGPRouteTable> tables = new HashSet<BGPRouteTable>(Arrays.asList(table, otherActions));
+		
+		assertNotEquals("Tables exporting different actions should not be equal", table, otherActions);
+		assertEquals("Tables exporting different actions should not collapse", 2, tables.size());
+	}
+	
+	@Test(expected=UnsupportedOperationException.class)
+	public void routeSetsAreImmutable() {
+		autNum.getTableForAS(2).getRoutes().clear();
+	}
+	
 	@Test
 	public void toStringTest() {
 		BGPRouteTable peerTable = autNum.getTableForPeer(2, "1.2.3.4"),
@@ -7,6 +7,13 @@ package org.rpsl4j.emitters.rpsldocument;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import net.ripe.db.whois.common.rpsl.AttributeType;
@@ -51,14 +58,13 @@ public class BGPRouteTest {
 	}
 	
 	@Test
-	public void failOnFilterExpression() {
+	public void resolveFilterExpression() {
 		String  andNotFilter = "export to AS1 announce ASSET AND NOT 1.1.2.0/24",
 				orFilter 	 = "export to AS1 announce ASSET OR 1.1.2.0/24";
-		assertTrue("Filter expressions are not supported, they should return no routes",
+		assertTrue("Unresolvable terms should match no routes",
 					BGPRoute.resolveRoutes(new RpslAttribute(AttributeType.EXPORT, andNotFilter), "1.1.1.1").size() == 0);
-		assertTrue("Filter expressions are not supported, they should return no routes",
-				BGPRoute.resolveRoutes(new RpslAttribute(AttributeType.EXPORT, orFilter), "1.1.1.1").size() == 0);
-		
+		assertEquals("OR should union the routes of its terms", Collections.singleton(new BGPRoute(AddressPrefixRange.parse("1.1.2.0/24"), "1.1.1.1")),
+				BGPRoute.resolveRoutes(new RpslAttribute(AttributeType.EXPORT, orFilter), "1.1.1.1"));
 	}
 	
 	@Test
@@ -77,6 +83,20 @@ public class BGPRouteTest {
 		assertNotEquals(route, routeDifferentNextHop);
 	}
 	
+	@Test
+	public void hashesFields() {
+		Map<String, String> actions = new HashMap<String, String>();
+		actions.put("pref", "10");
+		BGPRoute route = new BGPRoute(AddressPrefixRange.parse("1.1.1.0/24"), "1.1.1.1");
+		
+		assertEquals("Equal routes should hash the same", route.hashCode(), new BGPRoute(AddressPrefixRange.parse("1.1.1.1/24"), "1.1.1.1").hashCode());
+		assertEquals("Actions aren't compared, so shouldn't be hashed", route.hashCode(), route.withActions(actions).hashCode());
+		assertEquals("Routes without a next hop should hash", new BGPRoute(routeOneRange, null).hashCode(), new BGPRoute(routeOneRange, null).hashCode());
+		assertNotEquals(route.hashCode(), route.withNextHop("1.1.1.2").hashCode());
+		assertNotEquals(route.hashCode(), new BGPRoute(AddressPrefixRange.parse("1.1.1.0/24^+"), "1.1.1.1").hashCode());
+		assertEquals("Exact ranges should hash as routes without a range", route.hashCode(), route.withRangeOperator("^+").withRangeOperator("^24").hashCode());
+	}
+	
 	@Test
 	public void testClone() {
 		BGPRoute route = new BGPRoute(AddressPrefixRange.parse("1.1.1.0/24"), "1.1.1.1");
@@ -84,4 +104,115 @@ public class BGPRouteTest {
 		assertTrue("Clone should return new object", route != route.clone());
 		//TODO test route-object/action constructors
 	}
+	
+	@Test
+	public void withNextHop() {
+		BGPRoute route = new BGPRoute(AddressPrefixRange.parse("1.1.1.0/24"), null),
+				 routeWithNextHop = route.withNextHop("1.1.1.1");
+		
+		assertEquals("Route should have new next hop", "1.1.1.1", routeWithNextHop.getNextHopString());
+		assertNull("Original route should be unchanged", route.getNextHopString());
+		assertEquals("Routes should share prefix", route.getRouteNetworkString(), routeWithNextHop.getRouteNetworkString());
+		assertEquals(route.getRoutePrefix(), routeWithNextHop.getRoutePrefix());
+		assertSame("Unchanged next hop should return the same route", routeWithNextHop, routeWithNextHop.withNextHop("1.1.1.1"));
+	}
+	
+	@Test
+	public void withActions() {
+		Map<String, String> actions = new HashMap<String, String>();
+		actions.put("pref", "10");
+		BGPRoute route = new BGPRoute(AddressPrefixRange.parse("1.1.1.0/24"), "1.1.1.1"),
+				 routeWithActions = route.withActions(actions);
+		actions.put("med", "5");
+		
+		assertEquals("Route should copy provided actions", Collections.singletonMap("pref", "10"), routeWithActions.getActions());
+		assertTrue("Original route should be unchanged", route.getActions().isEmpty());
+		assertEquals("Actions should be kept by next hop changes", routeWithActions.getActions(), routeWithActions.withNextHop("2.2.2.2").getActions());
+	}
+	
+	@Test(expected=UnsupportedOperationException.class)
+	public void actionsAreReadOnly() {
+		Map<String, String> actions = new HashMap<String, String>();
+		actions.put("pref", "10");
+		new BGPRoute(AddressPrefixRange.parse("1.1.1.0/24"), "1.1.1.1").withActions(actions).getActions().clear();
+	}
+	
+	@Test
+	public void sharesEqualActions() {
+		Map<String, String> actions = new HashMap<String, String>();
+		actions.put("pref", "10");
+		BGPRoute routeOne = new BGPRoute(AddressPrefixRange.parse("1.1.1.0/24"), "1.1.1.1").withActions(actions),
+				 routeTwo = new BGPRoute(AddressPrefixRange.parse("1.1.2.0/24"), "1.1.1.1").withActions(new HashMap<String, String>(actions));
+		
+		assertSame("Equal actions should share a map", routeOne.getActions(), routeTwo.getActions());
+	}
+	
+	@Test
+	public void packedPrefixStrings() {
+		BGPRoute routeV4 = new BGPRoute(AddressPrefixRange.parse("10.20.30.0/24"), null),
+				 routeV6 = new BGPRoute(AddressPrefixRange.parse("2001:db8::/32"), null);
+		
+		assertEquals("10.20.30.0", routeV4.getRouteNetworkString());
+		assertEquals(24, routeV4.getRoutePrefix());
+		assertEquals("2001:db8:0:0:0:0:0:0", routeV6.getRouteNetworkString());
+		assertEquals(32, routeV6.getRoutePrefix());
+		assertEquals("Prefix range should be rebuilt from packed prefix", routeV6, new BGPRoute(routeV6.getPrefixRange(), null));
+		assertNotEquals(new BGPRoute(AddressPrefixRange.parse("10.20.30.0/24"), null), new BGPRoute(AddressPrefixRange.parse("10.20.30.0/25"), null));
+	}
+	
+	@Test
+	public void rangeOperators() {
+		BGPRoute route = new BGPRoute(AddressPrefixRange.parse("30.0.0.0/8"), null);
+		
+		assertFalse(route.hasRangeOperator());
+		assertEquals(8, route.getMinLength());
+		assertEquals(8, route.getMaxLength());
+		
+		BGPRoute inclusive = route.withRangeOperator("^+"), exclusive = route.withRangeOperator("^-"), ranged = route.withRangeOperator("^24-28");
+		assertEquals(8, inclusive.getMinLength());
+		assertEquals(32, inclusive.getMaxLength());
+		assertEquals(9, exclusive.getMinLength());
+		assertEquals(24, route.withRangeOperator("^24").getMaxLength());
+		assertNotEquals("Routes with different ranges should not be equal", inclusive, exclusive);
+		assertNotEquals(route, inclusive);
+		
+		BGPRoute intersected = ranged.withRangeOperator("^27-30");
+		assertEquals("Applying an operator should intersect the ranges", 27, intersected.getMinLength());
+		assertEquals(28, intersected.getMaxLength());
+		assertNull("Disjoint ranges should give an empty range", ranged.withRangeOperator("^30"));
+		assertSame("Unchanged range should return the same route", ranged, ranged.withRangeOperator("^+"));
+		assertEquals("Ranges of the full prefix length should be a plain route", route, inclusive.withRangeOperator("^8"));
+	}
+	
+	@Test
+	public void normalisesPrefixLengthRange() {
+		BGPRoute route = new BGPRoute(AddressPrefixRange.parse("30.0.0.0/8"), null),
+				parsed = new BGPRoute(AddressPrefixRange.parse("30.0.0.0/8^8"), null);
+		
+		assertFalse("A range of the prefix length should be parsed as no range", parsed.hasRangeOperator());
+		assertEquals("Parsed and plain routes should be equal", route, parsed);
+		assertEquals(route.hashCode(), parsed.hashCode());
+		assertSame("Applying the same range should give the same route", parsed, parsed.withRangeOperator("^8"));
+		assertEquals(parsed, route.withRangeOperator("^+").withRangeOperator("^8"));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void invalidRangeOperator() {
+		new BGPRoute(AddressPrefixRange.parse("30.0.0.0/8"), null).withRangeOperator("^x");
+	}
+	
+	@Test
+	public void expandsRanges() {
+		List<String> prefixes = new ArrayList<String>();
+		for(BGPRoute prefix : new BGPRoute(AddressPrefixRange.parse("10.0.0.0/30"), "1.1.1.1").withRangeOperator("^+").getExpandedPrefixes())
+			prefixes.add(prefix.toString());
+		
+		assertEquals(Arrays.asList("10.0.0.0/30 via 1.1.1.1", "10.0.0.0/31 via 1.1.1.1", "10.0.0.2/31 via 1.1.1.1",
+				"10.0.0.0/32 via 1.1.1.1", "10.0.0.1/32 via 1.1.1.1", "10.0.0.2/32 via 1.1.1.1", "10.0.0.3/32 via 1.1.1.1"), prefixes);
+		
+		Iterator<BGPRoute> v6Prefixes = new BGPRoute(AddressPrefixRange.parse("2001:db8::/32"), null).withRangeOperator("^48-64").getExpandedPrefixes().iterator();
+		assertEquals("2001:db8:0:0:0:0:0:0", v6Prefixes.next().getRouteNetworkString());
+		assertEquals("2001:db8:1:0:0:0:0:0", v6Prefixes.next().getRouteNetworkString());
+		assertTrue("Large ranges should be enumerated lazily", v6Prefixes.hasNext());
+	}
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.emitters.rpsldocument;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Set;
+
+import net.ripe.db.whois.common.rpsl.RpslObject;
+
+/**
+ * Measures the memory allocated while a document is built and its peers' routes are resolved.
+ * Not a unit test, allocation counts depend on the JVM so it isn't run by surefire. Run it from the test classpath:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) org.rpsl4j.emitters.rpsldocument.BGPRpslDocumentBuildBenchmark [ases] [routes per as]
+ * </pre>
+ * Only API the document has always had is used, so the class can be compiled against an earlier revision to compare
+ * the allocations of a change. Requires a JVM with the com.sun.management per-thread allocation counter.
+ */
+public class BGPRpslDocumentBuildBenchmark {
+
+	private final static int ROUNDS = 5;
+
+	@SuppressWarnings("deprecation") //The Set constructor is the one earlier revisions have
+	public static void main(String[] args) {
+		int autNumCount = (args.length > 0) ? Integer.parseInt(args[0]) : 200,
+			routeCount = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if(!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled())
+			throw new IllegalStateException("The JVM's per-thread allocation counter is disabled");
+
+		Set<RpslObject> objects = generateObjects(autNumCount, routeCount);
+		System.out.println(String.format("%d objects, %d aut-nums announcing %d routes each to their neighbours",
+				objects.size(), autNumCount, routeCount));
+
+		//The first rounds warm up the JIT, the last is reported
+		BGPRpslDocument doc = null;
+		long buildBytes = 0, buildMillis = 0;
+		int peerRoutes = 0;
+		for(int round = 0; round < ROUNDS; round++) {
+			long startBytes = allocatedBytes(allocations), startMillis = System.currentTimeMillis();
+
+			doc = new BGPRpslDocument(objects);
+			peerRoutes = 0;
+			for(BGPPeer peer : doc.getPeerSet())
+				peerRoutes += peer.getRoutes().size();
+
+			buildBytes = allocatedBytes(allocations) - startBytes;
+			buildMillis = System.currentTimeMillis() - startMillis;
+		}
+		System.out.println(String.format("Build: %d peers with %d routes, %d MB allocated in %d ms",
+				doc.getPeerSet().size(), peerRoutes, buildBytes >> 20, buildMillis));
+
+		//Hashing the built routes by field, against hashing their strings as the model classes used to
+		Set<BGPRoute> routes = new HashSet<BGPRoute>();
+		for(BGPPeer peer : doc.getPeerSet())
+			routes.addAll(peer.getRoutes());
+		long fieldBytes = 0, stringBytes = 0;
+		int hash = 0;
+		for(int round = 0; round < ROUNDS; round++) {
+			long start = allocatedBytes(allocations);
+			for(BGPRoute route : routes)
+				hash += route.hashCode();
+			long middle = allocatedBytes(allocations);
+			for(BGPRoute route : routes)
+				hash += route.toString().hashCode();
+			long end = allocatedBytes(allocations);
+
+			fieldBytes = middle - start;
+			stringBytes = end - middle;
+		}
+		System.out.println(String.format("Hashing %d routes: %d bytes allocated, %d bytes hashing their strings (%d)",
+				routes.size(), fieldBytes, stringBytes, hash));
+	}
+
+	/**
+	 * Sum the bytes allocated by live threads, including the document's build pool
+	 */
+	private static long allocatedBytes(com.sun.management.ThreadMXBean allocations) {
+		long total = 0;
+		for(long bytes : allocations.getThreadAllocatedBytes(allocations.getAllThreadIds()))
+			total += Math.max(bytes, 0);
+		return total;
+	}
+
+	/**
+	 * Generate a ring of aut-nums, each with an inet-rtr peering with its neighbours and announcing its routes to them
+	 * @param autNumCount number of aut-nums in the ring
+	 * @param routeCount number of route objects originated by each aut-num
+	 * @return objects of the document
+	 */
+	static Set<RpslObject> generateObjects(int autNumCount, int routeCount) {
+		Set<RpslObject> objects = new HashSet<RpslObject>();
+		for(int i = 0; i < autNumCount; i++) {
+			int next = (i + 1) % autNumCount, previous = (i + autNumCount - 1) % autNumCount;
+
+			objects.add(RpslObject.parse(String.format("aut-num: AS%d\nas-name: AS%d\n"
+					+ "import: from AS%d %s at %s accept ANY\n"
+					+ "export: to AS%d %s at %s announce AS%d\n"
+					+ "export: to AS%d %s at %s announce AS%d\n",
+					i + 1, i + 1,
+					next + 1, speakerAddress(next), speakerAddress(i),
+					next + 1, speakerAddress(next), speakerAddress(i), i + 1,
+					previous + 1, speakerAddress(previous), speakerAddress(i), i + 1)));
+
+			objects.add(RpslObject.parse(String.format("inet-rtr: rtr%d\nlocal-as: AS%d\nifaddr: %s masklen 16\n"
+					+ "peer: BGP4 %s\npeer: BGP4 %s\n",
+					i + 1, i + 1, speakerAddress(i), speakerAddress(next), speakerAddress(previous))));
+
+			for(int route = 0; route < routeCount; route++)
+				objects.add(RpslObject.parse(String.format("route: %d.%d.%d.0/24\norigin: AS%d\n",
+						10 + i / 256, i % 256, route % 256, i + 1)));
+		}
+		return objects;
+	}
+
+	private static String speakerAddress(int autNumIndex) {
+		return String.format("172.%d.%d.1", 16 + autNumIndex / 256, autNumIndex % 256);
+	}
+}
@@ -7,11 +7,24 @@ package org.rpsl4j.emitters.rpsldocument;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import net.ripe.db.whois.common.domain.CIString;
 import net.ripe.db.whois.common.io.RpslObjectStringReader;
+import net.ripe.db.whois.common.rpsl.ObjectType;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.common.rpsl.attrs.AddressPrefixRange;
 
 import org.junit.Test;
+import org.rpsl4j.util.SymbolTable;
 
 public class BGPRpslDocumentTest {
 	private final String AUTNUM_EXAMPLE = "aut-num: AS1\n"
@@ -39,6 +52,13 @@ public class BGPRpslDocumentTest {
 	
 
 	BGPRpslDocument doc;
+	
+	private static Set<RpslObject> parseObjects(String objectString) {
+		Set<RpslObject> objects = new HashSet<RpslObject>();
+		for(String object : objectString.split("\n\n"))
+			objects.add(RpslObject.parse(object));
+		return objects;
+	}
 
 	@Test
 	public void generatePeers() {
@@ -47,6 +67,19 @@ public class BGPRpslDocumentTest {
 		assertEquals("Should generate a peer object for peer of each speaker declared in the RPSL document", 5, doc.getPeerSet().size());
 	}
 	
+	@Test
+	public void bucketsObjectsByType() {
+		Set<RpslObject> objects = new HashSet<RpslObject>();
+		for(String object : (AUTNUM_ROUTE + "\n\nperson: Someone\nnic-hdl: SO1\n").split("\n\n"))
+			objects.add(RpslObject.parse(object));
+		doc = BGPRpslDocument.builder().addObjects(objects).build();
+		
+		assertEquals("Aut-num objects should be bucketed", 1, doc.getRpslObjects(ObjectType.AUT_NUM).size());
+		assertEquals("Route objects should be bucketed", 1, doc.getRpslObjects(ObjectType.ROUTE).size());
+		assertTrue("Objects of unused types should be dropped", doc.getRpslObjects(ObjectType.PERSON).isEmpty());
+		assertTrue("Buckets of types without objects should be empty", doc.getRpslObjects(ObjectType.AS_SET).isEmpty());
+	}
+	
 	@Test
 	public void generatesAutNums() {
 		doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(AUTNUM_EXAMPLE));
@@ -76,6 +109,110 @@ public class BGPRpslDocumentTest {
 				autNum.getTableForPeer(3, "2.2.2.1").routeSet.size() == 1);
 	}
 
+	@Test
+	public void builderBuildsModel() {
+		BGPRpslDocument.Builder builder = BGPRpslDocument.builder().addObjects(parseObjects(AUTNUM_EXAMPLE + SPEAKER_EXAMPLE));
+		doc = builder.build();
+		
+		assertEquals("Built document should contain the added objects", 5, doc.getPeerSet().size());
+		builder.addObject(RpslObject.parse("aut-num: AS3\nas-name: Third AS\n"));
+		assertEquals("Built document should not change with its builder", 2, doc.getAutNumSet().size());
+	}
+	
+	@Test
+	public void builderSkipsOtherTypes() {
+		BGPRpslDocument.Builder builder = BGPRpslDocument.builder().addObjects(parseObjects(AUTNUM_EXAMPLE));
+		builder.addObject(RpslObject.parse("person: Test Person\nnic-hdl: TP1-TEST\n"));
+		
+		assertEquals("Builder should only hold objects of the document's types", 2, builder.rpslObjects.size());
+	}
+	
+	@SuppressWarnings("deprecation")
+	@Test
+	public void copiesObjects() {
+		Set<RpslObject> objects = parseObjects(AUTNUM_EXAMPLE);
+		doc = new BGPRpslDocument(objects);
+		objects.add(RpslObject.parse("aut-num: AS3\nas-name: Third AS\n"));
+		
+		assertEquals("Document should not change with the caller's objects", 2, doc.getRpslObjects(ObjectType.AUT_NUM).size());
+		assertEquals(2, doc.getAutNumSet().size());
+	}
+	
+	@Test(expected=UnsupportedOperationException.class)
+	public void modelIsImmutable() {
+		doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(AUTNUM_EXAMPLE));
+		doc.getAutNumSet().clear();
+	}
+	
+	@Test
+	public void modelIsBuiltOnce() throws Exception {
+		doc = BGPRpslDocument.builder().build();
+		assertSame("Empty sets should not be rebuilt", doc.getPeerSet(), doc.getPeerSet());
+		
+		//Built lazily by the readers
+		final BGPRpslDocument sharedDoc = BGPRpslDocument.builder().addObjects(parseObjects(AUTNUM_EXAMPLE + SPEAKER_EXAMPLE)).build();
+		List<Callable<Set<BGPPeer>>> readers = new ArrayList<Callable<Set<BGPPeer>>>();
+		for(int i = 0; i < 8; i++) {
+			readers.add(new Callable<Set<BGPPeer>>() {
+				@Override
+				public Set<BGPPeer> call() {
+					return sharedDoc.getPeerSet();
+				}
+			});
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			for(Future<Set<BGPPeer>> peers : executor.invokeAll(readers))
+				assertSame("Concurrent readers should share the peers built once", sharedDoc.getPeerSet(), peers.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void releasesRawObjects() {
+		doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(AUTNUM_ROUTE + "\n\n" + SPEAKER_EXAMPLE), true);
+		
+		assertTrue(doc.isRawObjectsReleased());
+		assertTrue("Raw objects should be released", doc.getRpslObjects(ObjectType.AUT_NUM).isEmpty() && doc.getRpslObjects(ObjectType.ROUTE).isEmpty());
+		assertEquals("Speakers should be built from the inet-rtr data kept after the objects are released", 1, doc.getInetRtrSet().size());
+		assertEquals("Route tables should still resolve after the objects are released", 1,
+				doc.getAutNumMap().get("AS1").getTableForPeer(3, "2.2.2.1").routeSet.size());
+		assertEquals("Releasing again should release nothing", 0, doc.releaseRawObjects().getObjects());
+	}
+	
+	@Test
+	public void countsObjectsHeld() {
+		Set<RpslObject> objects = parseObjects(AUTNUM_ROUTE);
+		objects.add(RpslObject.parse("person: Someone\nnic-hdl: SO1\n"));
+		doc = BGPRpslDocument.builder().addObjects(objects).build();
+		
+		assertEquals("Only objects the document held should be counted", 2, doc.releaseRawObjects().getObjects());
+	}
+	
+	@Test
+	public void reportsReleasedObjects() {
+		doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(AUTNUM_ROUTE));
+		
+		assertFalse(doc.isRawObjectsReleased());
+		BGPRpslDocument.ReleasedObjects released = doc.releaseRawObjects();
+		assertEquals("Should report each released object", 2, released.getObjects());
+		assertEquals("Should report the attributes of the released objects", 5, released.getAttributes());
+		assertEquals("Routes should be kept after the objects are released", 1, doc.getASRoutes(1).size());
+	}
+	
+	@Test
+	public void sharesIndexedRoutes() {
+		doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader("route: 1.1.1.0/24\norigin: AS1\nmnt-by: MAINT-ONE\nmember-of: rs-one\n"));
+		
+		assertEquals("Maintainer's routes should be found", 1, doc.getMntByRoutes(CIString.ciString("MAINT-ONE")).size());
+		assertSame("Maintainer's routes should be built once", doc.getMntByRoutes(CIString.ciString("maint-one")), doc.getMntByRoutes(CIString.ciString("MAINT-ONE")));
+		assertSame("Set member routes should be built once", doc.getSetMemberRoutes(CIString.ciString("rs-one")), doc.getSetMemberRoutes(CIString.ciString("rs-one")));
+		assertTrue("Unknown maintainers should have no routes", doc.getMntByRoutes(CIString.ciString("MAINT-NONE")).isEmpty());
+		assertTrue("Unknown maintainers should have no route ids", doc.getMntByRouteIds(SymbolTable.NO_SYMBOL).isEmpty());
+	}
+	
 	@Test
 	public void dropWithdrawnRoute() {
 		doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(
@@ -84,4 +221,23 @@ public class BGPRpslDocumentTest {
 				+ "withdrawn: 19960624\n"));
 		assertTrue("withdrawn route should not be added to as routes", doc.getASRoutes(1).size() == 0);
 	}
+	
+	@Test
+	public void prefixQueries() {
+		doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(
+				"route: 10.0.0.0/8\norigin: AS1\n\n"
+				+ "route: 10.1.0.0/16\norigin: AS2\n\n"
+				+ "route: 10.1.0.0/16\norigin: AS3\n\n"
+				+ "route: 10.1.1.0/24\norigin: AS2\n\n"
+				+ "route: 11.0.0.0/8\norigin: AS1\n"));
+		
+		assertEquals("Should return each route object of prefix", 2, doc.getExactRoutes(AddressPrefixRange.parse("10.1.0.0/16")).size());
+		assertTrue(doc.getExactRoutes(AddressPrefixRange.parse("10.2.0.0/16")).isEmpty());
+		assertEquals(doc.getExactRoutes(AddressPrefixRange.parse("10.1.1.0/24")), doc.getLongestMatchRoutes(AddressPrefixRange.parse("10.1.1.128/25")));
+		assertEquals(doc.getExactRoutes(AddressPrefixRange.parse("10.0.0.0/8")), doc.getLongestMatchRoutes(AddressPrefixRange.parse("10.2.0.0/16")));
+		assertTrue(doc.getLongestMatchRoutes(AddressPrefixRange.parse("12.0.0.0/8")).isEmpty());
+		assertEquals("Less specifics should exclude the prefix itself", 3, doc.getLessSpecificRoutes(AddressPrefixRange.parse("10.1.1.0/24")).size());
+		assertEquals("More specifics should exclude the prefix itself", 3, doc.getMoreSpecificRoutes(AddressPrefixRange.parse("10.0.0.0/8")).size());
+		assertTrue(doc.getMoreSpecificRoutes(AddressPrefixRange.parse("2001:db8::/32")).isEmpty());
+	}
 }
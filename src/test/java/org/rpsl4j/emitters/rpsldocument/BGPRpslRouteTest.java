@@ -10,6 +10,7 @@ import static org.junit.Assert.*;
 import org.junit.Test;
 
 import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.common.rpsl.attrs.AddressPrefixRange;
 
 public class BGPRpslRouteTest {
 	private final BGPRpslRoute 	routeOne = new BGPRpslRoute(RpslObject.parse("route: 1.1.1.0/24\norigin: AS1")),
@@ -24,12 +25,37 @@ public class BGPRpslRouteTest {
 		assertTrue("Clone should return new object", routeOne != routeOne.clone());
 	}
 	
+	@Test
+	public void withNextHopKeepsRouteObject() {
+		BGPRpslRoute route = new BGPRpslRoute(RpslObject.parse("route: 1.1.1.0/24\norigin: AS1\nmnt-by: MNTR-ONE\nmember-of: rs-set"));
+		BGPRoute routeWithNextHop = route.withNextHop("1.1.1.1");
+		
+		assertTrue("Route with next hop should remain a route object", routeWithNextHop instanceof BGPRpslRoute);
+		assertEquals(route.getMaintainer(), ((BGPRpslRoute) routeWithNextHop).getMaintainer());
+		assertEquals(route.getParentSets(), ((BGPRpslRoute) routeWithNextHop).getParentSets());
+		assertNull("Original route should be unchanged", route.getNextHopString());
+	}
+	
 	@Test
 	public void testEquality() {
 		assertTrue("Cloned object should be equal to original", routeOne.equals(routeOne.clone()));
 		assertFalse("Different objects should not be equal", routeOne.equals(routeTwo));
 	}
 	
+	@Test
+	public void equalityAcrossDocuments() {
+		//Each route interns its sets in its own symbol table
+		BGPRpslRoute route = new BGPRpslRoute(RpslObject.parse("route: 1.1.1.0/24\norigin: AS1\nmember-of: RS-ONE, RS-TWO")),
+					 reordered = new BGPRpslRoute(RpslObject.parse("route: 1.1.1.0/24\norigin: AS1\nmember-of: rs-two\nmember-of: rs-one")),
+					 otherSet = new BGPRpslRoute(RpslObject.parse("route: 1.1.1.0/24\norigin: AS1\nmember-of: RS-ONE, RS-THREE"));
+		
+		assertEquals("Routes of the same sets should be equal", route, reordered);
+		assertNotEquals("Routes of different sets should not be equal", route, otherSet);
+		assertNotEquals(route, routeOne);
+		assertEquals("Parent sets aren't hashed", route.hashCode(), otherSet.hashCode());
+		assertEquals("Routes should hash as plain routes", new BGPRoute(AddressPrefixRange.parse("1.1.1.0/24"), null).hashCode(), route.hashCode());
+	}
+	
 	@Test
 	public void testWithdrawnRoute() {		
 		assertTrue("route with withdrawn date in the past should return withdrawn", withdrawn.isWithdrawn());
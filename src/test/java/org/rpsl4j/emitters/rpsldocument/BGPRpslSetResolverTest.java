@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.emitters.rpsldocument;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.ripe.db.whois.common.io.RpslObjectStringReader;
+import net.ripe.db.whois.common.rpsl.RpslObject;
+import net.ripe.db.whois.common.rpsl.attrs.AddressPrefixRange;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class BGPRpslSetResolverTest {
+	private final String 	ROUTE_SETS = 	"route-set: rs-root\nmembers: 1.1.1.0/24, rs-cycle-a\n\n" +
+											"route-set: rs-cycle-a\nmembers: 1.1.2.0/24, rs-cycle-b\n\n" +
+											"route-set: rs-cycle-b\nmembers: 1.1.3.0/24, rs-cycle-a, rs-leaf, rs-undeclared\n\n" +
+											"route-set: rs-leaf\nmembers: 1.1.4.0/24\n\n";
+	
+	private static BGPRoute route(String prefix) {
+		return new BGPRoute(AddressPrefixRange.parse(prefix), null);
+	}
+
+	@Test
+	public void collapsesCycles() {
+		BGPRpslDocument doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(ROUTE_SETS));
+		BGPRpslSetResolver resolver = doc.getSetResolver();
+		
+		assertEquals("Cycle should be collapsed into a single component", 3, resolver.getComponentCount());
+		assertTrue(resolver.inSameComponent(doc.getRouteSet("rs-cycle-a"), doc.getRouteSet("rs-cycle-b")));
+		assertFalse(resolver.inSameComponent(doc.getRouteSet("rs-root"), doc.getRouteSet("rs-cycle-a")));
+		
+		assertEquals("Sets of a cycle should resolve to the same routes", 
+				doc.getRouteSet("rs-cycle-a").resolve(doc), doc.getRouteSet("rs-cycle-b").resolve(doc));
+		assertEquals(3, doc.getRouteSet("rs-cycle-a").resolve(doc).size());
+		
+		Set<BGPRoute> rootRoutes = doc.getRouteSet("rs-root").resolve(doc);
+		assertEquals("Root should contain the routes of every reachable set", 4, rootRoutes.size());
+		for(String prefix : new String[] {"1.1.1.0/24", "1.1.2.0/24", "1.1.3.0/24", "1.1.4.0/24"})
+			assertTrue(rootRoutes.contains(route(prefix)));
+	}
+	
+	@Test
+	public void expandsLazily() {
+		BGPRpslDocument doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(ROUTE_SETS));
+		
+		for(String set : new String[] {"rs-root", "rs-cycle-a", "rs-cycle-b", "rs-leaf"}) {
+			List<BGPRoute> expansion = Lists.newArrayList(doc.getRouteSet(set).expand(doc));
+			assertEquals("Expansion should not repeat routes", new HashSet<BGPRoute>(expansion).size(), expansion.size());
+			assertEquals("Expansion should match resolution of " + set, doc.getRouteSet(set).resolve(doc), new HashSet<BGPRoute>(expansion));
+		}
+	}
+	
+	@Test
+	public void expandsWithCachedExpansions() {
+		BGPRpslDocument doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(ROUTE_SETS));
+		doc.getRouteSet("rs-cycle-a").resolve(doc);
+		
+		//Only the cycle's expansion is cached, the root is walked
+		Set<BGPRoute> expansion = Sets.newHashSet(doc.getRouteSet("rs-root").expand(doc));
+		assertEquals(doc.getRouteSet("rs-root").resolve(doc), expansion);
+	}
+	
+	@Test
+	public void memoizesResolution() {
+		BGPRpslDocument doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(ROUTE_SETS));
+		
+		assertSame("Repeated resolution should return the cached expansion",
+				doc.getRouteSet("rs-root").resolve(doc), doc.getRouteSet("rs-root").resolve(doc));
+	}
+	
+	@Test(expected=UnsupportedOperationException.class)
+	public void sharedExpansionIsUnmodifiable() {
+		BGPRpslDocument doc = BGPRpslDocument.parseRpslDocument(new RpslObjectStringReader(ROUTE_SETS));
+		doc.getRouteSet("rs-root").resolve(doc).clear();
+	}
+	
+	@Test
+	public void resolvesAfterEviction() {
+		Set<RpslObject> objects = new HashSet<RpslObject>();
+		for(String object : ROUTE_SETS.split("\n\n"))
+			objects.add(RpslObject.parse(object));
+		
+		//A single entry cache evicts expansions while resolving
+		BGPRpslDocument doc = BGPRpslDocument.builder().addObjects(objects).setCacheSize(1).build();
+		for(int i = 0; i < 3; i++) {
+			assertEquals(4, doc.getRouteSet("rs-root").resolve(doc).size());
+			assertEquals(1, doc.getRouteSet("rs-leaf").resolve(doc).size());
+		}
+	}
+}
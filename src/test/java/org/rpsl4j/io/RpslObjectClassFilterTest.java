@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.io;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.ripe.db.whois.common.rpsl.ObjectType;
+
+public class RpslObjectClassFilterTest {
+	private final RpslObjectClassFilter filter = new RpslObjectClassFilter(EnumSet.of(ObjectType.ROUTE, ObjectType.AUT_NUM));
+
+	@Test
+	public void acceptsWhitelistedClasses() {
+		assertTrue(filter.apply("route: 1.1.1.0/24\norigin: AS1\n"));
+		assertTrue("Class names should be case insensitive", filter.apply("AUT-NUM: AS1\n"));
+		assertTrue("Leading comments should be skipped", filter.apply("% comment\n# comment\naut-num: AS1\n"));
+	}
+
+	@Test
+	public void rejectsOtherClasses() {
+		assertFalse(filter.apply("person: Someone\nnic-hdl: SO1\n"));
+		assertFalse("Prefix of a whitelisted class should be rejected", filter.apply("route6: ::/0\n"));
+		assertFalse("Prefixed whitelisted class should be rejected", filter.apply("aroute: 1.1.1.0/24\n"));
+		assertFalse("Object without key should be rejected", filter.apply("route"));
+		assertFalse(filter.apply(""));
+	}
+
+	@Test
+	public void checksBufferRanges() {
+		byte[] bytes = "xxROUTE: 1.1.1.0/24\nperson: Someone\n".getBytes(StandardCharsets.US_ASCII);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+		assertTrue(filter.accepts(buffer, 2, 18));
+		assertFalse("Key must be contained in the line", filter.accepts(buffer, 2, 5));
+		assertFalse(filter.accepts(buffer, 21, 15));
+	}
+
+	@Test
+	public void filtersReaders() {
+		List<String> objects = new ArrayList<String>();
+		for(String object : filter.filter(Arrays.asList("route: 1.1.1.0/24\n", "mntner: MAINT-AS1\n", "aut-num: AS1\n")))
+			objects.add(object);
+
+		assertEquals(Arrays.asList("route: 1.1.1.0/24\n", "aut-num: AS1\n"), objects);
+	}
+
+	@Test
+	public void createsFromClassNames() {
+		RpslObjectClassFilter namedFilter = RpslObjectClassFilter.forClassNames(Arrays.asList("Person", " mntner"));
+
+		assertTrue(namedFilter.apply("person: Someone\n"));
+		assertTrue(namedFilter.apply("mntner: MAINT-AS1\n"));
+		assertFalse(namedFilter.apply("route: 1.1.1.0/24\n"));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void failsOnUnknownClassName() {
+		RpslObjectClassFilter.forClassNames(Arrays.asList("not-a-class"));
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.io;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.ripe.db.whois.common.rpsl.ObjectType;
+
+public class RpslObjectMappedFileReaderTest {
+	private static final String OBJECT_ONE = "aut-num: AS1\nas-name: First AS\n",
+								OBJECT_TWO = "route: 1.1.1.0/24\norigin: AS1\n",
+								OBJECT_THREE = "route-set: rs-set\nmembers: 1.1.1.0/24,\n         1.1.2.0/24\n";
+
+	/**
+	 * Write a string to a new temporary file
+	 * @param contents contents of file
+	 * @return path of file
+	 */
+	private static String writeTempFile(String contents) throws IOException {
+		File tempFile = File.createTempFile("rpslSample", ".txt");
+		tempFile.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(tempFile);
+		out.write(contents.getBytes(StandardCharsets.ISO_8859_1));
+		out.close();
+		return tempFile.getPath();
+	}
+
+	private static List<String> readAll(Iterable<String> reader) {
+		List<String> objects = new ArrayList<String>();
+		for(String object : reader)
+			objects.add(object);
+		return objects;
+	}
+
+	@Test
+	public void splitsObjectsOnBlankLines() throws IOException {
+		String path = writeTempFile("\n\n" + OBJECT_ONE + "\n\n\n" + OBJECT_TWO + "\n" + OBJECT_THREE);
+		List<String> objects = readAll(new RpslObjectMappedFileReader(path));
+
+		assertEquals("Should read each object of the file", 3, objects.size());
+		assertEquals(OBJECT_ONE, objects.get(0));
+		assertEquals(OBJECT_TWO, objects.get(1));
+		assertEquals("Object without trailing blank line should be read", OBJECT_THREE, objects.get(2));
+	}
+
+	@Test
+	public void dropsCommentsAndCarriageReturns() throws IOException {
+		String path = writeTempFile("# dump header\n% another comment\n\naut-num: AS1\r\n# inline comment\r\nas-name: First AS\r\n\r\n");
+		List<String> objects = readAll(new RpslObjectMappedFileReader(path));
+
+		assertEquals("Comment only blocks should not create objects", 1, objects.size());
+		assertEquals(OBJECT_ONE, objects.get(0));
+	}
+
+	@Test
+	public void readsAcrossWindows() throws IOException {
+		StringBuilder document = new StringBuilder();
+		for(int i = 0; i < 100; i++)
+			document.append(OBJECT_ONE).append("\n").append(OBJECT_THREE).append("\n");
+		String path = writeTempFile(document.toString());
+
+		//Windows smaller than an object force both remapping and window growth
+		for(int windowSize : new int[] {7, 64, 100}) {
+			List<String> objects = readAll(new RpslObjectMappedFileReader(path, StandardCharsets.ISO_8859_1, null, windowSize));
+			assertEquals("Should read every object regardless of window size", 200, objects.size());
+			for(int i = 0; i < objects.size(); i++)
+				assertEquals(i % 2 == 0 ? OBJECT_ONE : OBJECT_THREE, objects.get(i));
+		}
+	}
+
+	@Test
+	public void skipsFilteredClasses() throws IOException {
+		StringBuilder document = new StringBuilder();
+		for(int i = 0; i < 50; i++)
+			document.append("# comment\nPerson: Someone\nnic-hdl: SO1\n\n").append(OBJECT_ONE).append("\n").append(OBJECT_TWO).append("\n");
+		String path = writeTempFile(document.toString());
+		RpslObjectClassFilter filter = new RpslObjectClassFilter(EnumSet.of(ObjectType.AUT_NUM, ObjectType.PERSON));
+
+		for(int windowSize : new int[] {5, 64, RpslObjectMappedFileReader.DEFAULT_WINDOW_SIZE}) {
+			List<String> objects = readAll(new RpslObjectMappedFileReader(path, StandardCharsets.ISO_8859_1, filter, windowSize));
+			assertEquals("Route objects should be skipped", 100, objects.size());
+			for(int i = 0; i < objects.size(); i++)
+				assertEquals(i % 2 == 0 ? "Person: Someone\nnic-hdl: SO1\n" : OBJECT_ONE, objects.get(i));
+		}
+	}
+
+	@Test
+	public void createsStringsOnDemand() throws IOException {
+		Iterator<String> objects = new RpslObjectMappedFileReader(writeTempFile(OBJECT_ONE + "\n" + OBJECT_TWO)).iterator();
+
+		assertTrue(objects.hasNext());
+		assertTrue("Repeated hasNext should not skip objects", objects.hasNext());
+		assertEquals(OBJECT_ONE, objects.next());
+		assertEquals(OBJECT_TWO, objects.next());
+		assertFalse(objects.hasNext());
+	}
+
+	@Test
+	public void readsEmptyFile() throws IOException {
+		assertTrue("Empty file should contain no objects", readAll(new RpslObjectMappedFileReader(writeTempFile(""))).isEmpty());
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void failsOnMissingFile() {
+		new RpslObjectMappedFileReader("/nonexistent/rpsl/dump").iterator();
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.util;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class LongHashSetTest {
+
+	@Test
+	public void addsAndContainsValues() {
+		LongHashSet set = new LongHashSet();
+		assertTrue(set.isEmpty());
+		assertTrue("New value should be added", set.add(1));
+		assertFalse("Duplicate value should not be added", set.add(1));
+		assertTrue("Zero should be supported", set.add(0));
+		assertTrue("Negative values should be supported", set.add(-5));
+		assertTrue("32 bit ASNs should be supported", set.add(4294967295L));
+
+		assertEquals(4, set.size());
+		assertTrue(set.contains(0) && set.contains(1) && set.contains(-5) && set.contains(4294967295L));
+		assertFalse(set.contains(2));
+	}
+
+	@Test
+	public void matchesBoxedSet() {
+		Random random = new Random(42);
+		LongHashSet set = new LongHashSet();
+		Set<Long> boxedSet = new HashSet<Long>();
+
+		//Small value range forces duplicates and resizes
+		for(int i = 0; i < 10000; i++) {
+			long value = random.nextInt(5000) - 100;
+			assertEquals(boxedSet.add(value), set.add(value));
+		}
+		assertEquals(boxedSet.size(), set.size());
+
+		Set<Long> iterated = new HashSet<Long>();
+		for(LongIterator it = set.iterator(); it.hasNext();)
+			assertTrue("Iterator should not repeat values", iterated.add(it.next()));
+		assertEquals(boxedSet, iterated);
+		assertEquals(boxedSet.size(), set.toArray().length);
+	}
+
+	@Test
+	public void intersectsSets() {
+		LongHashSet first = new LongHashSet(), second = new LongHashSet();
+		for(long value : new long[] {0, 1, 2, 3, 100})
+			first.add(value);
+		for(long value : new long[] {0, 2, 100, 200, 300, 400})
+			second.add(value);
+
+		long[] intersection = LongHashSet.intersection(first, second).toArray();
+		Arrays.sort(intersection);
+		assertArrayEquals(new long[] {0, 2, 100}, intersection);
+		assertEquals("Intersection should be symmetric", LongHashSet.intersection(first, second), LongHashSet.intersection(second, first));
+		assertTrue(LongHashSet.intersection(first, new LongHashSet()).isEmpty());
+	}
+
+	@Test
+	public void equalityIgnoresOrder() {
+		LongHashSet first = new LongHashSet(), second = new LongHashSet(1000);
+		for(long value = 1; value <= 50; value++) {
+			first.add(value);
+			second.add(51 - value);
+		}
+		assertEquals(first, second);
+		assertEquals(first.hashCode(), second.hashCode());
+		second.add(0);
+		assertNotEquals(first, second);
+	}
+
+	@Test(expected=NoSuchElementException.class)
+	public void iteratorFailsWhenExhausted() {
+		LongHashSet set = new LongHashSet();
+		set.add(7);
+		LongIterator it = set.iterator();
+		assertEquals(7, it.next());
+		it.next();
+	}
+}
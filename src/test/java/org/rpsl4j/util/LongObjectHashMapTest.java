@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.util;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongObjectHashMapTest {
+
+	@Test
+	public void putsAndGetsValues() {
+		LongObjectHashMap<String> map = new LongObjectHashMap<String>();
+		assertNull(map.put(1, "one"));
+		assertNull("Zero key should be supported", map.put(0, "zero"));
+		assertEquals("Replacing should return previous value", "one", map.put(1, "uno"));
+
+		assertEquals(2, map.size());
+		assertEquals("uno", map.get(1));
+		assertEquals("zero", map.get(0));
+		assertNull(map.get(2));
+		assertTrue(map.containsKey(0));
+		assertFalse(map.containsKey(-1));
+		assertEquals("Values should include zero key's value", 2, map.values().size());
+		assertTrue(map.values().contains("zero"));
+	}
+
+	@Test
+	public void matchesBoxedMap() {
+		Random random = new Random(42);
+		LongObjectHashMap<Integer> map = new LongObjectHashMap<Integer>();
+		Map<Long, Integer> boxedMap = new HashMap<Long, Integer>();
+
+		for(int i = 0; i < 10000; i++) {
+			long key = random.nextInt(3000) * 65536L;
+			assertEquals(boxedMap.put(key, i), map.put(key, i));
+		}
+		assertEquals(boxedMap.size(), map.size());
+		for(Map.Entry<Long, Integer> entry : boxedMap.entrySet())
+			assertEquals(entry.getValue(), map.get(entry.getKey()));
+
+		LongHashSet keySet = map.keySet();
+		assertEquals(boxedMap.size(), keySet.size());
+		for(Long key : boxedMap.keySet())
+			assertTrue(keySet.contains(key));
+	}
+
+	@Test(expected=NullPointerException.class)
+	public void rejectsNullValues() {
+		new LongObjectHashMap<String>().put(1, null);
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PrefixTrieTest {
+
+	//IPv4 prefix a.b.c.d/length, left aligned in high
+	private static long v4(int a, int b, int c, int d) {
+		return ((long) a << 56) | ((long) b << 48) | ((long) c << 40) | ((long) d << 32);
+	}
+
+	@Test
+	public void exactMatch() {
+		PrefixTrie<String> trie = new PrefixTrie<String>();
+		assertNull(trie.put(v4(10, 0, 0, 0), 0, 8, "10/8"));
+		assertNull(trie.put(v4(10, 1, 0, 0), 0, 16, "10.1/16"));
+		assertNull(trie.put(v4(10, 2, 0, 0), 0, 16, "10.2/16"));
+		assertEquals("Replacing should return previous value", "10/8", trie.put(v4(10, 0, 0, 0), 0, 8, "ten"));
+
+		assertEquals(3, trie.size());
+		assertEquals("ten", trie.get(v4(10, 0, 0, 0), 0, 8));
+		assertEquals("10.2/16", trie.get(v4(10, 2, 0, 0), 0, 16));
+		assertNull("Branch node shouldn't have a value", trie.get(v4(10, 0, 0, 0), 0, 14));
+		assertNull(trie.get(v4(10, 1, 0, 0), 0, 24));
+		assertEquals("Bits past the prefix length should be ignored", "10.1/16", trie.get(v4(10, 1, 2, 3), 0, 16));
+	}
+
+	@Test
+	public void coveringPrefixes() {
+		PrefixTrie<String> trie = new PrefixTrie<String>();
+		trie.put(0, 0, 0, "default");
+		trie.put(v4(10, 0, 0, 0), 0, 8, "10/8");
+		trie.put(v4(10, 1, 0, 0), 0, 16, "10.1/16");
+		trie.put(v4(10, 1, 1, 0), 0, 24, "10.1.1/24");
+
+		assertEquals(Arrays.asList("default", "10/8", "10.1/16"), trie.getCovering(v4(10, 1, 1, 0), 0, 24, false));
+		assertEquals(Arrays.asList("default", "10/8", "10.1/16", "10.1.1/24"), trie.getCovering(v4(10, 1, 1, 0), 0, 24, true));
+		assertEquals("10.1.1/24", trie.getLongestMatch(v4(10, 1, 1, 7), 0, 32));
+		assertEquals("10/8", trie.getLongestMatch(v4(10, 9, 0, 0), 0, 16));
+		assertEquals("default", trie.getLongestMatch(v4(11, 0, 0, 0), 0, 8));
+	}
+
+	@Test
+	public void coveredPrefixes() {
+		PrefixTrie<String> trie = new PrefixTrie<String>();
+		trie.put(v4(10, 0, 0, 0), 0, 8, "10/8");
+		trie.put(v4(10, 2, 0, 0), 0, 16, "10.2/16");
+		trie.put(v4(10, 1, 0, 0), 0, 16, "10.1/16");
+		trie.put(v4(10, 1, 1, 0), 0, 24, "10.1.1/24");
+		trie.put(v4(11, 0, 0, 0), 0, 8, "11/8");
+
+		assertEquals("Covered prefixes should be in address order", Arrays.asList("10.1/16", "10.1.1/24", "10.2/16"),
+				trie.getCovered(v4(10, 0, 0, 0), 0, 8, false));
+		assertEquals(Arrays.asList("10/8", "10.1/16", "10.1.1/24", "10.2/16"), trie.getCovered(v4(10, 0, 0, 0), 0, 8, true));
+		assertEquals("Prefix between nodes should find covered nodes", Arrays.asList("10.1/16", "10.1.1/24"),
+				trie.getCovered(v4(10, 0, 0, 0), 0, 15, true));
+		assertTrue(trie.getCovered(v4(12, 0, 0, 0), 0, 8, true).isEmpty());
+		assertEquals(5, trie.getCovered(0, 0, 0, true).size());
+	}
+
+	@Test
+	public void fullLengthPrefixes() {
+		PrefixTrie<String> trie = new PrefixTrie<String>();
+		trie.put(0x20010db800000000L, 1, 128, "host");
+		trie.put(0x20010db800000000L, 0, 32, "net");
+
+		assertEquals("host", trie.get(0x20010db800000000L, 1, 128));
+		assertNull(trie.get(0x20010db800000000L, 2, 128));
+		assertEquals(Arrays.asList("net", "host"), trie.getCovering(0x20010db800000000L, 1, 128, true));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void rejectsInvalidLength() {
+		new PrefixTrie<String>().put(0, 0, 129, "invalid");
+	}
+
+	@Test
+	public void matchesLinearScan() {
+		Random random = new Random(42);
+		PrefixTrie<Integer> trie = new PrefixTrie<Integer>();
+		Map<List<Long>, Integer> prefixes = new HashMap<List<Long>, Integer>();
+
+		for(int i = 0; i < 2000; i++) {
+			int length = random.nextInt(129);
+			long high = PrefixTrie.maskHigh(random.nextLong() & 0xff0f00000000ffffL, length),
+				 low = PrefixTrie.maskLow(random.nextLong() & 0xf, length);
+			trie.put(high, low, length, i);
+			prefixes.put(Arrays.asList(high, low, (long) length), i);
+		}
+		assertEquals(prefixes.size(), trie.size());
+
+		for(int i = 0; i < 500; i++) {
+			int length = random.nextInt(129);
+			long high = random.nextLong() & 0xff0f00000000ffffL, low = random.nextLong() & 0xf;
+
+			List<Integer> covering = new ArrayList<Integer>(), covered = new ArrayList<Integer>();
+			for(Map.Entry<List<Long>, Integer> prefix : prefixes.entrySet()) {
+				long prefixHigh = prefix.getKey().get(0), prefixLow = prefix.getKey().get(1);
+				int prefixLength = prefix.getKey().get(2).intValue();
+				int common = PrefixTrie.commonLength(prefixHigh, prefixLow, prefixLength, high, low, length);
+				if(common == prefixLength)
+					covering.add(prefix.getValue());
+				if(common == length)
+					covered.add(prefix.getValue());
+			}
+
+			List<Integer> trieCovering = trie.getCovering(high, low, length, true), trieCovered = trie.getCovered(high, low, length, true);
+			assertEquals(new HashSet<Integer>(covering), new HashSet<Integer>(trieCovering));
+			assertEquals(new HashSet<Integer>(covered), new HashSet<Integer>(trieCovered));
+			assertEquals("Results shouldn't contain duplicates", covering.size(), trieCovering.size());
+			assertEquals("Results shouldn't contain duplicates", covered.size(), trieCovered.size());
+			if(!covering.isEmpty())
+				assertEquals(trieCovering.get(trieCovering.size() - 1), trie.getLongestMatch(high, low, length));
+		}
+	}
+}
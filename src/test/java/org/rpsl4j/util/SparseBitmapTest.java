@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.util;
+
+import static org.junit.Assert.*;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SparseBitmapTest {
+
+	@Test
+	public void addsAndContainsIds() {
+		SparseBitmap bitmap = new SparseBitmap();
+		assertTrue(bitmap.isEmpty());
+		assertTrue("New id should be added", bitmap.add(5));
+		assertFalse("Duplicate id should not be added", bitmap.add(5));
+		assertTrue("Ids may be added out of order", bitmap.add(1));
+		assertTrue(bitmap.add(Integer.MAX_VALUE));
+		assertTrue(bitmap.add(64));
+
+		assertEquals(4, bitmap.cardinality());
+		assertTrue(bitmap.contains(1) && bitmap.contains(5) && bitmap.contains(64) && bitmap.contains(Integer.MAX_VALUE));
+		assertFalse(bitmap.contains(0) || bitmap.contains(63) || bitmap.contains(-1));
+		assertArrayEquals("Ids should be iterated in order", new int[] {1, 5, 64, Integer.MAX_VALUE}, bitmap.toArray());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void rejectsNegativeIds() {
+		new SparseBitmap().add(-1);
+	}
+
+	@Test
+	public void iteratesFromId() {
+		SparseBitmap bitmap = SparseBitmap.of(3, 70, 200);
+		assertEquals(3, bitmap.nextSetBit(0));
+		assertEquals(70, bitmap.nextSetBit(4));
+		assertEquals(70, bitmap.nextSetBit(70));
+		assertEquals("Words without ids should be skipped", 200, bitmap.nextSetBit(71));
+		assertEquals(-1, bitmap.nextSetBit(201));
+		assertEquals(-1, new SparseBitmap().nextSetBit(0));
+	}
+
+	@Test
+	public void combinesBitmaps() {
+		SparseBitmap first = SparseBitmap.of(1, 2, 100, 1000),
+					 second = SparseBitmap.of(2, 3, 1000, 5000);
+
+		assertEquals(SparseBitmap.of(2, 1000), SparseBitmap.and(first, second));
+		assertEquals(SparseBitmap.of(1, 2, 3, 100, 1000, 5000), SparseBitmap.or(first, second));
+		assertTrue("Disjoint words should not intersect", SparseBitmap.and(SparseBitmap.of(1), SparseBitmap.of(2)).isEmpty());
+		assertEquals("Combining should not modify the operands", SparseBitmap.of(1, 2, 100, 1000), first);
+	}
+
+	@Test
+	public void matchesBitSet() {
+		Random random = new Random(42);
+		for(int round = 0; round < 50; round++) {
+			SparseBitmap first = new SparseBitmap(), second = new SparseBitmap();
+			BitSet firstBits = new BitSet(), secondBits = new BitSet();
+			for(int i = 0; i < 200; i++) {
+				int id = random.nextInt(5000);
+				first.add(id);
+				firstBits.set(id);
+				id = random.nextInt(5000);
+				second.add(id);
+				secondBits.set(id);
+			}
+
+			BitSet and = (BitSet) firstBits.clone(), or = (BitSet) firstBits.clone();
+			and.and(secondBits);
+			or.or(secondBits);
+			assertArrayEquals(toArray(and), SparseBitmap.and(first, second).toArray());
+			assertArrayEquals(toArray(or), SparseBitmap.or(first, second).toArray());
+			assertEquals(firstBits.cardinality(), first.cardinality());
+		}
+	}
+
+	private static int[] toArray(BitSet bits) {
+		int[] ids = new int[bits.cardinality()];
+		int i = 0;
+		for(int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1))
+			ids[i++] = id;
+		return ids;
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2015 Benjamin Roberts, Nathan Kelly, Andrew Maxwell
+ * All rights reserved.
+ */
+
+package org.rpsl4j.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SymbolTableTest {
+
+	@Test
+	public void internsCaseInsensitively() {
+		SymbolTable symbols = new SymbolTable();
+		int id = symbols.intern("RS-Set");
+
+		assertEquals("Names differing in case should share an id", id, symbols.intern("rs-set"));
+		assertEquals(id, symbols.lookup("RS-SET"));
+		assertEquals("Name should be stored case-folded", "rs-set", symbols.getName(id));
+		assertEquals(1, symbols.size());
+	}
+
+	@Test
+	public void assignsDenseIds() {
+		SymbolTable symbols = new SymbolTable();
+		assertEquals(0, symbols.intern("as-one"));
+		assertEquals(1, symbols.intern("MNTR-ONE"));
+		assertEquals(0, symbols.intern("AS-ONE"));
+		assertEquals(2, symbols.size());
+	}
+
+	@Test
+	public void lookupDoesNotIntern() {
+		SymbolTable symbols = new SymbolTable();
+		assertEquals(SymbolTable.NO_SYMBOL, symbols.lookup("rs-missing"));
+		assertEquals("Lookup shouldn't add names", 0, symbols.size());
+	}
+
+	@Test
+	public void translatesBetweenTables() {
+		SymbolTable first = new SymbolTable(), second = new SymbolTable();
+		first.intern("as-one");
+		int firstId = first.intern("as-two");
+		int secondId = second.intern("AS-TWO");
+
+		assertEquals(secondId, second.translate(first, firstId));
+		assertEquals(firstId, first.translate(first, firstId));
+		assertEquals("Names missing from the table should translate to no symbol", SymbolTable.NO_SYMBOL, second.translate(first, 0));
+	}
+}